@@ -92,7 +92,7 @@ public class CorsConfig {
      *
      * Por defecto: Authorization, Content-Type, X-Requested-With
      */
-    @Value("${cors.allowed-headers:Authorization,Content-Type,X-Requested-With,Accept,Origin}")
+    @Value("${cors.allowed-headers:Authorization,Content-Type,X-Requested-With,Accept,Origin,If-None-Match,Idempotency-Key,Prefer}")
     private String allowedHeaders;
 
     /**
@@ -100,7 +100,7 @@ public class CorsConfig {
      *
      * Estos headers estarán disponibles en el objeto Response del frontend
      */
-    @Value("${cors.exposed-headers:Authorization,X-Total-Count,X-Page-Number}")
+    @Value("${cors.exposed-headers:Authorization,X-Total-Count,X-Page-Number,X-Next-Cursor,ETag,Idempotent-Replayed,Location,Retry-After,X-RateLimit-Remaining,X-RateLimit-Replenish-Rate,X-RateLimit-Burst-Capacity}")
     private String exposedHeaders;
 
     /**
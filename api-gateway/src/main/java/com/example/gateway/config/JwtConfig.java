@@ -1,16 +1,26 @@
 package com.example.gateway.config;
 
+import com.example.gateway.security.CachingReactiveJwtDecoder;
+import com.example.gateway.security.ReactiveJwkSetSource;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
 import org.springframework.security.oauth2.core.OAuth2TokenValidator;
 import org.springframework.security.oauth2.jwt.*;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Configuración de JWT con validación de Audience
@@ -81,6 +91,60 @@ public class JwtConfig {
     @Value("${jwt.audience:spring-boot-client}")
     private String expectedAudience;
 
+    /**
+     * Caché de tokens ya verificados (ver CachingReactiveJwtDecoder)
+     *
+     * jwt:
+     *   cache:
+     *     enabled: true
+     *     max-size: 10000
+     */
+    @Value("${jwt.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${jwt.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    /**
+     * Scheduler dedicado para verificar JWT (fuera del event loop de Netty)
+     *
+     * jwt:
+     *   verification:
+     *     threads: 4            # Hilos máximos (por defecto: nº de CPUs)
+     *     queue-capacity: 10000 # Verificaciones en espera antes de rechazar
+     */
+    @Value("${jwt.verification.threads:0}")
+    private int verificationThreads;
+
+    @Value("${jwt.verification.queue-capacity:10000}")
+    private int verificationQueueCapacity;
+
+    /**
+     * Scheduler acotado donde se ejecuta la verificación RSA.
+     *
+     * ¿POR QUÉ NO EN EL EVENT LOOP?
+     * =============================
+     *
+     * Reactor Netty atiende MUCHAS conexiones con POCOS hilos (event loop).
+     * Si un hilo del event loop se queda verificando una firma RSA,
+     * TODAS las conexiones de ese loop esperan.
+     *
+     * Con un scheduler dedicado:
+     * - El event loop solo recibe/envía bytes
+     * - La CPU de verificación tiene su propio pool acotado
+     * - Si la cola se llena → 503 (en vez de degradar todo el Gateway)
+     *
+     * @return Scheduler acotado (bounded elastic)
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler jwtVerificationScheduler() {
+        int threads = verificationThreads > 0 ? verificationThreads : Runtime.getRuntime().availableProcessors();
+
+        log.info("Verificación de JWT - Hilos: {}, Cola: {}", threads, verificationQueueCapacity);
+
+        return Schedulers.newBoundedElastic(threads, verificationQueueCapacity, "jwt-verification");
+    }
+
     /**
      * Configuración del decoder de JWT con validación de audience.
      *
@@ -94,15 +158,36 @@ public class JwtConfig {
      * 4. Validar issuer
      * 5. Validar audience (NUEVO)
      *
+     * Los tokens ya verificados se guardan en caché hasta su "exp",
+     * así la verificación RS256 solo se paga una vez por token.
+     *
+     * NO BLOQUEANTE:
+     * ==============
+     * - Las claves públicas (JWKS) se descargan con WebClient
+     *   (ReactiveJwkSetSource), sin bloquear ningún hilo
+     * - La verificación de firma corre en jwtVerificationScheduler, también
+     *   cuando las claves recién llegaron de la red (primera request o
+     *   rotación): ReactiveJwkSetSource las emite con publishOn
+     * - Los HIT de caché responden directamente, sin cambiar de hilo
+     *
      * @param issuerUri URI del emisor de JWT (Keycloak)
+     * @param jwkSetUri URI de las claves públicas de Keycloak (JWKS)
+     * @param jwtVerificationScheduler Scheduler dedicado a la verificación
+     * @param meterRegistry Registro de métricas (hit rate de la caché)
      * @return Decoder reactivo configurado con validación de audience
      */
     @Bean
     public ReactiveJwtDecoder reactiveJwtDecoder(
-        @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuerUri
+        @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuerUri,
+        @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") String jwkSetUri,
+        Scheduler jwtVerificationScheduler,
+        ObjectProvider<MeterRegistry> meterRegistry
     ) {
-        // Crear decoder no reactivo primero (para configurar validators)
-        NimbusJwtDecoder jwtDecoder = JwtDecoders.fromIssuerLocation(issuerUri);
+        // Decoder reactivo: descarga el JWKS con WebClient (no bloqueante) y
+        // verifica la firma en el hilo donde se emiten las claves → el scheduler
+        NimbusReactiveJwtDecoder jwtDecoder = NimbusReactiveJwtDecoder
+            .withJwkSource(new ReactiveJwkSetSource(WebClient.create(), jwkSetUri, jwtVerificationScheduler))
+            .build();
 
         // ==========================================
         // VALIDATORS
@@ -126,13 +211,13 @@ public class JwtConfig {
         // Aplicar validators al decoder
         jwtDecoder.setJwtValidator(combinedValidator);
 
-        // Convertir a ReactiveJwtDecoder con logging para ver la validación
-        return token -> Mono.fromCallable(() -> {
-            log.debug("Validando JWT en Gateway - Token: {}...", token.substring(0, Math.min(50, token.length())));
-
-            try {
-                Jwt jwt = jwtDecoder.decode(token);
-
+        // Verificación en el scheduler dedicado, con logging para ver la validación
+        ReactiveJwtDecoder verifyingDecoder = token -> Mono.defer(() -> {
+                log.debug("Validando JWT en Gateway - Token: {}...", token.substring(0, Math.min(50, token.length())));
+                return jwtDecoder.decode(token);
+            })
+            .subscribeOn(jwtVerificationScheduler)
+            .doOnNext(jwt -> {
                 if (log.isDebugEnabled()) {
                     log.debug("Token válido en Gateway - Usuario: {}, Issuer: {}, Audience: {}, Expira: {}, Roles: {}",
                         jwt.getClaimAsString("preferred_username"),
@@ -143,13 +228,21 @@ public class JwtConfig {
                 } else {
                     log.info("Token válido en Gateway - Usuario: {}", jwt.getClaimAsString("preferred_username"));
                 }
+            })
+            .onErrorMap(RejectedExecutionException.class, e -> {
+                // Cola de verificación llena → 503, el cliente puede reintentar
+                log.warn("Cola de verificación de JWT llena - Request rechazado");
+                return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "JWT verification queue full", e);
+            })
+            .doOnError(JwtException.class, e -> log.error("Token inválido en Gateway: {}", e.getMessage()));
+
+        if (!cacheEnabled) {
+            log.info("Caché de JWT verificados: DESHABILITADA");
+            return verifyingDecoder;
+        }
 
-                return jwt;
-            } catch (Exception e) {
-                log.error("Token inválido en Gateway: {}", e.getMessage());
-                throw e;
-            }
-        });
+        log.info("Caché de JWT verificados: HABILITADA - Tamaño máximo: {}", cacheMaxSize);
+        return new CachingReactiveJwtDecoder(verifyingDecoder, cacheMaxSize, meterRegistry.getIfAvailable());
     }
 
     /**
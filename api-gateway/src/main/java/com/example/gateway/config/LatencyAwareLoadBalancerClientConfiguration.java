@@ -0,0 +1,35 @@
+package com.example.gateway.config;
+
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Load balancer de cada servicio (contexto hijo de Spring Cloud LoadBalancer)
+ *
+ * Registrada con @LoadBalancerClients en LatencyAwareLoadBalancerConfig.
+ * SIN @Configuration a propósito: si la encontrara el component scan,
+ * este bean terminaría en el contexto principal (sin servicio asociado).
+ *
+ * Copia de com.example.order.config.LatencyAwareLoadBalancerClientConfiguration
+ * (order-service, fuente de verdad): solo cambia el paquete.
+ */
+class LatencyAwareLoadBalancerClientConfiguration {
+
+    @Bean
+    public ReactorLoadBalancer<ServiceInstance> reactorServiceInstanceLoadBalancer(
+        Environment environment,
+        LoadBalancerClientFactory loadBalancerClientFactory,
+        LoadBalancerStats loadBalancerStats
+    ) {
+        String name = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        double minAvailablePercent = environment.getProperty(
+            "loadbalancer.latency-aware.min-available-percent", Double.class, 50.0);
+        return new LatencyAwareLoadBalancer(
+            loadBalancerClientFactory.getLazyProvider(name, ServiceInstanceListSupplier.class),
+            loadBalancerStats, minAvailablePercent);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.gateway.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Load balancer por latencia para TODAS las rutas lb://
+ *
+ * Reemplaza round-robin por LatencyAwareLoadBalancer (P2C) en cada
+ * servicio de gateway.yml (user-service, product-service, order-service).
+ *
+ * - LoadBalancerStats es UNO para todo el Gateway: recibe
+ *   onStartRequest/onComplete de cada request ruteada (ReactiveLoadBalancerClientFilter)
+ * - LatencyAwareLoadBalancerClientConfiguration se instancia en el
+ *   contexto de CADA servicio (@LoadBalancerClients)
+ *
+ * Desactivar: LATENCY_AWARE_LB_ENABLED=false (vuelve a round-robin).
+ */
+@Configuration
+@ConditionalOnProperty(name = "loadbalancer.latency-aware.enabled", matchIfMissing = true)
+@LoadBalancerClients(defaultConfiguration = LatencyAwareLoadBalancerClientConfiguration.class)
+public class LatencyAwareLoadBalancerConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(LatencyAwareLoadBalancerConfig.class);
+
+    @Value("${loadbalancer.latency-aware.decay-time-ms:10000}")
+    private long decayTimeMs;
+
+    @Value("${loadbalancer.latency-aware.consecutive-errors:5}")
+    private int consecutiveErrors;
+
+    @Value("${loadbalancer.latency-aware.base-ejection-time-ms:30000}")
+    private long baseEjectionTimeMs;
+
+    @Value("${loadbalancer.latency-aware.stale-request-timeout-ms:60000}")
+    private long staleRequestTimeoutMs;
+
+    @Bean
+    public LoadBalancerStats loadBalancerStats(ObjectProvider<MeterRegistry> meterRegistry) {
+        log.info("Load balancer P2C - Decaimiento: {} ms, Expulsión: {} errores seguidos → {} ms",
+            decayTimeMs, consecutiveErrors, baseEjectionTimeMs);
+        return new LoadBalancerStats(decayTimeMs, consecutiveErrors, baseEjectionTimeMs, staleRequestTimeoutMs,
+            meterRegistry.getIfAvailable());
+    }
+}
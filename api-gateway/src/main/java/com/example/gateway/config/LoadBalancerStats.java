@@ -0,0 +1,302 @@
+package com.example.gateway.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Estadísticas por instancia para LatencyAwareLoadBalancer
+ *
+ * ⭐ CUÁNTO TARDA Y CUÁNTO TIENE PENDIENTE CADA INSTANCIA ⭐
+ *
+ * Se alimenta de los hooks de Spring Cloud LoadBalancer
+ * (LoadBalancerLifecycle): onStartRequest / onComplete de cada llamada
+ * que pasa por el load balancer (Feign o rutas lb:// del Gateway).
+ *
+ * POR INSTANCIA:
+ * ==============
+ *
+ * - inFlight: requests enviadas sin respuesta todavía
+ * - Latencia "peak EWMA":
+ *   · Una respuesta MÁS LENTA que el promedio lo reemplaza de inmediato
+ *     (una pausa de GC se nota en la próxima elección, no en 10 requests)
+ *   · Una más rápida se promedia con peso exp(-Δt / decay-time)
+ *   · Sin respuestas, el valor DECAE con el tiempo: una instancia que
+ *     estuvo lenta vuelve a recibir tráfico de prueba
+ * - Errores consecutivos (5xx o error de conexión): al llegar a
+ *   "consecutive-errors" la instancia se EXPULSA por base-ejection-time
+ *   × veces expulsada (máximo 5×). Una respuesta OK reinicia la cuenta.
+ *
+ * costo = latencia × (inFlight + 1)
+ *
+ * Instancia sin mediciones: costo 0 si no tiene requests pendientes
+ * (recibe UNA de prueba), infinito mientras esa prueba no vuelva.
+ *
+ * Requests que nunca completan (ej: el cliente del Gateway cancela) se
+ * descartan después de "stale-request-timeout" para no inflar inFlight.
+ *
+ * MÉTRICAS:
+ * =========
+ *
+ *   GET /actuator/metrics/loadbalancer.instance.inflight?tag=service:product-service
+ *   GET /actuator/metrics/loadbalancer.instance.latency?tag=service:product-service
+ *   GET /actuator/metrics/loadbalancer.instance.ejected
+ *   GET /actuator/metrics/loadbalancer.ejections
+ *
+ * COPIA:
+ * ======
+ *
+ * La fuente de verdad es order-service (com.example.order.config.LoadBalancerStats);
+ * los servicios no comparten un módulo común. Esta copia solo cambia el
+ * paquete: cualquier cambio se hace primero allá y se copia acá.
+ */
+public class LoadBalancerStats implements LoadBalancerLifecycle<RequestDataContext, ResponseData, ServiceInstance> {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadBalancerStats.class);
+
+    private static final int MAX_EJECTION_MULTIPLIER = 5;
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long decayNanos;
+    private final int consecutiveErrors;
+    private final long baseEjectionNanos;
+    private final long staleNanos;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, InstanceStats> instances = new ConcurrentHashMap<>();
+    private final Map<RequestKey, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+
+    public LoadBalancerStats(long decayMs, int consecutiveErrors, long baseEjectionMs, long staleRequestMs,
+                             MeterRegistry meterRegistry) {
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(decayMs, 1));
+        this.consecutiveErrors = Math.max(consecutiveErrors, 1);
+        this.baseEjectionNanos = TimeUnit.MILLISECONDS.toNanos(baseEjectionMs);
+        this.staleNanos = TimeUnit.MILLISECONDS.toNanos(staleRequestMs);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean supports(Class requestContextClass, Class responseClass, Class serverTypeClass) {
+        return RequestDataContext.class.isAssignableFrom(requestContextClass)
+            && ResponseData.class.isAssignableFrom(responseClass)
+            && ServiceInstance.class.isAssignableFrom(serverTypeClass);
+    }
+
+    @Override
+    public void onStart(Request<RequestDataContext> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<RequestDataContext> request, Response<ServiceInstance> lbResponse) {
+        if (lbResponse == null || !lbResponse.hasServer()) {
+            return;
+        }
+        long now = System.nanoTime();
+        InstanceStats stats = of(lbResponse.getServer());
+        stats.inFlight.incrementAndGet();
+        pending.put(new RequestKey(request), new Pending(stats, now));
+        sweepIfDue(now);
+    }
+
+    @Override
+    public void onComplete(CompletionContext<ResponseData, ServiceInstance, RequestDataContext> context) {
+        Pending started = pending.remove(new RequestKey(context.getLoadBalancerRequest()));
+        if (started == null) {
+            return;
+        }
+        started.stats().inFlight.decrementAndGet();
+        if (context.status() == CompletionContext.Status.DISCARD) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        ResponseData response = context.getClientResponse();
+        boolean failed = context.status() == CompletionContext.Status.FAILED
+            || (response != null && response.getHttpStatus() != null && response.getHttpStatus().is5xxServerError());
+        started.stats().record(now - started.startNanos(), failed, now);
+    }
+
+    /**
+     * Instancias que se pueden elegir: las no expulsadas. Si quedarían
+     * menos de "minAvailablePercent" de la lista, se ignoran las
+     * expulsiones (mejor una instancia dudosa que ninguna).
+     */
+    List<ServiceInstance> available(List<ServiceInstance> candidates, double minAvailablePercent) {
+        long now = System.nanoTime();
+        List<ServiceInstance> available = new ArrayList<>(candidates.size());
+        for (ServiceInstance instance : candidates) {
+            if (!of(instance).isEjected(now)) {
+                available.add(instance);
+            }
+        }
+        boolean enough = !available.isEmpty() && available.size() * 100.0 >= candidates.size() * minAvailablePercent;
+        return enough ? available : candidates;
+    }
+
+    double cost(ServiceInstance instance) {
+        return of(instance).cost(System.nanoTime());
+    }
+
+    private InstanceStats of(ServiceInstance instance) {
+        String key = instance.getServiceId() + "/" + instance.getHost() + ":" + instance.getPort();
+        InstanceStats stats = instances.get(key);
+        return stats != null ? stats : instances.computeIfAbsent(key, k -> newStats(instance));
+    }
+
+    private InstanceStats newStats(ServiceInstance instance) {
+        InstanceStats stats = new InstanceStats(instance.getServiceId(), instance.getHost() + ":" + instance.getPort());
+        if (meterRegistry != null) {
+            Gauge.builder("loadbalancer.instance.inflight", stats, s -> s.inFlight.get())
+                .tag("service", stats.service).tag("instance", stats.address)
+                .register(meterRegistry);
+            Gauge.builder("loadbalancer.instance.latency", stats, s -> s.latencyNanos(System.nanoTime()) / 1_000_000.0)
+                .tag("service", stats.service).tag("instance", stats.address)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+            Gauge.builder("loadbalancer.instance.ejected", stats, s -> s.isEjected(System.nanoTime()) ? 1 : 0)
+                .tag("service", stats.service).tag("instance", stats.address)
+                .register(meterRegistry);
+        }
+        return stats;
+    }
+
+    private void sweepIfDue(long now) {
+        long sweepAt = nextSweep.get();
+        if (now - sweepAt < 0 || !nextSweep.compareAndSet(sweepAt, now + SWEEP_INTERVAL_NANOS)) {
+            return;
+        }
+        pending.entrySet().removeIf(entry -> {
+            if (now - entry.getValue().startNanos() < staleNanos) {
+                return false;
+            }
+            entry.getValue().stats().inFlight.decrementAndGet();
+            return true;
+        });
+    }
+
+    /**
+     * Estado de una instancia.
+     */
+    final class InstanceStats {
+
+        private final String service;
+        private final String address;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicReference<Ewma> ewma = new AtomicReference<>();
+        private final AtomicInteger errors = new AtomicInteger();
+        private final AtomicInteger ejections = new AtomicInteger();
+        private volatile long ejectedUntil;
+        private volatile boolean ejected;
+
+        InstanceStats(String service, String address) {
+            this.service = service;
+            this.address = address;
+        }
+
+        void record(long rttNanos, boolean failed, long now) {
+            ewma.accumulateAndGet(new Ewma(rttNanos, now), (current, sample) -> {
+                if (current == null || sample.nanos() >= current.decayed(sample.stamp(), decayNanos)) {
+                    return sample;  // Peak: lo lento se nota de inmediato
+                }
+                double weight = Math.exp(-(double) (sample.stamp() - current.stamp()) / decayNanos);
+                return new Ewma(current.nanos() * weight + sample.nanos() * (1 - weight), sample.stamp());
+            });
+
+            if (!failed) {
+                errors.set(0);
+            } else if (errors.incrementAndGet() >= consecutiveErrors && !isEjected(now)) {
+                eject(now);
+            }
+        }
+
+        double cost(long now) {
+            double latency = latencyNanos(now);
+            if (latency < 0) {
+                return inFlight.get() == 0 ? 0 : Double.MAX_VALUE;
+            }
+            return latency * (inFlight.get() + 1);
+        }
+
+        double latencyNanos(long now) {
+            Ewma current = ewma.get();
+            return current == null ? -1 : current.decayed(now, decayNanos);
+        }
+
+        boolean isEjected(long now) {
+            if (ejected && now - ejectedUntil >= 0) {
+                ejected = false;
+                log.info("Instancia {} ({}) vuelve al load balancer", address, service);
+            }
+            return ejected;
+        }
+
+        private void eject(long now) {
+            int times = Math.min(ejections.incrementAndGet(), MAX_EJECTION_MULTIPLIER);
+            ejectedUntil = now + baseEjectionNanos * times;
+            ejected = true;
+            errors.set(0);
+            log.warn("Instancia {} ({}) expulsada del load balancer por {} ms ({} errores seguidos)",
+                address, service, TimeUnit.NANOSECONDS.toMillis(baseEjectionNanos * times), consecutiveErrors);
+            if (meterRegistry != null) {
+                Counter.builder("loadbalancer.ejections")
+                    .tag("service", service).tag("instance", address)
+                    .register(meterRegistry)
+                    .increment();
+            }
+        }
+    }
+
+    /**
+     * Latencia promedio y cuándo se midió.
+     */
+    record Ewma(double nanos, long stamp) {
+        double decayed(long now, long decayNanos) {
+            long elapsed = Math.max(now - stamp, 0);
+            return nanos * Math.exp(-(double) elapsed / decayNanos);
+        }
+    }
+
+    record Pending(InstanceStats stats, long startNanos) {
+    }
+
+    /**
+     * DefaultRequest compara por valor (dos GET iguales son "iguales"):
+     * acá cada request es una clave distinta.
+     */
+    private static final class RequestKey {
+        private final Object request;
+
+        RequestKey(Object request) {
+            this.request = request;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof RequestKey key && key.request == request;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(request);
+        }
+    }
+}
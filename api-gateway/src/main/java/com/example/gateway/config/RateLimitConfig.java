@@ -0,0 +1,84 @@
+package com.example.gateway.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ipresolver.RemoteAddressResolver;
+import org.springframework.cloud.gateway.support.ipresolver.XForwardedRemoteAddressResolver;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * Claves del rate limiter (KeyResolver)
+ *
+ * ⭐ ¿A QUIÉN SE LE CUENTAN LAS REQUESTS? ⭐
+ *
+ * El filtro RequestRateLimiter pide una clave por request; cada clave
+ * tiene su propio bucket (ver LocalRateLimiter):
+ *
+ * - userKeyResolver (default): "preferred_username" del JWT. Requests
+ *   sin JWT (ej: /actuator) → IP del cliente
+ * - ipKeyResolver: IP del cliente
+ * - routeKeyResolver: la ruta entera comparte UN bucket (protege al
+ *   servicio, no reparte entre usuarios)
+ *
+ * En gateway.yml: key-resolver: "#{@ipKeyResolver}"
+ *
+ * IP DEL CLIENTE:
+ * ===============
+ *
+ * Por defecto, la dirección de la conexión. Detrás de un proxy / load
+ * balancer (que se ve como UNA sola IP) configurar
+ * RATE_LIMIT_TRUSTED_PROXIES = cantidad de proxies propios delante del
+ * Gateway: se toma la IP de X-Forwarded-For salteando esos saltos. NO
+ * confiar en más saltos de los reales: el cliente puede inventar el
+ * resto del header.
+ */
+@Configuration
+public class RateLimitConfig {
+
+    @Value("${rate-limit.trusted-proxies:0}")
+    private int trustedProxies;
+
+    @Bean
+    @Primary
+    public KeyResolver userKeyResolver() {
+        KeyResolver ip = ipKeyResolver();
+        return exchange -> exchange.getPrincipal()
+            .filter(JwtAuthenticationToken.class::isInstance)
+            .cast(JwtAuthenticationToken.class)
+            .map(authentication -> {
+                String username = authentication.getToken().getClaimAsString("preferred_username");
+                return "user:" + (username != null ? username : authentication.getName());
+            })
+            .switchIfEmpty(Mono.defer(() -> ip.resolve(exchange)));
+    }
+
+    @Bean
+    public KeyResolver ipKeyResolver() {
+        RemoteAddressResolver resolver = trustedProxies > 0
+            ? XForwardedRemoteAddressResolver.maxTrustedIndex(trustedProxies)
+            : new RemoteAddressResolver() { };
+        return exchange -> Mono.justOrEmpty(resolver.resolve(exchange))
+            .map(RateLimitConfig::host)
+            .map(host -> "ip:" + host);
+    }
+
+    @Bean
+    public KeyResolver routeKeyResolver() {
+        return exchange -> Mono.justOrEmpty((Route) exchange.getAttribute(GATEWAY_ROUTE_ATTR))
+            .map(route -> "route:" + route.getId());
+    }
+
+    private static String host(InetSocketAddress address) {
+        return address.getAddress() != null ? address.getAddress().getHostAddress() : address.getHostString();
+    }
+}
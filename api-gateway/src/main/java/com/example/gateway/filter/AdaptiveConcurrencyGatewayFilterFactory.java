@@ -0,0 +1,260 @@
+package com.example.gateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * AdaptiveConcurrency Filter - Límite de concurrencia por ruta y load shedding
+ *
+ * ⭐ SI EL SERVICIO SE SATURA, EL EXCESO SE RECHAZA YA, NO HACE COLA ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * Cuando Product Service se pone lento, las requests se acumulan: en
+ * Netty, en el pool de conexiones, en los threads de Tomcat. Cada una
+ * espera detrás de las anteriores y el p99 crece sin techo (todas
+ * terminan en timeout, también las que llegaron cuando había lugar).
+ *
+ * SOLUCIÓN:
+ * =========
+ *
+ * 1. Cada ruta tiene un límite de requests simultáneas que se APRENDE
+ *    de la latencia (GradientLimit): sube mientras la latencia no sube,
+ *    baja cuando aparece cola
+ * 2. Requests por encima del límite → 503 + Retry-After INMEDIATO
+ *    (el cliente reintenta más tarde, o contra otra réplica)
+ * 3. Las que entran encuentran al servicio sin cola: p99 acotado
+ *
+ * PRIORIDADES:
+ * ============
+ *
+ * - CRITICAL (criticalPaths, ej: /actuator/**, health): nunca se
+ *   rechazan. Un servicio lento que además no contesta health checks
+ *   termina reiniciado en el peor momento
+ * - SHEDDABLE (GET a sheddablePaths, ej: listados): solo usan una parte
+ *   del límite (sheddableShare). Son las primeras en rechazarse
+ * - NORMAL: el resto
+ *
+ * Una request ocupa su lugar hasta que llegan los headers de la
+ * respuesta: la latencia medida no depende de qué tan rápido lee el
+ * cliente el body. Respuestas 5xx y errores no cuentan para la
+ * latencia: de eso se encarga el CircuitBreaker.
+ *
+ * USO (default-filters en gateway.yml):
+ * =====================================
+ *
+ *   - name: AdaptiveConcurrency
+ *     args:
+ *       enabled: true
+ *       initialLimit: 50
+ *       sheddablePaths: /api/products, /api/orders
+ *
+ * MÉTRICAS:
+ * =========
+ *
+ *   GET /actuator/metrics/gateway.concurrency.limit?tag=route:product-service
+ *   GET /actuator/metrics/gateway.concurrency.inflight?tag=route:product-service
+ *   GET /actuator/metrics/gateway.concurrency.rejected?tag=route:product-service&tag=priority:sheddable
+ */
+@Component
+public class AdaptiveConcurrencyGatewayFilterFactory
+    extends AbstractGatewayFilterFactory<AdaptiveConcurrencyGatewayFilterFactory.Config> {
+
+    private static final Logger log = LoggerFactory.getLogger(AdaptiveConcurrencyGatewayFilterFactory.class);
+
+    private static final PathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    private final Map<String, RouteState> routes = new ConcurrentHashMap<>();
+
+    public AdaptiveConcurrencyGatewayFilterFactory(ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        super(Config.class);
+        this.meterRegistryProvider = meterRegistryProvider;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = String.valueOf(config.getRouteId());
+        RouteState previous = routes.get(routeId);
+        RouteState state = routeState(routeId, config);
+        GradientLimit limit = state.limit();
+
+        if (config.isEnabled() && state != previous) {
+            log.info("AdaptiveConcurrency Filter - Ruta: {}, Límite inicial: {} (entre {} y {}), Listados: {}% del límite",
+                routeId, config.getInitialLimit(), config.getMinLimit(), config.getMaxLimit(),
+                Math.round(config.getSheddableShare() * 100));
+        }
+
+        return (exchange, chain) -> {
+            if (!config.isEnabled()) {
+                return chain.filter(exchange);
+            }
+            Priority priority = priority(exchange.getRequest(), config);
+            int inFlightAtStart = limit.tryAcquire(priority.share(config));
+            if (inFlightAtStart < 0) {
+                return reject(exchange, state, priority);
+            }
+
+            // La cadena termina al llegar los headers de la respuesta (el body
+            // lo escribe después NettyWriteResponseFilter)
+            long start = System.nanoTime();
+            return chain.filter(exchange).doFinally(signal -> {
+                HttpStatusCode status = exchange.getResponse().getStatusCode();
+                boolean ok = signal == SignalType.ON_COMPLETE && (status == null || !status.is5xxServerError());
+                limit.release(ok ? System.nanoTime() - start : -1, inFlightAtStart);
+            });
+        };
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, RouteState state, Priority priority) {
+        Counter rejected = state.rejected().get(priority);
+        if (rejected != null) {
+            rejected.increment();
+        }
+        log.debug("AdaptiveConcurrency - Ruta: {} saturada ({} de {}), rechazada: {} {}",
+            state.config().getRouteId(), state.limit().getInFlight(), state.limit().getLimit(),
+            exchange.getRequest().getMethod(), exchange.getRequest().getPath());
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+            String.valueOf(Math.max(1, state.config().getRetryAfter().toSeconds())));
+        return response.setComplete();
+    }
+
+    private static Priority priority(ServerHttpRequest request, Config config) {
+        String path = request.getPath().value();
+        if (matches(config.getCriticalPaths(), path)) {
+            return Priority.CRITICAL;
+        }
+        if (request.getMethod() == HttpMethod.GET && matches(config.getSheddablePaths(), path)) {
+            return Priority.SHEDDABLE;
+        }
+        return Priority.NORMAL;
+    }
+
+    private static boolean matches(List<String> patterns, String path) {
+        for (String pattern : patterns) {
+            if (PATH_MATCHER.match(pattern.trim(), path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Límite de la ruta. El Gateway vuelve a llamar a apply() cada vez que
+     * refresca las rutas: el límite aprendido se conserva mientras la
+     * configuración no cambie.
+     */
+    private RouteState routeState(String routeId, Config config) {
+        return routes.compute(routeId, (id, current) -> {
+            if (current != null && current.config().equals(config)) {
+                return current;
+            }
+            GradientLimit limit = new GradientLimit(config.getInitialLimit(), config.getMinLimit(), config.getMaxLimit(),
+                config.getSmoothing(), config.getRttTolerance(), config.getWindow().toMillis(), config.getMinSamples());
+            return new RouteState(config, limit, register(id, current == null));
+        });
+    }
+
+    private Map<Priority, Counter> register(String routeId, boolean newRoute) {
+        Map<Priority, Counter> rejected = new EnumMap<>(Priority.class);
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable();
+        if (meterRegistry == null) {
+            return rejected;
+        }
+        if (newRoute) {
+            Gauge.builder("gateway.concurrency.limit", routes, states -> limitOf(states.get(routeId)))
+                .tag("route", routeId)
+                .register(meterRegistry);
+            Gauge.builder("gateway.concurrency.inflight", routes, states -> inFlightOf(states.get(routeId)))
+                .tag("route", routeId)
+                .register(meterRegistry);
+        }
+        for (Priority priority : Priority.values()) {
+            rejected.put(priority, Counter.builder("gateway.concurrency.rejected")
+                .tag("route", routeId)
+                .tag("priority", priority.name().toLowerCase())
+                .register(meterRegistry));
+        }
+        return rejected;
+    }
+
+    private static double limitOf(RouteState state) {
+        return state == null ? Double.NaN : state.limit().getLimit();
+    }
+
+    private static double inFlightOf(RouteState state) {
+        return state == null ? Double.NaN : state.limit().getInFlight();
+    }
+
+    /**
+     * Prioridad de una request: qué parte del límite puede usar.
+     */
+    enum Priority {
+        CRITICAL, NORMAL, SHEDDABLE;
+
+        double share(Config config) {
+            return switch (this) {
+                case CRITICAL -> Double.POSITIVE_INFINITY;
+                case NORMAL -> 1.0;
+                case SHEDDABLE -> config.getSheddableShare();
+            };
+        }
+    }
+
+    private record RouteState(Config config, GradientLimit limit, Map<Priority, Counter> rejected) {
+    }
+
+    /**
+     * Configuración del filtro (args en gateway.yml).
+     */
+    @Data
+    public static class Config implements HasRouteId {
+        private boolean enabled = true;
+        private int initialLimit = 50;
+        private int minLimit = 10;
+        private int maxLimit = 1000;
+        /** Cuánto se mueve el límite en cada ventana (0-1) */
+        private double smoothing = 0.2;
+        /** Latencia reciente tolerada sobre la de largo plazo antes de bajar el límite */
+        private double rttTolerance = 1.5;
+        private Duration window = Duration.ofMillis(100);
+        private int minSamples = 10;
+        /** Parte del límite que pueden usar los listados (GET a sheddablePaths) */
+        private double sheddableShare = 0.75;
+        private List<String> criticalPaths = List.of("/**/actuator/**", "/**/health/**");
+        private List<String> sheddablePaths = List.of();
+        private Duration retryAfter = Duration.ofSeconds(1);
+        private String routeId;
+    }
+}
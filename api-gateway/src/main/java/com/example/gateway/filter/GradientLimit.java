@@ -0,0 +1,166 @@
+package com.example.gateway.filter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Límite de concurrencia adaptativo de una ruta (algoritmo "gradient")
+ *
+ * ⭐ CUÁNTAS REQUESTS A LA VEZ AGUANTA EL SERVICIO, MEDIDO, NO ADIVINADO ⭐
+ *
+ * IDEA (como TCP Vegas):
+ * ======================
+ *
+ * Si el servicio tiene capacidad de sobra, más requests simultáneas NO
+ * aumentan la latencia. Cuando se satura, las requests empiezan a hacer
+ * cola adentro y la latencia SUBE. Comparando la latencia reciente con
+ * la de largo plazo se sabe si hay cola:
+ *
+ *   gradiente = tolerancia × latencia_larga / latencia_corta   (entre 0.5 y 1)
+ *
+ * - gradiente = 1 → sin cola: el límite crece (+ √límite)
+ * - gradiente < 1 → hay cola: el límite baja en proporción
+ *
+ *   nuevo = límite × gradiente + √límite
+ *   límite = límite × (1 - smoothing) + nuevo × smoothing
+ *
+ * DETALLES:
+ * =========
+ *
+ * - Se actualiza una vez por ventana ("window", con al menos
+ *   "min-samples" respuestas), usando la latencia promedio de la ventana
+ * - latencia_larga = promedio exponencial de ~600 ventanas. Si la corta
+ *   quedó muy por debajo (menos de la mitad), la larga se acerca más
+ *   rápido: el servicio se recuperó
+ * - Si nunca se usó ni la mitad del límite, no se toca: con poco tráfico
+ *   no hay nada que aprender
+ *
+ * inFlight se maneja con compare-and-set; solo el cierre de cada ventana
+ * toma un lock (synchronized).
+ */
+public class GradientLimit {
+
+    private static final int LONG_WINDOW = 600;
+    private static final int WARMUP_WINDOWS = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double tolerance;
+    private final long windowNanos;
+    private final int minSamples;
+    private final LongSupplier nanoClock;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    // Ventana actual y latencia larga (solo con el lock)
+    private long windowStart;
+    private long windowRttSum;
+    private int windowSamples;
+    private int windowMaxInFlight;
+    private double longRtt;
+    private int longSamples;
+
+    public GradientLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, double tolerance,
+                         long windowMs, int minSamples) {
+        this(initialLimit, minLimit, maxLimit, smoothing, tolerance, windowMs, minSamples, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock Reloj en nanosegundos (System::nanoTime; en tests, uno manual)
+     */
+    GradientLimit(int initialLimit, int minLimit, int maxLimit, double smoothing, double tolerance,
+                  long windowMs, int minSamples, LongSupplier nanoClock) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Límites inválidos: min " + minLimit + ", max " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.tolerance = tolerance;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.minSamples = Math.max(minSamples, 1);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.nanoClock = nanoClock;
+        this.windowStart = nanoClock.getAsLong();
+    }
+
+    /**
+     * Intenta ocupar un lugar.
+     *
+     * @param share Parte del límite disponible para esta request (1 = todo;
+     *              Double.POSITIVE_INFINITY = nunca se rechaza)
+     * @return inFlight al entrar (incluida esta), o -1 si se rechaza
+     */
+    public int tryAcquire(double share) {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit * share) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * Libera el lugar. Con rttNanos ≥ 0 la latencia cuenta para el límite.
+     *
+     * @param inFlightAtStart Lo devuelto por tryAcquire
+     */
+    public void release(long rttNanos, int inFlightAtStart) {
+        inFlight.decrementAndGet();
+        if (rttNanos >= 0) {
+            sample(rttNanos, inFlightAtStart);
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void sample(long rttNanos, int inFlightAtStart) {
+        windowRttSum += rttNanos;
+        windowSamples++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightAtStart);
+
+        long now = nanoClock.getAsLong();
+        if (now - windowStart < windowNanos || windowSamples < minSamples) {
+            return;
+        }
+        double shortRtt = (double) windowRttSum / windowSamples;
+        int maxInFlight = windowMaxInFlight;
+        windowStart = now;
+        windowRttSum = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+
+        update(shortRtt, maxInFlight);
+    }
+
+    private void update(double shortRtt, int maxInFlight) {
+        // Promedio exponencial: simple durante el warmup, después ~600 ventanas
+        longSamples++;
+        double factor = longSamples <= WARMUP_WINDOWS ? 1.0 / longSamples : 2.0 / (LONG_WINDOW + 1);
+        longRtt = longSamples == 1 ? shortRtt : longRtt + (shortRtt - longRtt) * factor;
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+
+        double current = limit;
+        if (maxInFlight < current / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double target = current * gradient + Math.sqrt(current);
+        double next = current * (1 - smoothing) + target * smoothing;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+}
@@ -0,0 +1,381 @@
+package com.example.gateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import lombok.Data;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerUriTools;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientResponse;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.CLIENT_RESPONSE_HEADER_NAMES;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.ORIGINAL_RESPONSE_CONTENT_TYPE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.PRESERVE_HOST_HEADER_ATTRIBUTE;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.isAlreadyRouted;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.setAlreadyRouted;
+
+/**
+ * Hedge Filter - Hedged requests para GET
+ *
+ * ⭐ SI UNA INSTANCIA TARDA MÁS DE LO NORMAL, SE PREGUNTA A OTRA ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * El p99 de GET /api/products/{id} no lo define el servicio sino la
+ * instancia lenta de turno (pausa de GC, disco, vecino ruidoso).
+ *
+ * SOLUCIÓN:
+ * =========
+ *
+ * 1. El request va a la instancia elegida por el load balancer (como siempre)
+ * 2. Si no respondió en el p95 de latencia de la ruta → se envía el MISMO
+ *    GET a OTRA instancia (elegida también por el load balancer)
+ * 3. Gana la primera respuesta; la otra conexión se CANCELA (se cierra)
+ *
+ * Solo GET (idempotente). El resto de los métodos pasa sin cambios.
+ *
+ * LÍMITES:
+ * ========
+ *
+ * - maxHedgeRatio: duplicados para a lo sumo ese % de las requests
+ *   (RetryBudget); si toda la ruta está lenta no se duplica la carga
+ * - minDelay: nunca duplicar antes de este tiempo
+ * - initialDelay: retardo hasta tener "minSamples" latencias
+ *
+ * ¿CÓMO FUNCIONA?
+ * ===============
+ *
+ * Corre justo ANTES de NettyRoutingFilter (después del load balancer) y
+ * hace el mismo trabajo: envía el request con el HttpClient del Gateway
+ * y deja la respuesta ganadora en el exchange. NettyWriteResponseFilter
+ * escribe el body como siempre.
+ *
+ * USO:
+ * ====
+ *
+ *   filters:
+ *     - name: Hedge
+ *       args:
+ *         enabled: true
+ *         percentile: 95
+ *         minDelay: 10ms
+ *         maxHedgeRatio: 0.05
+ *
+ * MÉTRICAS:
+ * =========
+ *
+ *   GET /actuator/metrics/gateway.hedge.requests?tag=route:product-service&tag=outcome:hedged
+ *     outcome: not_needed | hedged | budget_exhausted | no_other_instance
+ *   GET /actuator/metrics/gateway.hedge.wins?tag=winner:hedge
+ *   GET /actuator/metrics/gateway.hedge.delay?tag=route:product-service
+ */
+@Component
+public class HedgeGatewayFilterFactory extends AbstractGatewayFilterFactory<HedgeGatewayFilterFactory.Config> {
+
+    private static final Logger log = LoggerFactory.getLogger(HedgeGatewayFilterFactory.class);
+
+    private static final int MAX_INSTANCE_PICKS = 3;
+
+    private final HttpClient httpClient;
+    private final LoadBalancerClientFactory loadBalancerFactory;
+    private final ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider;
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    private final Map<String, RouteState> routes = new ConcurrentHashMap<>();
+
+    private volatile List<HttpHeadersFilter> headersFilters;
+
+    public HedgeGatewayFilterFactory(HttpClient httpClient,
+                                     LoadBalancerClientFactory loadBalancerFactory,
+                                     ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider,
+                                     ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        super(Config.class);
+        this.httpClient = httpClient;
+        this.loadBalancerFactory = loadBalancerFactory;
+        this.headersFiltersProvider = headersFiltersProvider;
+        this.meterRegistryProvider = meterRegistryProvider;
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        String routeId = String.valueOf(config.getRouteId());
+        RouteState previous = routes.get(routeId);
+        RouteState state = routeState(routeId, config);
+        LatencyWindow latency = state.latency();
+        RetryBudget budget = state.budget();
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable();
+
+        if (config.isEnabled() && state != previous) {
+            log.info("Hedge Filter - Ruta: {}, Retardo: p{} (mínimo {}, inicial {}), Máximo: {}% de las requests",
+                routeId, config.getPercentile(), config.getMinDelay(), config.getInitialDelay(),
+                Math.round(config.getMaxHedgeRatio() * 100));
+            if (meterRegistry != null) {
+                Gauge.builder("gateway.hedge.delay", routes, states -> delayMillis(states.get(routeId)))
+                    .tag("route", routeId)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            }
+        }
+
+        GatewayFilter filter = (exchange, chain) -> {
+            URI primaryUrl = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+            Response<ServiceInstance> primary = exchange.getAttribute(GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+            if (!config.isEnabled()
+                || exchange.getRequest().getMethod() != HttpMethod.GET
+                || isAlreadyRouted(exchange)
+                || primaryUrl == null || !isHttp(primaryUrl)
+                || primary == null || !primary.hasServer()) {
+                return chain.filter(exchange);
+            }
+            setAlreadyRouted(exchange);
+
+            budget.deposit();
+            AtomicBoolean claimed = new AtomicBoolean();
+            AtomicBoolean hedged = new AtomicBoolean();
+
+            Mono<Attempt> first = send(exchange, primaryUrl, "primary", latency, claimed);
+            Mono<Attempt> second = Mono.delay(delay(latency, config))
+                .flatMap(tick -> {
+                    if (!budget.tryWithdraw()) {
+                        count(meterRegistry, routeId, "budget_exhausted");
+                        return Mono.empty();
+                    }
+                    return chooseOther(exchange, primary.getServer(), primaryUrl)
+                        .switchIfEmpty(Mono.fromRunnable(() -> count(meterRegistry, routeId, "no_other_instance")));
+                })
+                .flatMap(hedgeUrl -> {
+                    hedged.set(true);
+                    count(meterRegistry, routeId, "hedged");
+                    log.debug("Hedge {} → {} (primaria {} sin responder)", routeId, hedgeUrl, primaryUrl);
+                    return send(exchange, hedgeUrl, "hedge", latency, claimed);
+                });
+
+            return Mono.firstWithValue(first, second)
+                .onErrorMap(NoSuchElementException.class, HedgeGatewayFilterFactory::firstFailure)
+                .doOnNext(winner -> {
+                    if (!hedged.get()) {
+                        count(meterRegistry, routeId, "not_needed");
+                    }
+                    if (meterRegistry != null) {
+                        Counter.builder("gateway.hedge.wins")
+                            .tag("route", routeId)
+                            .tag("winner", winner.name())
+                            .register(meterRegistry)
+                            .increment();
+                    }
+                    commit(exchange, winner);
+                })
+                .then(chain.filter(exchange));
+        };
+
+        // Después del load balancer, antes de NettyRoutingFilter
+        return new OrderedGatewayFilter(filter, NettyRoutingFilter.ORDER - 1);
+    }
+
+    /**
+     * Envía el GET a una instancia. Solo la primera respuesta se queda
+     * con el exchange: las demás cierran su conexión.
+     */
+    private Mono<Attempt> send(ServerWebExchange exchange, URI url, String name,
+                               LatencyWindow latency, AtomicBoolean claimed) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            HttpHeaders filtered = HttpHeadersFilter.filterRequest(headersFilters(), exchange);
+            DefaultHttpHeaders nettyHeaders = new DefaultHttpHeaders();
+            filtered.forEach(nettyHeaders::set);
+            boolean preserveHost = exchange.getAttributeOrDefault(PRESERVE_HOST_HEADER_ATTRIBUTE, false);
+            String host = exchange.getRequest().getHeaders().getFirst(HttpHeaders.HOST);
+
+            return httpClient
+                .headers(headers -> {
+                    headers.add(nettyHeaders);
+                    headers.remove(HttpHeaders.HOST);
+                    if (preserveHost && host != null) {
+                        headers.add(HttpHeaders.HOST, host);
+                    }
+                })
+                .get()
+                .uri(url.toASCIIString())
+                .responseConnection((response, connection) -> Mono.just(new Attempt(name, url, response, connection)))
+                .next()
+                .doOnNext(attempt -> latency.record(System.nanoTime() - start))
+                .filter(attempt -> {
+                    if (claimed.compareAndSet(false, true)) {
+                        return true;
+                    }
+                    attempt.connection().dispose();  // Perdedora
+                    return false;
+                });
+        });
+    }
+
+    /**
+     * Otra instancia del servicio, elegida por el load balancer (hasta 3 intentos).
+     */
+    private Mono<URI> chooseOther(ServerWebExchange exchange, ServiceInstance primary, URI primaryUrl) {
+        ReactorServiceInstanceLoadBalancer loadBalancer =
+            loadBalancerFactory.getInstance(primary.getServiceId(), ReactorServiceInstanceLoadBalancer.class);
+        if (loadBalancer == null) {
+            return Mono.empty();
+        }
+        DefaultRequest<RequestDataContext> request =
+            new DefaultRequest<>(new RequestDataContext(new RequestData(exchange.getRequest()), "default"));
+
+        return Mono.defer(() -> Mono.from(loadBalancer.choose(request)))
+            .repeat(MAX_INSTANCE_PICKS - 1)
+            .filter(response -> response.hasServer() && !sameInstance(response.getServer(), primary))
+            .next()
+            .map(response -> LoadBalancerUriTools.reconstructURI(response.getServer(), primaryUrl));
+    }
+
+    /**
+     * Deja la respuesta ganadora en el exchange (igual que NettyRoutingFilter).
+     */
+    private void commit(ServerWebExchange exchange, Attempt winner) {
+        HttpClientResponse clientResponse = winner.response();
+        exchange.getAttributes().put(GATEWAY_REQUEST_URL_ATTR, winner.url());
+        exchange.getAttributes().put(CLIENT_RESPONSE_ATTR, clientResponse);
+        exchange.getAttributes().put(CLIENT_RESPONSE_CONN_ATTR, winner.connection());
+
+        HttpHeaders headers = new HttpHeaders();
+        clientResponse.responseHeaders().forEach(entry -> headers.add(entry.getKey(), entry.getValue()));
+        String contentType = headers.getFirst(HttpHeaders.CONTENT_TYPE);
+        if (StringUtils.hasLength(contentType)) {
+            exchange.getAttributes().put(ORIGINAL_RESPONSE_CONTENT_TYPE_ATTR, contentType);
+        }
+
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatusCode.valueOf(clientResponse.status().code()));
+
+        HttpHeaders filtered = HttpHeadersFilter.filter(headersFilters(), headers, exchange, HttpHeadersFilter.Type.RESPONSE);
+        if (!filtered.containsKey(HttpHeaders.TRANSFER_ENCODING) && filtered.containsKey(HttpHeaders.CONTENT_LENGTH)) {
+            response.getHeaders().remove(HttpHeaders.TRANSFER_ENCODING);
+        }
+        exchange.getAttributes().put(CLIENT_RESPONSE_HEADER_NAMES, filtered.keySet());
+        response.getHeaders().addAll(filtered);
+    }
+
+    /**
+     * Latencias y presupuesto de la ruta. El Gateway vuelve a llamar a
+     * apply() cada vez que refresca las rutas (ej: cambios en Eureka):
+     * el estado se conserva mientras la configuración no cambie.
+     */
+    private RouteState routeState(String routeId, Config config) {
+        return routes.compute(routeId, (id, current) -> current != null && current.config().equals(config)
+            ? current
+            : new RouteState(config,
+                new LatencyWindow(1024, config.getPercentile(), config.getMinSamples()),
+                new RetryBudget(config.getMaxHedgeRatio(), 1)));
+    }
+
+    private List<HttpHeadersFilter> headersFilters() {
+        if (headersFilters == null) {
+            headersFilters = headersFiltersProvider.getIfAvailable(List::of);
+        }
+        return headersFilters;
+    }
+
+    private static Duration delay(LatencyWindow latency, Config config) {
+        long percentile = latency.percentileNanos();
+        Duration delay = percentile > 0 ? Duration.ofNanos(percentile) : config.getInitialDelay();
+        return delay.compareTo(config.getMinDelay()) < 0 ? config.getMinDelay() : delay;
+    }
+
+    private static double delayMillis(RouteState state) {
+        return state == null ? Double.NaN : delay(state.latency(), state.config()).toNanos() / 1_000_000.0;
+    }
+
+    private static void count(MeterRegistry meterRegistry, String routeId, String outcome) {
+        if (meterRegistry != null) {
+            Counter.builder("gateway.hedge.requests")
+                .tag("route", routeId)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+        }
+    }
+
+    /**
+     * Ningún intento respondió: se propaga el error del primero.
+     */
+    private static Throwable firstFailure(NoSuchElementException e) {
+        Throwable cause = e.getCause();
+        if (cause != null && cause.getSuppressed().length > 0) {
+            return cause.getSuppressed()[0];
+        }
+        return cause != null ? cause : e;
+    }
+
+    private static boolean isHttp(URI url) {
+        return "http".equalsIgnoreCase(url.getScheme()) || "https".equalsIgnoreCase(url.getScheme());
+    }
+
+    private static boolean sameInstance(ServiceInstance a, ServiceInstance b) {
+        return Objects.equals(a.getHost(), b.getHost()) && a.getPort() == b.getPort();
+    }
+
+    /**
+     * Un intento con respuesta (headers recibidos, body todavía sin leer).
+     */
+    record Attempt(String name, URI url, HttpClientResponse response, Connection connection) {
+    }
+
+    record RouteState(Config config, LatencyWindow latency, RetryBudget budget) {
+    }
+
+    /**
+     * Configuración del filtro (args en gateway.yml).
+     *
+     * routeId lo completa el Gateway (HasRouteId): tag de las métricas.
+     */
+    @Data
+    public static class Config implements HasRouteId {
+        private boolean enabled = false;
+        private double percentile = 95;
+        private Duration minDelay = Duration.ofMillis(10);
+        private Duration initialDelay = Duration.ofMillis(50);
+        private int minSamples = 100;
+        private double maxHedgeRatio = 0.05;
+        private String routeId;
+    }
+}
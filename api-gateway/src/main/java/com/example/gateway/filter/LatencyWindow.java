@@ -0,0 +1,86 @@
+package com.example.gateway.filter;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Percentil de latencia de las últimas N llamadas
+ *
+ * ⭐ "¿CUÁNTO TARDA NORMALMENTE?" SIN HISTOGRAMAS NI LOCKS ⭐
+ *
+ * - record(): guarda la latencia en un buffer circular (AtomicLongArray)
+ * - percentileNanos(): ordena una copia del buffer y toma el percentil,
+ *   como mucho una vez por segundo (el resto del tiempo, valor cacheado)
+ *
+ * Con menos de "minSamples" muestras devuelve -1: todavía no hay
+ * suficiente información (quien llama usa un valor inicial).
+ *
+ * COPIA:
+ * ======
+ *
+ * La fuente de verdad es com.example.order.config.LatencyWindow
+ * (order-service, hedging de Feign). Acá la usa HedgeGatewayFilterFactory;
+ * solo cambia el paquete, los cambios se hacen primero allá.
+ */
+public class LatencyWindow {
+
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLongArray samples;
+    private final int mask;
+    private final double percentile;
+    private final int minSamples;
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong nextRefresh = new AtomicLong(System.nanoTime());
+    private volatile long cachedNanos = -1;
+
+    /**
+     * @param size Muestras en la ventana (se redondea a potencia de 2)
+     * @param percentile Percentil (ej: 95.0)
+     * @param minSamples Muestras mínimas para calcularlo
+     */
+    public LatencyWindow(int size, double percentile, int minSamples) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile debe estar entre 0 y 100: " + percentile);
+        }
+        int capacity = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        this.samples = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.percentile = percentile;
+        this.minSamples = Math.min(Math.max(minSamples, 1), capacity);
+    }
+
+    public void record(long nanos) {
+        long index = recorded.getAndIncrement();
+        samples.set((int) (index & mask), Math.max(nanos, 1));
+    }
+
+    /**
+     * @return Percentil en nanosegundos, o -1 si hay pocas muestras
+     */
+    public long percentileNanos() {
+        long now = System.nanoTime();
+        long refreshAt = nextRefresh.get();
+        if (now - refreshAt >= 0 && nextRefresh.compareAndSet(refreshAt, now + REFRESH_NANOS)) {
+            cachedNanos = compute();
+        }
+        return cachedNanos;
+    }
+
+    private long compute() {
+        int count = (int) Math.min(recorded.get(), samples.length());
+        if (count < minSamples) {
+            return -1;
+        }
+        long[] copy = new long[count];
+        for (int i = 0; i < count; i++) {
+            copy[i] = samples.get(i);
+        }
+        Arrays.sort(copy);
+        int rank = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return copy[Math.min(Math.max(rank, 0), count - 1)];
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.gateway.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Data;
+import lombok.experimental.Accessors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limiter en memoria (token bucket) para RequestRateLimiter
+ *
+ * ⭐ PROTECCIÓN CONTRA ABUSO SIN REDIS ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * El RequestRateLimiter de Spring Cloud Gateway trae un solo rate
+ * limiter: RedisRateLimiter. Un Redis más y un viaje de red en CADA
+ * request solo para contar.
+ *
+ * SOLUCIÓN:
+ * =========
+ *
+ * Mismo filtro (RequestRateLimiter), otro RateLimiter: los buckets
+ * viven en la memoria del Gateway (TokenBuckets, lock striping).
+ * Cuesta un lock de nanosegundos, sin red.
+ *
+ * VARIAS INSTANCIAS DEL GATEWAY:
+ * ==============================
+ *
+ * Cada instancia cuenta sola. Con divide-by-instances=true la cuota se
+ * divide por la cantidad de Gateways registrados en Eureka: con 3
+ * instancias y 30 req/s, cada una permite 10 req/s. Es aproximado (el
+ * load balancer de adelante tiene que repartir parejo), pero no necesita
+ * estado compartido.
+ *
+ * USO (gateway.yml):
+ * ==================
+ *
+ *   default-filters:
+ *     - name: RequestRateLimiter
+ *       args:
+ *         key-resolver: "#{@userKeyResolver}"   # o ipKeyResolver / routeKeyResolver
+ *
+ *   rate-limit:
+ *     replenish-rate: 10        # tokens por segundo
+ *     burst-capacity: 20        # tamaño del bucket
+ *     routes:
+ *       order-service:          # cuota distinta para una ruta (por id)
+ *         replenish-rate: 5
+ *         burst-capacity: 10
+ *
+ * Un RequestRateLimiter declarado en la ruta puede traer su propia cuota
+ * en args "local-rate-limiter.*" (tiene prioridad sobre rate-limit.*).
+ *
+ * Respuesta: headers X-RateLimit-Remaining, X-RateLimit-Replenish-Rate,
+ * X-RateLimit-Burst-Capacity, X-RateLimit-Requested-Tokens (los mismos
+ * que RedisRateLimiter). Rechazada → 429 + Retry-After.
+ *
+ * MÉTRICAS:
+ * =========
+ *
+ *   GET /actuator/metrics/gateway.ratelimit.requests?tag=route:order-service&tag=outcome:denied
+ *   GET /actuator/metrics/gateway.ratelimit.buckets
+ */
+@Component
+public class LocalRateLimiter extends AbstractRateLimiter<LocalRateLimiter.Config> {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalRateLimiter.class);
+
+    public static final String CONFIGURATION_PROPERTY_NAME = "local-rate-limiter";
+
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    public static final String REPLENISH_RATE_HEADER = "X-RateLimit-Replenish-Rate";
+    public static final String BURST_CAPACITY_HEADER = "X-RateLimit-Burst-Capacity";
+    public static final String REQUESTED_TOKENS_HEADER = "X-RateLimit-Requested-Tokens";
+
+    private static final long INSTANCE_COUNT_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final TokenBuckets buckets;
+    private final Config defaultConfig;
+    private final Environment environment;
+    private final ObjectProvider<DiscoveryClient> discoveryClientProvider;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Config> routeConfigs = new ConcurrentHashMap<>();
+    private final Map<String, Counter[]> counters = new ConcurrentHashMap<>();
+
+    @Value("${rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${rate-limit.divide-by-instances:true}")
+    private boolean divideByInstances;
+
+    @Value("${rate-limit.include-headers:true}")
+    private boolean includeHeaders;
+
+    @Value("${spring.application.name:gateway}")
+    private String serviceId;
+
+    private final AtomicLong nextInstanceCount = new AtomicLong(System.nanoTime());
+    private volatile int instances = 1;
+
+    public LocalRateLimiter(ConfigurationService configurationService,
+                            Environment environment,
+                            ObjectProvider<DiscoveryClient> discoveryClientProvider,
+                            ObjectProvider<MeterRegistry> meterRegistryProvider,
+                            @Value("${rate-limit.replenish-rate:10}") int replenishRate,
+                            @Value("${rate-limit.burst-capacity:20}") int burstCapacity,
+                            @Value("${rate-limit.max-buckets:100000}") int maxBuckets,
+                            @Value("${rate-limit.idle-timeout-ms:60000}") long idleTimeoutMs) {
+        super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+        this.defaultConfig = new Config().setReplenishRate(replenishRate).setBurstCapacity(burstCapacity);
+        this.buckets = new TokenBuckets(maxBuckets, idleTimeoutMs);
+        this.environment = environment;
+        this.discoveryClientProvider = discoveryClientProvider;
+        this.meterRegistry = meterRegistryProvider.getIfAvailable();
+
+        log.info("Rate limiter local - Default: {} req/s (ráfaga {}), Máximo: {} buckets",
+            replenishRate, burstCapacity, maxBuckets);
+        if (meterRegistry != null) {
+            Gauge.builder("gateway.ratelimit.buckets", buckets, TokenBuckets::size).register(meterRegistry);
+        }
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        if (!enabled) {
+            return Mono.just(new Response(true, Map.of()));
+        }
+        Config config = config(routeId);
+        int requested = Math.max(config.getRequestedTokens(), 1);
+        int divisor = divideByInstances ? instanceCount() : 1;
+        double rate = Math.max(config.getReplenishRate(), 1) / (double) divisor;
+        double burst = Math.max(config.getBurstCapacity() / (double) divisor, requested);
+
+        TokenBuckets.Result result = buckets.tryAcquire(routeId + ":" + id, requested, rate, burst);
+
+        if (meterRegistry != null) {
+            counters(routeId)[result.allowed() ? 0 : 1].increment();
+        }
+        if (!result.allowed()) {
+            log.debug("Rate limit - Ruta: {}, Clave: {}, Reintentar en {} ms",
+                routeId, id, TimeUnit.NANOSECONDS.toMillis(result.retryAfterNanos()));
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        if (includeHeaders) {
+            headers.put(REMAINING_HEADER, String.valueOf(result.remaining()));
+            headers.put(REPLENISH_RATE_HEADER, format(rate));
+            headers.put(BURST_CAPACITY_HEADER, format(burst));
+            headers.put(REQUESTED_TOKENS_HEADER, String.valueOf(requested));
+        }
+        if (!result.allowed()) {
+            long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(result.retryAfterNanos() + TimeUnit.SECONDS.toNanos(1) - 1));
+            headers.put(HttpHeaders.RETRY_AFTER, String.valueOf(seconds));
+        }
+        return Mono.just(new Response(result.allowed(), headers));
+    }
+
+    /**
+     * Cuota de la ruta: args del filtro > rate-limit.routes.{id} > rate-limit.*
+     */
+    private Config config(String routeId) {
+        Config config = getConfig().get(routeId);
+        if (config != null) {
+            return config;
+        }
+        return routeConfigs.computeIfAbsent(String.valueOf(routeId), id -> {
+            String prefix = "rate-limit.routes." + id + ".";
+            return new Config()
+                .setReplenishRate(environment.getProperty(prefix + "replenish-rate", Integer.class, defaultConfig.getReplenishRate()))
+                .setBurstCapacity(environment.getProperty(prefix + "burst-capacity", Integer.class, defaultConfig.getBurstCapacity()))
+                .setRequestedTokens(environment.getProperty(prefix + "requested-tokens", Integer.class, defaultConfig.getRequestedTokens()));
+        });
+    }
+
+    /**
+     * Contadores allowed / denied de la ruta (se buscan una vez, no en cada request).
+     */
+    private Counter[] counters(String routeId) {
+        return counters.computeIfAbsent(String.valueOf(routeId), id -> new Counter[] {
+            Counter.builder("gateway.ratelimit.requests").tag("route", id).tag("outcome", "allowed").register(meterRegistry),
+            Counter.builder("gateway.ratelimit.requests").tag("route", id).tag("outcome", "denied").register(meterRegistry)
+        });
+    }
+
+    /**
+     * Gateways registrados en Eureka (incluido este). Se consulta la
+     * caché local del DiscoveryClient a lo sumo cada 30 segundos.
+     */
+    private int instanceCount() {
+        long now = System.nanoTime();
+        long refreshAt = nextInstanceCount.get();
+        if (now - refreshAt >= 0 && nextInstanceCount.compareAndSet(refreshAt, now + INSTANCE_COUNT_REFRESH_NANOS)) {
+            DiscoveryClient discoveryClient = discoveryClientProvider.getIfAvailable();
+            if (discoveryClient != null) {
+                try {
+                    int count = Math.max(discoveryClient.getInstances(serviceId).size(), 1);
+                    if (count != instances) {
+                        log.info("Rate limiter local - {} instancias de {}: cuota dividida por {}", count, serviceId, count);
+                        instances = count;
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Rate limiter local - No se pudo consultar Eureka, se mantienen {} instancias: {}",
+                        instances, e.getMessage());
+                }
+            }
+        }
+        return instances;
+    }
+
+    private static String format(double value) {
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Cuota de una ruta (rate-limit.* o args "local-rate-limiter.*" del filtro).
+     */
+    @Data
+    @Accessors(chain = true)
+    public static class Config {
+        /** Tokens por segundo (requests/segundo si requested-tokens = 1) */
+        private int replenishRate = 10;
+        /** Capacidad del bucket: ráfaga máxima */
+        private int burstCapacity = 20;
+        /** Tokens que cuesta cada request */
+        private int requestedTokens = 1;
+    }
+}
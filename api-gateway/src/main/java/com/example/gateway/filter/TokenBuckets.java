@@ -0,0 +1,191 @@
+package com.example.gateway.filter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets en memoria, uno por clave (usuario, IP o ruta)
+ *
+ * ⭐ MUCHAS CLAVES, POCA CONTENCIÓN, MEMORIA ACOTADA ⭐
+ *
+ * TOKEN BUCKET:
+ * =============
+ *
+ * - El bucket se llena a "rate" tokens por segundo, hasta "burst"
+ * - Cada request se lleva "requested" tokens; si no alcanzan → rechazada
+ * - El relleno se calcula al usarlo (tiempo transcurrido × rate):
+ *   no hay ningún timer por bucket
+ *
+ * LOCK STRIPING:
+ * ==============
+ *
+ * Las claves se reparten en N "stripes" (por hash). Cada stripe tiene
+ * su propio lock y su propio mapa: dos usuarios de stripes distintos
+ * nunca se esperan. El lock se toma solo para sumar/restar tokens
+ * (nanosegundos), así que se puede llamar desde el event loop de Netty.
+ *
+ * MEMORIA:
+ * ========
+ *
+ * - Un bucket sin uso por "idle-timeout" Y ya lleno se elimina: volver
+ *   a crearlo da exactamente el mismo resultado
+ * - Cada stripe se barre a sí mismo (a lo sumo una vez por segundo)
+ *   mientras recibe requests; no hay hilo de limpieza
+ * - Tope de "max-buckets": si se llena (ej: miles de IPs distintas),
+ *   se descarta el bucket usado hace más tiempo (LRU)
+ */
+public class TokenBuckets {
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final long idleNanos;
+    private final LongSupplier nanoClock;
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param maxBuckets Máximo de buckets en memoria (entre todos los stripes)
+     * @param idleMs Tiempo sin uso a partir del cual un bucket lleno se elimina
+     */
+    public TokenBuckets(int maxBuckets, long idleMs) {
+        this(maxBuckets, idleMs, Math.max(Runtime.getRuntime().availableProcessors() * 4, 16), System::nanoTime);
+    }
+
+    /**
+     * @param stripeCount Stripes (se redondea a potencia de 2)
+     * @param nanoClock Reloj en nanosegundos (System::nanoTime; en tests, uno manual)
+     */
+    TokenBuckets(int maxBuckets, long idleMs, int stripeCount, LongSupplier nanoClock) {
+        int count = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        int perStripe = Math.max(maxBuckets / count, 1);
+        this.nanoClock = nanoClock;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+        this.mask = count - 1;
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMs);
+    }
+
+    /**
+     * Intenta tomar "requested" tokens del bucket de la clave.
+     *
+     * @param rate Tokens por segundo
+     * @param burst Capacidad del bucket
+     */
+    public Result tryAcquire(String key, int requested, double rate, double burst) {
+        long now = nanoClock.getAsLong();
+        int hash = key.hashCode();
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & mask];
+
+        stripe.lock.lock();
+        try {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(burst, now);
+                stripe.buckets.put(key, bucket);
+                size.incrementAndGet();
+            }
+            Result result = bucket.tryAcquire(requested, rate, burst, now);
+            if (now - stripe.nextSweep >= 0) {
+                stripe.nextSweep = now + SWEEP_INTERVAL_NANOS;
+                sweep(stripe, now);
+            }
+            return result;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Buckets en memoria.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Elimina los buckets sin uso y llenos. El mapa está en orden de
+     * acceso: se corta en el primero usado hace menos de idle-timeout.
+     */
+    private void sweep(Stripe stripe, long now) {
+        Iterator<Bucket> it = stripe.buckets.values().iterator();
+        while (it.hasNext()) {
+            Bucket bucket = it.next();
+            if (now - bucket.lastAccess < idleNanos) {
+                return;
+            }
+            if (now - bucket.fullAt >= 0) {
+                it.remove();
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Resultado de tryAcquire.
+     *
+     * @param remaining Tokens que quedan (enteros)
+     * @param retryAfterNanos Espera hasta tener los tokens pedidos (0 si se permitió)
+     */
+    public record Result(boolean allowed, long remaining, long retryAfterNanos) {
+    }
+
+    private final class Stripe {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Bucket> buckets;
+        private long nextSweep = nanoClock.getAsLong();
+
+        Stripe(int maxBuckets) {
+            this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    if (size() <= maxBuckets) {
+                        return false;
+                    }
+                    size.decrementAndGet();
+                    return true;
+                }
+            };
+        }
+    }
+
+    /**
+     * Estado de un bucket. Solo se toca con el lock de su stripe.
+     */
+    private static final class Bucket {
+
+        private double tokens;
+        private long refilledAt;
+        private long lastAccess;
+        private long fullAt;
+
+        Bucket(double burst, long now) {
+            this.tokens = burst;
+            this.refilledAt = now;
+            this.fullAt = now;
+        }
+
+        Result tryAcquire(int requested, double rate, double burst, long now) {
+            double perNano = rate / TimeUnit.SECONDS.toNanos(1);
+            tokens = Math.min(burst, tokens + (now - refilledAt) * perNano);
+            refilledAt = now;
+            lastAccess = now;
+
+            boolean allowed = tokens >= requested;
+            if (allowed) {
+                tokens -= requested;
+            }
+            fullAt = now + (long) Math.ceil((burst - tokens) / perNano);
+            long retryAfter = allowed ? 0 : (long) Math.ceil((requested - tokens) / perNano);
+            return new Result(allowed, (long) Math.floor(tokens), retryAfter);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.gateway.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * ReactiveJwtDecoder con caché de tokens ya verificados
+ *
+ * ⭐ EVITA REPETIR LA VERIFICACIÓN RS256 DEL MISMO TOKEN ⭐
+ *
+ * ¿POR QUÉ?
+ * =========
+ *
+ * Un cliente (ej: frontend Angular) envía el MISMO access token en cada
+ * request hasta que expira. Sin caché, el Gateway repite en cada request:
+ * - Verificación de firma RSA (costosa en CPU)
+ * - Validators de issuer, expiración y audience
+ *
+ * Con caché, solo la PRIMERA request con un token paga ese costo.
+ *
+ * ¿CÓMO FUNCIONA?
+ * ===============
+ *
+ * 1. Clave de la caché = SHA-256 del token (nunca el token en claro)
+ * 2. HIT  → Devuelve el Jwt ya verificado
+ * 3. MISS → Delega en el decoder real y guarda el resultado
+ * 4. Cada entrada expira EXACTAMENTE en el "exp" del token
+ * 5. Tamaño máximo acotado + soft values (el GC puede liberar
+ *    entradas si hay presión de memoria)
+ *
+ * Los tokens inválidos NO se cachean: cada intento vuelve a validarse.
+ *
+ * MÉTRICAS:
+ * =========
+ *
+ * Se registran en Micrometer (cache.gets{result=hit|miss}, cache.evictions...)
+ * con el nombre "gateway.jwt.verified":
+ *
+ *   GET /actuator/metrics/cache.gets?tag=cache:gateway.jwt.verified&tag=result:hit
+ */
+public class CachingReactiveJwtDecoder implements ReactiveJwtDecoder {
+
+    private static final Logger log = LoggerFactory.getLogger(CachingReactiveJwtDecoder.class);
+
+    static final String CACHE_NAME = "gateway.jwt.verified";
+
+    private final ReactiveJwtDecoder delegate;
+    private final Cache<String, Jwt> cache;
+    private final Clock clock;
+
+    public CachingReactiveJwtDecoder(ReactiveJwtDecoder delegate, long maximumSize, MeterRegistry meterRegistry) {
+        this(delegate, maximumSize, meterRegistry, Clock.systemUTC());
+    }
+
+    CachingReactiveJwtDecoder(ReactiveJwtDecoder delegate, long maximumSize, MeterRegistry meterRegistry, Clock clock) {
+        this.delegate = delegate;
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .softValues()
+            .expireAfter(new ExpireAtTokenExpiry(clock))
+            .recordStats()
+            .build();
+
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        }
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) {
+        String key = cacheKey(token);
+
+        Jwt cached = cache.getIfPresent(key);
+        if (cached != null && isStillValid(cached)) {
+            log.trace("JWT cache HIT - Usuario: {}", cached.getClaimAsString("preferred_username"));
+            return Mono.just(cached);
+        }
+
+        return delegate.decode(token)
+            .doOnNext(jwt -> {
+                // Sin "exp" no sabemos cuándo invalidar → no se cachea
+                if (jwt.getExpiresAt() != null) {
+                    cache.put(key, jwt);
+                }
+            });
+    }
+
+    /**
+     * Segunda barrera por si la entrada aún no fue expulsada:
+     * nunca devolver un token cuyo "exp" ya pasó.
+     */
+    private boolean isStillValid(Jwt jwt) {
+        Instant expiresAt = jwt.getExpiresAt();
+        return expiresAt != null && expiresAt.isAfter(clock.instant());
+    }
+
+    private static String cacheKey(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 es obligatorio en toda JVM
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Expiry de Caffeine: cada entrada vive hasta el "exp" de su token.
+     */
+    private static final class ExpireAtTokenExpiry implements Expiry<String, Jwt> {
+
+        private final Clock clock;
+
+        private ExpireAtTokenExpiry(Clock clock) {
+            this.clock = clock;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            Duration remaining = Duration.between(clock.instant(), jwt.getExpiresAt());
+            return remaining.isNegative() ? 0 : remaining.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
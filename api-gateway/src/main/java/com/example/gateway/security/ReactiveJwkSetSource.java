@@ -0,0 +1,119 @@
+package com.example.gateway.security;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Claves públicas (JWKS) de Keycloak para NimbusReactiveJwtDecoder
+ *
+ * ⭐ LA VERIFICACIÓN DE FIRMA SIEMPRE EN EL SCHEDULER DEDICADO ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * NimbusReactiveJwtDecoder verifica la firma en el hilo que emite las
+ * claves. Con el JWKS en caché eso es el hilo que se suscribió
+ * (jwtVerificationScheduler), pero la PRIMERA request y las que llegan
+ * después de una rotación de claves esperan la descarga del JWKS: las
+ * claves llegan en el event loop de Netty (WebClient) y la verificación
+ * RSA sigue ahí.
+ *
+ * SOLUCIÓN:
+ * =========
+ *
+ * Las claves se emiten con publishOn(scheduler): llegue de la caché o de
+ * la red, la verificación que sigue corre en el scheduler acotado.
+ *
+ * CACHÉ Y ROTACIÓN:
+ * =================
+ *
+ * - El JWKS se descarga una vez y se reutiliza
+ * - Un "kid" desconocido (Keycloak rotó las claves) → se descarga de nuevo
+ * - Las requests concurrentes comparten la MISMA descarga
+ * - Una descarga fallida no se cachea: la próxima request reintenta
+ */
+public class ReactiveJwkSetSource implements Function<SignedJWT, Flux<JWK>> {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveJwkSetSource.class);
+
+    private final WebClient webClient;
+    private final String jwkSetUri;
+    private final Scheduler scheduler;
+    private final AtomicReference<Mono<JWKSet>> jwkSet = new AtomicReference<>();
+
+    public ReactiveJwkSetSource(WebClient webClient, String jwkSetUri, Scheduler scheduler) {
+        this.webClient = webClient;
+        this.jwkSetUri = jwkSetUri;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Flux<JWK> apply(SignedJWT jwt) {
+        // Mismo criterio que el decoder (RS256): sin esto JWKMatcher no sabe qué buscar
+        if (!JWSAlgorithm.RS256.equals(jwt.getHeader().getAlgorithm())) {
+            return Flux.error(new BadJwtException("Unsupported algorithm of " + jwt.getHeader().getAlgorithm()));
+        }
+        JWKSelector selector = new JWKSelector(JWKMatcher.forJWSHeader(jwt.getHeader()));
+
+        Mono<JWKSet> current = jwkSet.get();
+        Mono<JWKSet> cached = current != null ? current : refresh(null);
+
+        return cached
+            .flatMap(set -> {
+                List<JWK> keys = selector.select(set);
+                return keys.isEmpty() ? refresh(cached).map(selector::select) : Mono.just(keys);
+            })
+            .flatMapIterable(Function.identity())
+            .onErrorMap(e -> !(e instanceof JwtException),
+                e -> new JwtException("No se pudo obtener el JWKS de " + jwkSetUri + ": " + e.getMessage(), e))
+            .publishOn(scheduler);
+    }
+
+    /**
+     * Descarga el JWKS, salvo que otra request ya lo haya reemplazado.
+     *
+     * @param stale Descarga que no tenía la clave (null = no hay ninguna)
+     */
+    private Mono<JWKSet> refresh(Mono<JWKSet> stale) {
+        Mono<JWKSet> fetch = webClient.get()
+            .uri(jwkSetUri)
+            .retrieve()
+            .bodyToMono(String.class)
+            .map(this::parse)
+            .doOnNext(set -> log.info("JWKS descargado - Claves: {}", set.getKeys().size()))
+            // Cachear solo el éxito: un error se reintenta en la próxima request
+            .cache(set -> Duration.ofMillis(Long.MAX_VALUE), e -> Duration.ZERO, () -> Duration.ZERO);
+
+        if (jwkSet.compareAndSet(stale, fetch)) {
+            return fetch;
+        }
+        Mono<JWKSet> other = jwkSet.get();
+        return other != null ? other : fetch;
+    }
+
+    private JWKSet parse(String body) {
+        try {
+            return JWKSet.parse(body);
+        } catch (ParseException e) {
+            throw new JwtException("JWKS inválido: " + e.getMessage(), e);
+        }
+    }
+}
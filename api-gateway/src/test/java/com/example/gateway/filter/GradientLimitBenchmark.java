@@ -0,0 +1,141 @@
+package com.example.gateway.filter;
+
+import com.example.gateway.filter.AdaptiveConcurrencyGatewayFilterFactory.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark: servicio saturado con y sin límite de concurrencia adaptativo
+ *
+ * ⭐ NO ES UN TEST: NO CORRE CON mvn test ⭐
+ *
+ * El nombre no termina en "Test" (surefire no lo incluye); se corre a mano:
+ *
+ *   mvn test -Dtest=GradientLimitBenchmark -Dsurefire.failIfNoSpecifiedTests=false
+ *
+ * Parámetros (-D): limit.benchmark.rate (140 req/s), limit.benchmark.workers (10),
+ * limit.benchmark.seconds (60), limit.benchmark.seed (42).
+ *
+ * Simulación de eventos discretos con reloj virtual (determinista, corre en
+ * segundos): llegadas Poisson en lazo abierto, 70% listados (SHEDDABLE),
+ * 25% normales y 5% health checks (CRITICAL). El backend tiene N workers y
+ * una cola FIFO; el tiempo de servicio (exponencial) sube de 20 ms a 120 ms
+ * durante la primera mitad de la corrida → la capacidad cae de ~500 a
+ * ~83 req/s, por debajo de la carga.
+ *
+ * El GradientLimit es el real, con la configuración por defecto del filtro
+ * (AdaptiveConcurrencyGatewayFilterFactory.Config). La latencia medida es la
+ * que ve el gateway: cola del backend + servicio. Reporta p50/p99 de las
+ * requests aceptadas y los rechazos por prioridad.
+ */
+class GradientLimitBenchmark {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void withAndWithoutLimit() {
+        double rate = Double.parseDouble(System.getProperty("limit.benchmark.rate", "140"));
+        int workers = Integer.getInteger("limit.benchmark.workers", 10);
+        int seconds = Integer.getInteger("limit.benchmark.seconds", 60);
+        long seed = Long.getLong("limit.benchmark.seed", 42L);
+
+        System.out.printf("Límite adaptativo - %.0f req/s, %d workers, servicio 20 → 120 ms, %d s simulados%n",
+            rate, workers, seconds);
+
+        for (boolean limited : new boolean[] {false, true}) {
+            Result result = run(limited, rate, workers, seconds, seed);
+            System.out.printf("  %-10s aceptadas: %6d  p50: %6d ms  p99: %6d ms  rechazadas: %s  límite final: %s%n",
+                limited ? "con límite" : "sin límite",
+                result.latenciesMs.length, percentile(result.latenciesMs, 0.50), percentile(result.latenciesMs, 0.99),
+                result.rejected, limited ? result.finalLimit : "-");
+        }
+    }
+
+    private Result run(boolean limited, double rate, int workers, int seconds, long seed) {
+        AdaptiveConcurrencyGatewayFilterFactory.Config config = new AdaptiveConcurrencyGatewayFilterFactory.Config();
+        AtomicLong now = new AtomicLong();
+        GradientLimit limit = new GradientLimit(config.getInitialLimit(), config.getMinLimit(), config.getMaxLimit(),
+            config.getSmoothing(), config.getRttTolerance(), config.getWindow().toMillis(), config.getMinSamples(),
+            now::get);
+
+        Random random = new Random(seed);
+        long end = seconds * SECOND;
+        long degradeUntil = end / 2;
+
+        // Momento en que cada worker queda libre; FIFO = el primero libre toma la siguiente
+        PriorityQueue<Long> freeAt = new PriorityQueue<>();
+        for (int i = 0; i < workers; i++) {
+            freeAt.add(0L);
+        }
+        // Respuestas pendientes: {fin, inicio, inFlightAtStart}
+        PriorityQueue<long[]> pending = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+
+        List<Long> latencies = new ArrayList<>();
+        Map<Priority, Integer> rejected = new EnumMap<>(Priority.class);
+
+        long arrival = 0;
+        while (arrival < end) {
+            arrival += (long) (-Math.log(1 - random.nextDouble()) / rate * SECOND);
+
+            // Primero las respuestas que llegaron antes que esta request
+            while (!pending.isEmpty() && pending.peek()[0] <= arrival) {
+                long[] done = pending.poll();
+                now.set(done[0]);
+                limit.release(done[0] - done[1], (int) done[2]);
+                latencies.add(done[0] - done[1]);
+            }
+            now.set(arrival);
+
+            double p = random.nextDouble();
+            Priority priority = p < 0.70 ? Priority.SHEDDABLE : p < 0.95 ? Priority.NORMAL : Priority.CRITICAL;
+
+            int inFlightAtStart = 0;
+            if (limited) {
+                inFlightAtStart = limit.tryAcquire(priority.share(config));
+                if (inFlightAtStart < 0) {
+                    rejected.merge(priority, 1, Integer::sum);
+                    continue;
+                }
+            }
+
+            long start = Math.max(arrival, freeAt.poll());
+            double progress = Math.min(1.0, (double) start / degradeUntil);
+            double meanMs = 20 + 100 * progress;
+            long service = (long) (-Math.log(1 - random.nextDouble()) * meanMs * 1_000_000);
+            long finish = start + service;
+            freeAt.add(finish);
+            pending.add(new long[] {finish, arrival, inFlightAtStart});
+        }
+
+        // Las que siguen en cola al final también cuentan (sin límite, son las peores)
+        while (!pending.isEmpty()) {
+            long[] done = pending.poll();
+            latencies.add(done[0] - done[1]);
+        }
+
+        long[] latenciesMs = latencies.stream().mapToLong(TimeUnit.NANOSECONDS::toMillis).sorted().toArray();
+        for (Priority priority : Priority.values()) {
+            rejected.putIfAbsent(priority, 0);
+        }
+        return new Result(latenciesMs, Collections.unmodifiableMap(rejected), limit.getLimit());
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private record Result(long[] latenciesMs, Map<Priority, Integer> rejected, int finalLimit) {
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.gateway.filter;
+
+import com.example.gateway.filter.AdaptiveConcurrencyGatewayFilterFactory.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * GradientLimit con reloj manual: cada "ronda" ocupa el límite, libera
+ * todo y avanza el reloj una ventana (100 ms) → una ventana por ronda.
+ */
+class GradientLimitTest {
+
+    private static final long WINDOW_MS = 100;
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void growsWhileLatencyStaysFlat() {
+        GradientLimit limit = limit(10, 1, 1000);
+
+        int previous = limit.getLimit();
+        for (int round = 0; round < 30; round++) {
+            saturate(limit, FAST);
+            assertThat(limit.getLimit()).isGreaterThanOrEqualTo(previous);
+            previous = limit.getLimit();
+        }
+
+        assertThat(limit.getLimit()).isGreaterThan(20);
+    }
+
+    @Test
+    void shrinksWhenLatencyRises() {
+        GradientLimit limit = limit(50, 5, 1000);
+        for (int round = 0; round < 20; round++) {
+            saturate(limit, FAST);
+        }
+        int learned = limit.getLimit();
+
+        for (int round = 0; round < 10; round++) {
+            saturate(limit, SLOW);
+        }
+
+        assertThat(limit.getLimit()).isLessThan(learned / 2);
+        assertThat(limit.getLimit()).isGreaterThanOrEqualTo(5);
+    }
+
+    @Test
+    void staysWithinBounds() {
+        GradientLimit growing = limit(10, 1, 15);
+        for (int round = 0; round < 50; round++) {
+            saturate(growing, FAST);
+        }
+        assertThat(growing.getLimit()).isEqualTo(15);
+
+        GradientLimit shrinking = limit(40, 8, 100);
+        for (int round = 0; round < 20; round++) {
+            saturate(shrinking, FAST);
+        }
+        for (int round = 0; round < 40; round++) {
+            saturate(shrinking, SLOW * 10);
+        }
+        assertThat(shrinking.getLimit()).isEqualTo(8);
+    }
+
+    @Test
+    void ignoresWindowsThatUsedLessThanHalf() {
+        GradientLimit limit = limit(20, 1, 1000);
+
+        for (int i = 0; i < 100; i++) {
+            int inFlight = limit.tryAcquire(1.0);
+            limit.release(i < 50 ? FAST : SLOW, inFlight);
+            advanceWindow();
+        }
+
+        assertThat(limit.getLimit()).isEqualTo(20);
+    }
+
+    @Test
+    void failedRequestsFreeTheSlotWithoutSampling() {
+        GradientLimit limit = limit(10, 1, 1000);
+        saturate(limit, FAST);
+        int before = limit.getLimit();
+
+        List<Integer> acquired = acquireAll(limit, 1.0);
+        acquired.forEach(inFlight -> limit.release(-1, inFlight));
+
+        assertThat(limit.getInFlight()).isZero();
+        assertThat(limit.getLimit()).isEqualTo(before);
+    }
+
+    @Test
+    void shedsByPriorityShare() {
+        AdaptiveConcurrencyGatewayFilterFactory.Config config = new AdaptiveConcurrencyGatewayFilterFactory.Config();
+        GradientLimit limit = limit(20, 1, 1000);
+
+        // Listados: hasta el 75% del límite
+        assertThat(acquireAll(limit, Priority.SHEDDABLE.share(config))).hasSize(15);
+
+        // Con los listados rechazados, el resto todavía entra hasta el 100%
+        assertThat(limit.tryAcquire(Priority.SHEDDABLE.share(config))).isEqualTo(-1);
+        assertThat(acquireAll(limit, Priority.NORMAL.share(config))).hasSize(5);
+        assertThat(limit.tryAcquire(Priority.NORMAL.share(config))).isEqualTo(-1);
+
+        // Health checks: nunca se rechazan
+        for (int i = 0; i < 100; i++) {
+            assertThat(limit.tryAcquire(Priority.CRITICAL.share(config))).isPositive();
+        }
+        assertThat(limit.getInFlight()).isEqualTo(120);
+    }
+
+    // ==========================================
+    // AUXILIARES
+    // ==========================================
+
+    private GradientLimit limit(int initial, int min, int max) {
+        return new GradientLimit(initial, min, max, 0.2, 1.5, WINDOW_MS, 1, now::get);
+    }
+
+    /**
+     * Ocupa todo el límite, libera cada request con la misma latencia y
+     * cierra la ventana (la cierra la primera muestra después de avanzar).
+     */
+    private void saturate(GradientLimit limit, long rttNanos) {
+        List<Integer> acquired = acquireAll(limit, 1.0);
+        for (int i = 0; i < acquired.size(); i++) {
+            if (i == acquired.size() - 1) {
+                advanceWindow();
+            }
+            limit.release(rttNanos, acquired.get(i));
+        }
+    }
+
+    private void advanceWindow() {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(WINDOW_MS));
+    }
+
+    private static List<Integer> acquireAll(GradientLimit limit, double share) {
+        List<Integer> acquired = new ArrayList<>();
+        int inFlight;
+        while ((inFlight = limit.tryAcquire(share)) > 0) {
+            acquired.add(inFlight);
+        }
+        return acquired;
+    }
+}
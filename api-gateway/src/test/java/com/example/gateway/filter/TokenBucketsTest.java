@@ -0,0 +1,112 @@
+package com.example.gateway.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Token buckets con reloj manual: relleno, Retry-After, barrido y LRU.
+ */
+class TokenBucketsTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void allowsBurstThenRejectsWithRetryAfter() {
+        TokenBuckets buckets = buckets(100, 60_000);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(buckets.tryAcquire("user", 1, 10, 5).allowed()).isTrue();
+        }
+        TokenBuckets.Result rejected = buckets.tryAcquire("user", 1, 10, 5);
+
+        assertThat(rejected.allowed()).isFalse();
+        assertThat(rejected.remaining()).isZero();
+        // 1 token a 10 tokens/s → 100 ms
+        assertThat(rejected.retryAfterNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+
+        // Pedir 3 cuesta 300 ms
+        assertThat(buckets.tryAcquire("user", 3, 10, 5).retryAfterNanos())
+            .isEqualTo(TimeUnit.MILLISECONDS.toNanos(300));
+    }
+
+    @Test
+    void refillsWithElapsedTimeUpToBurst() {
+        TokenBuckets buckets = buckets(100, 60_000);
+        buckets.tryAcquire("user", 5, 10, 5);
+
+        advance(250);  // 2.5 tokens
+        TokenBuckets.Result result = buckets.tryAcquire("user", 2, 10, 5);
+        assertThat(result.allowed()).isTrue();
+        assertThat(result.remaining()).isZero();  // Queda 0.5
+        assertThat(buckets.tryAcquire("user", 1, 10, 5).allowed()).isFalse();
+
+        advance(10_000);  // Mucho más de lo que entra: tope en burst
+        assertThat(buckets.tryAcquire("user", 1, 10, 5).remaining()).isEqualTo(4);
+    }
+
+    @Test
+    void keysHaveIndependentBuckets() {
+        TokenBuckets buckets = buckets(100, 60_000);
+        buckets.tryAcquire("a", 5, 10, 5);
+
+        assertThat(buckets.tryAcquire("a", 1, 10, 5).allowed()).isFalse();
+        assertThat(buckets.tryAcquire("b", 1, 10, 5).allowed()).isTrue();
+        assertThat(buckets.size()).isEqualTo(2);
+    }
+
+    @Test
+    void sweepRemovesOnlyIdleAndFullBuckets() {
+        TokenBuckets buckets = buckets(100, 1_000);
+        buckets.tryAcquire("full", 1, 10, 5);    // Se rellena en 100 ms
+        buckets.tryAcquire("slow", 5, 0.1, 5);   // Tarda 50 s en rellenarse
+
+        advance(2_000);  // Los dos sin uso más de idle-timeout
+        buckets.tryAcquire("other", 1, 10, 5);  // Barre el stripe
+
+        // "slow" no está lleno: borrarlo le regalaría tokens
+        assertThat(buckets.size()).isEqualTo(2);
+        assertThat(buckets.tryAcquire("slow", 1, 0.1, 5).allowed()).isFalse();
+    }
+
+    @Test
+    void sweepRunsAtMostOncePerSecond() {
+        TokenBuckets buckets = buckets(100, 100);
+        buckets.tryAcquire("a", 1, 10, 5);  // Primer barrido aquí (próximo en 1 s)
+
+        advance(500);  // "a" lleno y sin uso, pero todavía no toca barrer
+        buckets.tryAcquire("b", 1, 10, 5);
+        assertThat(buckets.size()).isEqualTo(2);
+
+        advance(600);
+        buckets.tryAcquire("b", 1, 10, 5);
+        assertThat(buckets.size()).isEqualTo(1);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFull() {
+        TokenBuckets buckets = buckets(3, 60_000);
+        buckets.tryAcquire("a", 1, 10, 5);
+        buckets.tryAcquire("b", 1, 10, 5);
+        buckets.tryAcquire("c", 1, 10, 5);
+        buckets.tryAcquire("a", 1, 10, 5);  // "b" pasa a ser el más viejo
+
+        buckets.tryAcquire("d", 1, 10, 5);
+
+        assertThat(buckets.size()).isEqualTo(3);
+        assertThat(buckets.tryAcquire("a", 1, 10, 5).remaining()).isEqualTo(2);  // Conservado
+        assertThat(buckets.tryAcquire("b", 1, 10, 5).remaining()).isEqualTo(4);  // Nuevo, lleno
+    }
+
+    private TokenBuckets buckets(int maxBuckets, long idleMs) {
+        // Un solo stripe: barrido y LRU deterministas
+        return new TokenBuckets(maxBuckets, idleMs, 1, now::get);
+    }
+
+    private void advance(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.gateway.security;
+
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * La verificación de firma debe correr en el scheduler dedicado aunque
+ * las claves lleguen de la red (primera request y rotación de claves).
+ */
+class ReactiveJwkSetSourceTest {
+
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicReference<String> verifiedOn = new AtomicReference<>();
+    private volatile JWKSet published;
+
+    private HttpServer server;
+    private Scheduler scheduler;
+    private NimbusReactiveJwtDecoder decoder;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/certs", exchange -> {
+            fetches.incrementAndGet();
+            byte[] body = published.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        scheduler = Schedulers.newBoundedElastic(2, 100, "jwt-verification");
+        String jwkSetUri = "http://127.0.0.1:" + server.getAddress().getPort() + "/certs";
+        decoder = NimbusReactiveJwtDecoder
+            .withJwkSource(new ReactiveJwkSetSource(WebClient.create(), jwkSetUri, scheduler))
+            .build();
+        // El validator corre después de verificar la firma, en el mismo hilo
+        decoder.setJwtValidator(jwt -> {
+            verifiedOn.set(Thread.currentThread().getName());
+            return OAuth2TokenValidatorResult.success();
+        });
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        scheduler.dispose();
+    }
+
+    @Test
+    void verifiesOnSchedulerAfterColdFetchAndRotation() throws Exception {
+        RSAKey first = key("k1");
+        published = new JWKSet(first.toPublicJWK());
+
+        // Primera request: el JWKS llega por la red
+        assertThat(decode(sign(first, "ana")).getSubject()).isEqualTo("ana");
+        assertThat(verifiedOn.get()).startsWith("jwt-verification");
+        assertThat(fetches).hasValue(1);
+
+        // Misma clave: sale de la caché
+        decode(sign(first, "ana"));
+        assertThat(fetches).hasValue(1);
+
+        // Keycloak rotó: kid desconocido → se descarga de nuevo
+        RSAKey second = key("k2");
+        published = new JWKSet(List.of(first.toPublicJWK(), second.toPublicJWK()));
+        verifiedOn.set(null);
+
+        assertThat(decode(sign(second, "bob")).getSubject()).isEqualTo("bob");
+        assertThat(verifiedOn.get()).startsWith("jwt-verification");
+        assertThat(fetches).hasValue(2);
+    }
+
+    @Test
+    void rejectsTokenSignedWithUnknownKey() throws Exception {
+        published = new JWKSet(key("k1").toPublicJWK());
+
+        assertThatThrownBy(() -> decode(sign(key("other"), "eve")))
+            .isInstanceOf(BadJwtException.class);
+    }
+
+    private Jwt decode(String token) {
+        return decoder.decode(token).block();
+    }
+
+    private static RSAKey key(String kid) throws Exception {
+        return new RSAKeyGenerator(2048).keyID(kid).generate();
+    }
+
+    private static String sign(RSAKey key, String subject) throws Exception {
+        SignedJWT jwt = new SignedJWT(
+            new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).type(JOSEObjectType.JWT).build(),
+            new JWTClaimsSet.Builder()
+                .subject(subject)
+                .expirationTime(java.util.Date.from(Instant.now().plusSeconds(300)))
+                .build());
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+}
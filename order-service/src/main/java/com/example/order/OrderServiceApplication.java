@@ -120,6 +120,8 @@ public class OrderServiceApplication {
         log.info("  GET  /orders           -> Listar órdenes del usuario");
         log.info("  GET  /orders/{{id}}      -> Obtener orden específica");
         log.info("  POST /orders           -> Crear nueva orden");
+        log.info("  POST /orders/batch     -> Crear varias órdenes (resultado por elemento)");
+        log.info("  GET  /orders/requests/{{id}} -> Estado de una orden asíncrona");
         log.info("ESPECIAL: Este servicio llama a otros microservicios");
         log.info("  - Llama a User Service para obtener info del usuario");
         log.info("  - Llama a Product Service para obtener info del producto");
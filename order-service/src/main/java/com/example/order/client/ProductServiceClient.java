@@ -1,10 +1,18 @@
 package com.example.order.client;
 
+import com.example.order.dto.ProductBatchRequest;
 import com.example.order.dto.ProductDTO;
+import com.example.order.dto.StockReservationDTO;
+import com.example.order.dto.StockReservationRequest;
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -39,4 +47,72 @@ public interface ProductServiceClient {
      */
     @GetMapping("/products/{id}")
     ProductDTO getProductById(@PathVariable Long id);
+
+    /**
+     * Obtiene varios productos en una sola llamada.
+     *
+     * Llama a: GET http://product-service/api/products?ids=1,2,3
+     *
+     * Los IDs inexistentes se omiten en la respuesta.
+     *
+     * @param ids IDs de los productos
+     * @return Productos encontrados, en el orden pedido
+     */
+    @GetMapping("/products")
+    List<ProductDTO> getProductsByIds(@RequestParam("ids") Collection<Long> ids);
+
+    /**
+     * Igual que getProductsByIds, con los IDs en el body
+     * (para listas demasiado largas para la URL).
+     *
+     * Llama a: POST http://product-service/api/products/batch
+     *
+     * @param request IDs de los productos
+     * @return Productos encontrados, en el orden pedido
+     */
+    @PostMapping("/products/batch")
+    List<ProductDTO> getProductsBatch(@RequestBody ProductBatchRequest request);
+
+    /**
+     * Reserva stock de un producto (compare-and-set en Product Service).
+     *
+     * Llama a: POST http://product-service/api/products/{id}/reservations
+     *
+     * Respuestas:
+     * - 201 → Reserva creada (con nombre y precio del producto)
+     * - 404 → Producto no existe
+     * - 409 → Stock insuficiente
+     *
+     * @param id ID del producto
+     * @param request Cantidad y confirmación
+     * @return Reserva creada
+     */
+    @PostMapping("/products/{id}/reservations")
+    StockReservationDTO reserveStock(@PathVariable Long id, @RequestBody StockReservationRequest request);
+
+    /**
+     * Libera una reserva y devuelve el stock (compensación).
+     *
+     * Llama a: DELETE http://product-service/api/products/{id}/reservations/{reservationId}
+     *
+     * @param id ID del producto
+     * @param reservationId ID de la reserva
+     * @return Reserva liberada
+     */
+    @DeleteMapping("/products/{id}/reservations/{reservationId}")
+    StockReservationDTO releaseReservation(@PathVariable Long id, @PathVariable String reservationId);
+
+    /**
+     * Devuelve solo parte de una reserva (compensación parcial).
+     *
+     * Llama a: DELETE http://product-service/api/products/{id}/reservations/{reservationId}?quantity=n
+     *
+     * @param id ID del producto
+     * @param reservationId ID de la reserva
+     * @param quantity Unidades a devolver (la reserva sigue con el resto)
+     * @return Reserva reducida (o liberada si quantity >= la reserva)
+     */
+    @DeleteMapping("/products/{id}/reservations/{reservationId}")
+    StockReservationDTO releaseReservation(@PathVariable Long id, @PathVariable String reservationId,
+                                           @RequestParam("quantity") int quantity);
 }
@@ -28,10 +28,10 @@ public class CorsConfig {
     @Value("${cors.allowed-methods:GET,POST,PUT,DELETE,OPTIONS,PATCH}")
     private String allowedMethods;
 
-    @Value("${cors.allowed-headers:Authorization,Content-Type,X-Requested-With,Accept,Origin}")
+    @Value("${cors.allowed-headers:Authorization,Content-Type,X-Requested-With,Accept,Origin,If-None-Match,Idempotency-Key,Prefer}")
     private String allowedHeaders;
 
-    @Value("${cors.exposed-headers:Authorization,X-Total-Count,X-Page-Number}")
+    @Value("${cors.exposed-headers:Authorization,X-Total-Count,X-Page-Number,X-Next-Cursor,ETag,Idempotent-Replayed,Location,Retry-After}")
     private String exposedHeaders;
 
     @Value("${cors.max-age:3600}")
@@ -0,0 +1,116 @@
+package com.example.order.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Executor para llamadas paralelas a otros microservicios
+ *
+ * ⭐ PROPAGA EL SECURITY CONTEXT A LOS HILOS DEL POOL ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * SecurityContextHolder es THREAD-LOCAL.
+ * Si lanzamos una llamada Feign en otro hilo:
+ * - El hilo del pool NO tiene SecurityContext
+ * - FeignClientInterceptor no encuentra el JWT
+ * - User/Product Service responden 401
+ *
+ * SOLUCIÓN:
+ * =========
+ *
+ * DelegatingSecurityContextExecutor copia el SecurityContext del hilo
+ * que ENVÍA la tarea al hilo que la EJECUTA (y lo limpia al terminar).
+ *
+ * Así FeignClientInterceptor sigue agregando el JWT aunque la llamada
+ * corra en paralelo.
+ *
+ * POOL ACOTADO:
+ * =============
+ *
+ * - core-size / max-size / queue-capacity configurables
+ * - Si el pool y la cola están llenos → CallerRunsPolicy:
+ *   la llamada se ejecuta en el hilo del request (secuencial, pero
+ *   nunca se pierde ni se rechaza)
+ *
+ * HILOS VIRTUALES (Java 21+):
+ * ===========================
+ *
+ * Con spring.threads.virtual.enabled=true (VIRTUAL_THREADS) y Java 21:
+ * - Tomcat atiende cada request en un hilo virtual
+ * - Cada llamada Feign corre en un hilo virtual NUEVO (no hay pool):
+ *   mientras espera la respuesta HTTP no ocupa un hilo de plataforma
+ * - "virtual-concurrency-limit" acota las llamadas simultáneas; al
+ *   llegar al límite, quien envía la tarea espera (backpressure)
+ *
+ * En Java 17 la propiedad se ignora y se usa el pool acotado.
+ */
+@Configuration
+public class DownstreamExecutorConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(DownstreamExecutorConfig.class);
+
+    @Value("${orders.downstream.executor.core-size:16}")
+    private int coreSize;
+
+    @Value("${orders.downstream.executor.max-size:64}")
+    private int maxSize;
+
+    @Value("${orders.downstream.executor.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Value("${orders.downstream.executor.virtual-concurrency-limit:1000}")
+    private int virtualConcurrencyLimit;
+
+    /**
+     * Hilos virtuales si están habilitados (y la JVM es 21+); si no, pool acotado.
+     */
+    @Bean
+    public AsyncTaskExecutor downstreamThreadPool(Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("downstream-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(virtualConcurrencyLimit);
+
+            log.info("Executor downstream - Hilos virtuales, Límite de concurrencia: {}", virtualConcurrencyLimit);
+
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("downstream-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+
+        log.info("Executor downstream - Core: {}, Max: {}, Cola: {}", coreSize, maxSize, queueCapacity);
+
+        return executor;
+    }
+
+    /**
+     * Executor que usan los controllers para llamadas Feign en paralelo.
+     *
+     * @param downstreamThreadPool Pool acotado o hilos virtuales
+     * @return Executor que propaga el SecurityContext
+     */
+    @Bean
+    public Executor downstreamExecutor(AsyncTaskExecutor downstreamThreadPool) {
+        return new DelegatingSecurityContextExecutor(downstreamThreadPool);
+    }
+}
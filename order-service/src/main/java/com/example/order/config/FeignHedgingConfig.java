@@ -0,0 +1,489 @@
+package com.example.order.config;
+
+import feign.Capability;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerClient;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycleValidator;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerProperties;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.cloud.openfeign.loadbalancer.FeignBlockingLoadBalancerClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hedged requests de los Feign clients (GET idempotentes)
+ *
+ * ⭐ LA COLA DE LATENCIA LA PONE LA INSTANCIA LENTA, NO EL SERVICIO ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * GET /products?ids=... tarda ~5ms... salvo cuando el load balancer elige
+ * la instancia que está en una pausa de GC o con el disco ocupado.
+ * Esos casos son pocos, pero definen el p99 de quien llama.
+ *
+ * SOLUCIÓN:
+ * =========
+ *
+ * 1. Se envía la request a una instancia (load balancer)
+ * 2. Si no respondió en el p95 de latencia de ESE método → se envía un
+ *    DUPLICADO a OTRA instancia (también elegida por el load balancer)
+ * 3. Gana la primera respuesta; la otra se descarta
+ *
+ * Solo para los métodos de "orders.hedging.methods" (configKey de
+ * Feign, ej: ProductServiceClient#getProductsByIds(Collection), la
+ * consulta de ProductCache) y solo GET. Desactivado por defecto
+ * (ORDERS_HEDGING_ENABLED).
+ *
+ * LÍMITES:
+ * ========
+ *
+ * - max-hedge-ratio: duplicados como máximo para ese % de las requests
+ *   (RetryBudget: si todo el servicio está lento, duplicar todo solo
+ *   duplica la carga)
+ * - min-delay-ms: nunca duplicar antes de este tiempo
+ * - Hasta tener "min-samples" latencias, el retardo es initial-delay-ms
+ *
+ * La request perdedora NO se puede abortar a mitad de la lectura (cliente
+ * HTTP bloqueante): se descarta y su respuesta se cierra apenas llega.
+ *
+ * Ambos intentos corren en el pool "hedge-" (max-threads); si está lleno,
+ * la llamada se hace normal, sin duplicado.
+ *
+ * Se aplica ANTES que FeignResilienceConfig: el circuit breaker y el
+ * bulkhead ven una sola llamada (la que recibe quien llama).
+ *
+ * Cada intento pasa por los LoadBalancerLifecycle del servicio igual
+ * que una llamada normal (onStart, onStartRequest, onComplete):
+ * LoadBalancerStats cuenta sus requests en curso y su latencia, también
+ * la del intento perdedor (es justamente la de la instancia lenta).
+ *
+ * MÉTRICAS:
+ * =========
+ *
+ *   GET /actuator/metrics/feign.hedge.requests?tag=outcome:hedged
+ *     outcome: not_needed | hedged | budget_exhausted | no_other_instance | rejected
+ *   GET /actuator/metrics/feign.hedge.wins?tag=winner:hedge
+ *   GET /actuator/metrics/feign.hedge.delay
+ */
+@Configuration
+@ConditionalOnProperty(name = "orders.hedging.enabled", havingValue = "true")
+public class FeignHedgingConfig implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(FeignHedgingConfig.class);
+
+    private static final int MAX_INSTANCE_PICKS = 3;
+
+    @Value("${orders.hedging.methods:ProductServiceClient#getProductsByIds(Collection)}")
+    private Set<String> methods;
+
+    @Value("${orders.hedging.delay-percentile:95}")
+    private double delayPercentile;
+
+    @Value("${orders.hedging.min-delay-ms:5}")
+    private long minDelayMs;
+
+    @Value("${orders.hedging.initial-delay-ms:50}")
+    private long initialDelayMs;
+
+    @Value("${orders.hedging.min-samples:100}")
+    private int minSamples;
+
+    @Value("${orders.hedging.max-hedge-ratio:0.05}")
+    private double maxHedgeRatio;
+
+    @Value("${orders.hedging.max-threads:64}")
+    private int maxThreads;
+
+    private ExecutorService executor;
+
+    /**
+     * Envuelve el Client con load balancer (primero en la cadena de Capabilities).
+     */
+    @Bean
+    public Capability feignHedgingCapability(LoadBalancerClient loadBalancerClient,
+                                             LoadBalancerClientFactory loadBalancerClientFactory,
+                                             ObjectProvider<MeterRegistry> meterRegistry) {
+        executor = new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), new CustomizableThreadFactory("hedge-"));
+
+        log.info("Hedging de Feign - Métodos: {}, Retardo: p{} (mínimo {} ms, inicial {} ms), Máximo: {}% de las requests",
+            methods, delayPercentile, minDelayMs, initialDelayMs, Math.round(maxHedgeRatio * 100));
+
+        Map<String, HedgedMethod> hedged = new ConcurrentHashMap<>();
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+
+        return new OrderedCapability() {
+            @Override
+            public Client enrich(Client client) {
+                if (!(client instanceof FeignBlockingLoadBalancerClient balanced)) {
+                    log.warn("Hedging desactivado: el Client de Feign no usa load balancer ({})", client.getClass().getName());
+                    return client;
+                }
+                return new HedgingClient(balanced, loadBalancerClient, loadBalancerClientFactory, executor, hedged,
+                    registry, FeignHedgingConfig.this);
+            }
+        };
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Capability que se aplica antes que las demás (directamente sobre el load balancer).
+     */
+    interface OrderedCapability extends Capability, Ordered {
+        @Override
+        default int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+
+    /**
+     * Estado por método: latencias y presupuesto de duplicados.
+     */
+    record HedgedMethod(LatencyWindow latency, RetryBudget budget) {
+    }
+
+    static final class HedgingClient implements Client {
+
+        private final FeignBlockingLoadBalancerClient balanced;
+        private final Client transport;
+        private final LoadBalancerClient loadBalancer;
+        private final LoadBalancerClientFactory loadBalancerFactory;
+        private final ExecutorService executor;
+        private final Map<String, HedgedMethod> hedged;
+        private final MeterRegistry meterRegistry;
+        private final FeignHedgingConfig config;
+
+        HedgingClient(FeignBlockingLoadBalancerClient balanced, LoadBalancerClient loadBalancer,
+                      LoadBalancerClientFactory loadBalancerFactory, ExecutorService executor,
+                      Map<String, HedgedMethod> hedged, MeterRegistry meterRegistry, FeignHedgingConfig config) {
+            this.balanced = balanced;
+            this.transport = balanced.getDelegate();
+            this.loadBalancer = loadBalancer;
+            this.loadBalancerFactory = loadBalancerFactory;
+            this.executor = executor;
+            this.hedged = hedged;
+            this.meterRegistry = meterRegistry;
+            this.config = config;
+        }
+
+        @Override
+        public Response execute(Request request, Request.Options options) throws IOException {
+            String configKey = configKeyOf(request);
+            if (request.httpMethod() != Request.HttpMethod.GET || configKey == null || !config.methods.contains(configKey)) {
+                return balanced.execute(request, options);
+            }
+
+            URI uri = URI.create(request.url());
+            String service = uri.getHost();
+            Lifecycle lifecycle = lifecycle(request, uri, service);
+
+            DefaultRequest<RequestDataContext> primaryRequest = lifecycle.start();
+            ServiceInstance primary = loadBalancer.choose(service, primaryRequest);
+            if (primary == null) {
+                lifecycle.discard(primaryRequest);
+                return balanced.execute(request, options);  // Sin instancias: el load balancer responde 503
+            }
+
+            HedgedMethod method = hedged.computeIfAbsent(configKey, key -> newMethod(service, key));
+            method.budget().deposit();
+
+            CompletableFuture<Response> winner = new CompletableFuture<>();
+            AtomicInteger pending = new AtomicInteger(1);
+            try {
+                send(request, options, uri, lifecycle, primaryRequest, primary, method, winner, pending, "primary");
+            } catch (RejectedExecutionException e) {
+                lifecycle.discard(primaryRequest);
+                count(service, configKey, "rejected");
+                return balanced.execute(request, options);
+            }
+
+            try {
+                Response response = winner.get(delayNanos(method), TimeUnit.NANOSECONDS);
+                count(service, configKey, "not_needed");
+                return response;
+            } catch (TimeoutException e) {
+                hedge(request, options, uri, service, configKey, lifecycle, primary, method, winner, pending);
+            } catch (ExecutionException e) {
+                throw rethrow(e);
+            } catch (InterruptedException e) {
+                throw interrupted(winner);
+            }
+
+            try {
+                return winner.get();
+            } catch (ExecutionException e) {
+                throw rethrow(e);
+            } catch (InterruptedException e) {
+                throw interrupted(winner);
+            }
+        }
+
+        private void hedge(Request request, Request.Options options, URI uri, String service, String configKey,
+                           Lifecycle lifecycle, ServiceInstance primary, HedgedMethod method,
+                           CompletableFuture<Response> winner, AtomicInteger pending) {
+            if (!method.budget().tryWithdraw()) {
+                count(service, configKey, "budget_exhausted");
+                return;
+            }
+            DefaultRequest<RequestDataContext> hedgeRequest = lifecycle.start();
+            ServiceInstance other = chooseOther(service, hedgeRequest, primary);
+            if (other == null) {
+                lifecycle.discard(hedgeRequest);
+                count(service, configKey, "no_other_instance");
+                return;
+            }
+
+            pending.incrementAndGet();
+            try {
+                send(request, options, uri, lifecycle, hedgeRequest, other, method, winner, pending, "hedge");
+                count(service, configKey, "hedged");
+                log.debug("Hedge {} → {}:{} (primaria {}:{} sin responder)",
+                    configKey, other.getHost(), other.getPort(), primary.getHost(), primary.getPort());
+            } catch (RejectedExecutionException e) {
+                lifecycle.discard(hedgeRequest);
+                pending.decrementAndGet();
+                count(service, configKey, "rejected");
+            }
+        }
+
+        /**
+         * Ejecuta un intento en el pool; la primera respuesta completa "winner".
+         */
+        private void send(Request request, Request.Options options, URI uri, Lifecycle lifecycle,
+                          DefaultRequest<RequestDataContext> lbRequest, ServiceInstance instance, HedgedMethod method,
+                          CompletableFuture<Response> winner, AtomicInteger pending, String attempt) {
+            String url = loadBalancer.reconstructURI(instance, uri).toString();
+            Request target = Request.create(request.httpMethod(), url, request.headers(), request.body(),
+                request.charset(), request.requestTemplate());
+
+            CompletableFuture.supplyAsync(() -> {
+                DefaultResponse lbResponse = lifecycle.startRequest(lbRequest, instance);
+                long start = System.nanoTime();
+                try {
+                    Response response = transport.execute(target, options);
+                    method.latency().record(System.nanoTime() - start);
+                    lifecycle.complete(lbRequest, lbResponse, response);
+                    return response;
+                } catch (IOException e) {
+                    lifecycle.fail(lbRequest, lbResponse, e);
+                    throw new UncheckedIOException(e);
+                } catch (RuntimeException e) {
+                    lifecycle.fail(lbRequest, lbResponse, e);
+                    throw e;
+                }
+            }, executor).whenComplete((response, error) -> {
+                if (response != null) {
+                    if (winner.complete(response)) {
+                        win(instance.getServiceId(), request, attempt);
+                    } else {
+                        response.close();  // Perdedora (o quien llama ya no espera)
+                    }
+                } else if (pending.decrementAndGet() == 0) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        }
+
+        /**
+         * Otra instancia, elegida por el load balancer (hasta 3 intentos).
+         */
+        private ServiceInstance chooseOther(String service, DefaultRequest<RequestDataContext> lbRequest,
+                                            ServiceInstance primary) {
+            for (int i = 0; i < MAX_INSTANCE_PICKS; i++) {
+                ServiceInstance candidate = loadBalancer.choose(service, lbRequest);
+                if (candidate != null && !sameInstance(candidate, primary)) {
+                    return candidate;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * LoadBalancerLifecycle del servicio (los mismos que notifica
+         * FeignBlockingLoadBalancerClient), con el hint configurado.
+         */
+        private Lifecycle lifecycle(Request request, URI uri, String service) {
+            @SuppressWarnings("rawtypes")
+            Set<LoadBalancerLifecycle> processors = LoadBalancerLifecycleValidator.getSupportedLifecycleProcessors(
+                loadBalancerFactory.getInstances(service, LoadBalancerLifecycle.class),
+                RequestDataContext.class, ResponseData.class, ServiceInstance.class);
+
+            HttpHeaders headers = new HttpHeaders();
+            request.headers().forEach((name, values) -> headers.put(name, new ArrayList<>(values)));
+            RequestData requestData = new RequestData(HttpMethod.valueOf(request.httpMethod().name()), uri,
+                headers, null, new HashMap<>());
+
+            LoadBalancerProperties properties = loadBalancerFactory.getProperties(service);
+            String hint = properties == null ? "default"
+                : properties.getHint().getOrDefault(service, properties.getHint().getOrDefault("default", "default"));
+            return new Lifecycle(processors, requestData, hint);
+        }
+
+        private long delayNanos(HedgedMethod method) {
+            long percentile = method.latency().percentileNanos();
+            long delay = percentile > 0 ? percentile : TimeUnit.MILLISECONDS.toNanos(config.initialDelayMs);
+            return Math.max(delay, TimeUnit.MILLISECONDS.toNanos(config.minDelayMs));
+        }
+
+        private HedgedMethod newMethod(String service, String configKey) {
+            HedgedMethod method = new HedgedMethod(
+                new LatencyWindow(1024, config.delayPercentile, config.minSamples),
+                new RetryBudget(config.maxHedgeRatio, 1));
+            if (meterRegistry != null) {
+                Gauge.builder("feign.hedge.delay", method, m -> delayNanos(m) / 1_000_000.0)
+                    .tag("client", service)
+                    .tag("method", configKey)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            }
+            return method;
+        }
+
+        private void win(String service, Request request, String attempt) {
+            if (meterRegistry != null) {
+                Counter.builder("feign.hedge.wins")
+                    .tag("client", service)
+                    .tag("method", configKeyOf(request))
+                    .tag("winner", attempt)
+                    .register(meterRegistry)
+                    .increment();
+            }
+        }
+
+        private void count(String service, String configKey, String outcome) {
+            if (meterRegistry != null) {
+                Counter.builder("feign.hedge.requests")
+                    .tag("client", service)
+                    .tag("method", configKey)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .increment();
+            }
+        }
+
+        private static String configKeyOf(Request request) {
+            if (request.requestTemplate() == null || request.requestTemplate().methodMetadata() == null) {
+                return null;
+            }
+            return request.requestTemplate().methodMetadata().configKey();
+        }
+
+        /**
+         * Notificaciones a los LoadBalancerLifecycle. Cada intento tiene
+         * su propio DefaultRequest (LoadBalancerStats los distingue por
+         * identidad).
+         */
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        private record Lifecycle(Set<LoadBalancerLifecycle> processors, RequestData requestData, String hint) {
+
+            DefaultRequest<RequestDataContext> start() {
+                DefaultRequest<RequestDataContext> lbRequest =
+                    new DefaultRequest<>(new RequestDataContext(requestData, hint));
+                processors.forEach(processor -> processor.onStart(lbRequest));
+                return lbRequest;
+            }
+
+            DefaultResponse startRequest(DefaultRequest<RequestDataContext> lbRequest, ServiceInstance instance) {
+                DefaultResponse lbResponse = new DefaultResponse(instance);
+                processors.forEach(processor -> processor.onStartRequest(lbRequest, lbResponse));
+                return lbResponse;
+            }
+
+            void complete(DefaultRequest<RequestDataContext> lbRequest, DefaultResponse lbResponse, Response response) {
+                HttpHeaders headers = new HttpHeaders();
+                response.headers().forEach((name, values) -> headers.put(name, new ArrayList<>(values)));
+                ResponseData responseData = new ResponseData(HttpStatusCode.valueOf(response.status()), headers,
+                    null, requestData);
+                processors.forEach(processor -> processor.onComplete(new CompletionContext<>(
+                    CompletionContext.Status.SUCCESS, lbRequest, lbResponse, responseData)));
+            }
+
+            void fail(DefaultRequest<RequestDataContext> lbRequest, DefaultResponse lbResponse, Throwable error) {
+                processors.forEach(processor -> processor.onComplete(new CompletionContext<>(
+                    CompletionContext.Status.FAILED, error, lbRequest, lbResponse)));
+            }
+
+            void discard(DefaultRequest<RequestDataContext> lbRequest) {
+                processors.forEach(processor -> processor.onComplete(new CompletionContext<>(
+                    CompletionContext.Status.DISCARD, lbRequest, new EmptyResponse())));
+            }
+        }
+
+        private static boolean sameInstance(ServiceInstance a, ServiceInstance b) {
+            return Objects.equals(a.getHost(), b.getHost()) && a.getPort() == b.getPort();
+        }
+
+        private static IOException rethrow(ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException io) {
+                return io.getCause();
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            return new IOException(cause);
+        }
+
+        private static InterruptedIOException interrupted(CompletableFuture<Response> winner) {
+            Thread.currentThread().interrupt();
+            // Si igual llega una respuesta, se cierra (nadie la va a leer)
+            winner.thenAccept(Response::close);
+            return new InterruptedIOException("Interrumpido esperando la respuesta");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.order.config;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.core5.http.HttpHeaders;
+import org.apache.hc.core5.util.TimeValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.openfeign.clientconfig.HttpClient5FeignConfiguration.HttpClientBuilderCustomizer;
+import org.springframework.cloud.openfeign.support.FeignHttpClientProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Transporte HTTP de los Feign clients (UserServiceClient, ProductServiceClient)
+ *
+ * ⭐ CONEXIONES REUTILIZADAS EN LUGAR DE HttpURLConnection ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * Sin configurar nada, Feign usa HttpURLConnection:
+ * - Reutilización de conexiones limitada (keep-alive global de la JVM,
+ *   5 conexiones ociosas por host)
+ * - Sin límites por host: una ráfaga abre tantas conexiones como hilos
+ * - Sin métricas: no se ve cuántas conexiones hay ni quién espera
+ * - Solo HTTP/1.1
+ *
+ * TRANSPORTES (spring.cloud.openfeign.*):
+ * =======================================
+ *
+ * hc5 (default) → Apache HttpClient 5 con pool de conexiones
+ *   - max-connections            total del pool
+ *   - max-connections-per-route  límite POR HOST (instancia de Eureka)
+ *   - connection-request-timeout espera máxima por una conexión libre
+ *   - Keep-alive e ociosas: ver abajo
+ *   - Métricas del pool
+ *
+ * h2c (FEIGN_H2C_ENABLED=true, FEIGN_HC5_ENABLED=false) → java.net.http.HttpClient
+ *   - HTTP/2 sin TLS: la primera request de cada conexión negocia
+ *     "Upgrade: h2c"; después, todas las llamadas a esa instancia se
+ *     multiplexan en UNA conexión
+ *   - Requiere server.http2.enabled en User y Product Service; si el
+ *     servidor no acepta el upgrade, sigue en HTTP/1.1
+ *   - Sin métricas de pool (el JDK no las expone)
+ *
+ * En ambos casos connectTimeout / readTimeout de
+ * spring.cloud.openfeign.client.config se aplican en cada request.
+ *
+ * KEEP-ALIVE:
+ * ===========
+ *
+ * - Si la respuesta trae "Keep-Alive: timeout=N", se respeta N
+ * - Si no, la conexión se reutiliza durante "keep-alive-seconds"
+ * - Cada "idle-eviction-seconds" se cierran las conexiones ociosas
+ *
+ * keep-alive-seconds debe ser MENOR que el keep-alive del servidor
+ * (Tomcat: 60s): si el servidor cierra primero, el próximo POST sobre
+ * esa conexión falla con "connection reset" y no se reintenta.
+ *
+ * MÉTRICAS:
+ * =========
+ *
+ *   GET /actuator/metrics/httpcomponents.httpclient.pool.total.connections?tag=state:leased
+ *   GET /actuator/metrics/httpcomponents.httpclient.pool.total.connections?tag=state:available
+ *   GET /actuator/metrics/httpcomponents.httpclient.pool.total.pending
+ *   GET /actuator/metrics/httpcomponents.httpclient.pool.total.max
+ *
+ * pending > 0 sostenido = el pool es el cuello de botella
+ * (subir max-connections-per-route o revisar la latencia de abajo).
+ */
+@Configuration
+@ConditionalOnClass(name = "feign.hc5.ApacheHttp5Client")
+@ConditionalOnProperty(name = "spring.cloud.openfeign.httpclient.hc5.enabled", matchIfMissing = true)
+public class FeignHttpClientConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(FeignHttpClientConfig.class);
+
+    static final String POOL_NAME = "feign";
+
+    @Value("${orders.http-client.keep-alive-seconds:30}")
+    private long keepAliveSeconds;
+
+    @Value("${orders.http-client.idle-eviction-seconds:15}")
+    private long idleEvictionSeconds;
+
+    /**
+     * Keep-alive y cierre de conexiones ociosas del cliente hc5 de Feign.
+     */
+    @Bean
+    public HttpClientBuilderCustomizer feignKeepAliveCustomizer(FeignHttpClientProperties properties) {
+        TimeValue defaultKeepAlive = TimeValue.ofSeconds(keepAliveSeconds);
+
+        log.info("Transporte Feign: Apache HttpClient 5 - Conexiones: {}, Por host: {}, Keep-alive: {}s, Ociosas: {}s",
+            properties.getMaxConnections(), properties.getMaxConnectionsPerRoute(), keepAliveSeconds, idleEvictionSeconds);
+
+        return builder -> builder
+            .setKeepAliveStrategy((response, context) ->
+                response.containsHeader(HttpHeaders.KEEP_ALIVE)
+                    ? DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context)
+                    : defaultKeepAlive)
+            .evictIdleConnections(TimeValue.ofSeconds(idleEvictionSeconds));
+    }
+
+    /**
+     * Métricas del pool (leased, available, pending, max).
+     *
+     * @param hc5ConnectionManager Pool creado por Spring Cloud OpenFeign
+     */
+    @Bean
+    public MeterBinder feignConnectionPoolMetrics(HttpClientConnectionManager hc5ConnectionManager) {
+        if (!(hc5ConnectionManager instanceof PoolingHttpClientConnectionManager pool)) {
+            return registry -> { };
+        }
+        return new PoolingHttpClientConnectionManagerMetricsBinder(pool, POOL_NAME);
+    }
+}
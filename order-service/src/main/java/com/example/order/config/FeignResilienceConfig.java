@@ -0,0 +1,284 @@
+package com.example.order.config;
+
+import com.example.order.exception.DownstreamUnavailableException;
+import feign.Capability;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Circuit breaker, bulkhead y presupuesto de reintentos de los Feign clients
+ *
+ * ⭐ UN SERVICIO LENTO NO SE LLEVA TODOS LOS HILOS DE ORDER SERVICE ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * Si Product Service se pone lento, cada llamada espera el readTimeout
+ * completo (10s). Con suficiente tráfico TODOS los hilos quedan esperando
+ * y Order Service deja de responder, incluso lo que no usa Product Service.
+ *
+ * SOLUCIÓN (por cliente: user-service, product-service):
+ * ======================================================
+ *
+ * 1. BULKHEAD (semáforo): a lo sumo "max-concurrent-calls" llamadas en
+ *    curso a ese servicio. El resto espera "max-wait-duration" y luego
+ *    → 503 (los demás hilos quedan libres)
+ *
+ * 2. CIRCUIT BREAKER: si en la ventana fallan (5xx, error de conexión,
+ *    timeout) o son LENTAS demasiadas llamadas → se abre: durante
+ *    "wait-duration-in-open-state" todas fallan AL INSTANTE (503 +
+ *    Retry-After) sin tocar la red. Luego deja pasar unas de prueba.
+ *
+ * 3. REINTENTOS CON PRESUPUESTO (RetryBudget): como máximo "ratio" del
+ *    tráfico en reintentos, en lugar de "3 intentos por request".
+ *
+ * Configuración: resilience4j.circuitbreaker / resilience4j.bulkhead
+ * (instancias con el nombre del Feign client) y orders.resilience.retry.
+ *
+ * ¿QUÉ SE REINTENTA?
+ * ==================
+ *
+ * - Cualquier método: fallas de CONEXIÓN (la request nunca llegó)
+ * - GET: además timeouts de lectura y respuestas 502/503/504
+ * - POST/DELETE con la request ya enviada: NUNCA (reservar stock dos
+ *   veces sería peor que fallar)
+ *
+ * El reintento pasa otra vez por el load balancer → otra instancia.
+ *
+ * ¿POR QUÉ NO spring.cloud.openfeign.circuitbreaker?
+ * ==================================================
+ *
+ * Esa integración ejecuta cada llamada en OTRO hilo (TimeLimiter, 1s
+ * por defecto): FeignClientInterceptor no encuentra el SecurityContext
+ * y la llamada sale sin JWT. Acá todo corre en el hilo que llama
+ * (Capability de Feign sobre el Client con load balancer).
+ *
+ * MÉTRICAS:
+ * =========
+ *
+ *   GET /actuator/metrics/resilience4j.circuitbreaker.state?tag=name:product-service
+ *   GET /actuator/metrics/resilience4j.bulkhead.available.concurrent.calls?tag=name:product-service
+ *   GET /actuator/metrics/feign.retries?tag=client:product-service
+ *   GET /actuator/metrics/feign.retry.budget.balance?tag=client:product-service
+ */
+@Configuration
+public class FeignResilienceConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(FeignResilienceConfig.class);
+
+    @Value("${orders.resilience.retry.budget-ratio:0.1}")
+    private double budgetRatio;
+
+    @Value("${orders.resilience.retry.min-per-second:5}")
+    private int minRetriesPerSecond;
+
+    @Value("${orders.resilience.retry.max-retries-per-call:2}")
+    private int maxRetriesPerCall;
+
+    /**
+     * Decora el Client de TODOS los Feign clients (después del load balancer).
+     */
+    @Bean
+    public Capability feignResilienceCapability(
+        CircuitBreakerRegistry circuitBreakerRegistry,
+        BulkheadRegistry bulkheadRegistry,
+        ObjectProvider<MeterRegistry> meterRegistry
+    ) {
+        log.info("Resiliencia de Feign - Presupuesto de reintentos: {}% (mínimo {}/s), Máximo por llamada: {}",
+            Math.round(budgetRatio * 100), minRetriesPerSecond, maxRetriesPerCall);
+
+        Map<String, RetryBudget> budgets = new ConcurrentHashMap<>();
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+
+        return new Capability() {
+            @Override
+            public Client enrich(Client client) {
+                return new ResilientClient(client, circuitBreakerRegistry, bulkheadRegistry, budgets, registry,
+                    budgetRatio, minRetriesPerSecond, maxRetriesPerCall);
+            }
+        };
+    }
+
+    /**
+     * Client con bulkhead + circuit breaker por servicio y reintentos acotados.
+     */
+    static final class ResilientClient implements Client {
+
+        private final Client delegate;
+        private final CircuitBreakerRegistry circuitBreakers;
+        private final BulkheadRegistry bulkheads;
+        private final Map<String, RetryBudget> budgets;
+        private final MeterRegistry meterRegistry;
+        private final double budgetRatio;
+        private final int minRetriesPerSecond;
+        private final int maxRetriesPerCall;
+
+        ResilientClient(Client delegate, CircuitBreakerRegistry circuitBreakers, BulkheadRegistry bulkheads,
+                        Map<String, RetryBudget> budgets, MeterRegistry meterRegistry,
+                        double budgetRatio, int minRetriesPerSecond, int maxRetriesPerCall) {
+            this.delegate = delegate;
+            this.circuitBreakers = circuitBreakers;
+            this.bulkheads = bulkheads;
+            this.budgets = budgets;
+            this.meterRegistry = meterRegistry;
+            this.budgetRatio = budgetRatio;
+            this.minRetriesPerSecond = minRetriesPerSecond;
+            this.maxRetriesPerCall = maxRetriesPerCall;
+        }
+
+        @Override
+        public Response execute(Request request, Request.Options options) throws IOException {
+            String service = serviceOf(request);
+            CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker(service);
+            Bulkhead bulkhead = bulkheads.bulkhead(service);
+            RetryBudget budget = budgets.computeIfAbsent(service, this::newBudget);
+            boolean safe = request.httpMethod() == Request.HttpMethod.GET || request.httpMethod() == Request.HttpMethod.HEAD;
+
+            budget.deposit();
+            for (int retries = 0; ; retries++) {
+                Response response;
+                try {
+                    response = attempt(service, circuitBreaker, bulkhead, request, options);
+                } catch (IOException e) {
+                    if (retries < maxRetriesPerCall && (safe || notSent(e)) && withdraw(service, budget)) {
+                        log.warn("Reintentando {} {} ({}): {}", request.httpMethod(), request.url(), retries + 1, e.toString());
+                        continue;
+                    }
+                    throw e;
+                }
+
+                if (safe && isRetryableStatus(response.status()) && retries < maxRetriesPerCall && withdraw(service, budget)) {
+                    log.warn("Reintentando {} {} ({}): HTTP {}", request.httpMethod(), request.url(), retries + 1, response.status());
+                    response.close();
+                    continue;
+                }
+                return response;
+            }
+        }
+
+        private Response attempt(String service, CircuitBreaker circuitBreaker, Bulkhead bulkhead,
+                                 Request request, Request.Options options) throws IOException {
+            try {
+                bulkhead.acquirePermission();
+            } catch (BulkheadFullException e) {
+                throw new DownstreamUnavailableException(service, "demasiadas llamadas en curso", 1, e);
+            }
+
+            try {
+                try {
+                    circuitBreaker.acquirePermission();
+                } catch (CallNotPermittedException e) {
+                    throw new DownstreamUnavailableException(service, "circuit breaker abierto", retryAfterSeconds(circuitBreaker), e);
+                }
+
+                long start = System.nanoTime();
+                try {
+                    Response response = delegate.execute(request, options);
+                    long elapsed = System.nanoTime() - start;
+                    if (response.status() >= 500) {
+                        circuitBreaker.onError(elapsed, TimeUnit.NANOSECONDS, new ServerErrorResponse(response.status()));
+                    } else {
+                        circuitBreaker.onSuccess(elapsed, TimeUnit.NANOSECONDS);
+                    }
+                    return response;
+                } catch (IOException | RuntimeException e) {
+                    circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+                    throw e;
+                }
+            } finally {
+                bulkhead.onComplete();
+            }
+        }
+
+        private boolean withdraw(String service, RetryBudget budget) {
+            boolean allowed = budget.tryWithdraw();
+            if (meterRegistry != null) {
+                Counter.builder("feign.retries")
+                    .tag("client", service)
+                    .tag("outcome", allowed ? "retried" : "budget_exhausted")
+                    .register(meterRegistry)
+                    .increment();
+            }
+            if (!allowed) {
+                log.warn("Presupuesto de reintentos agotado para {}", service);
+            }
+            return allowed;
+        }
+
+        private RetryBudget newBudget(String service) {
+            RetryBudget budget = new RetryBudget(budgetRatio, minRetriesPerSecond);
+            if (meterRegistry != null) {
+                Gauge.builder("feign.retry.budget.balance", budget, RetryBudget::balance)
+                    .tag("client", service)
+                    .register(meterRegistry);
+            }
+            return budget;
+        }
+
+        /**
+         * Nombre del Feign client (= instancia de resilience4j); si no, el host.
+         */
+        private static String serviceOf(Request request) {
+            if (request.requestTemplate() != null && request.requestTemplate().feignTarget() != null) {
+                return request.requestTemplate().feignTarget().name();
+            }
+            return URI.create(request.url()).getHost();
+        }
+
+        /**
+         * La request no llegó a salir: se puede reintentar aunque no sea idempotente.
+         */
+        private static boolean notSent(IOException e) {
+            return e instanceof ConnectException
+                || e instanceof ConnectTimeoutException
+                || e instanceof HttpConnectTimeoutException
+                || e instanceof NoRouteToHostException
+                || e instanceof UnknownHostException;
+        }
+
+        private static boolean isRetryableStatus(int status) {
+            return status == 502 || status == 503 || status == 504;
+        }
+
+        private static long retryAfterSeconds(CircuitBreaker circuitBreaker) {
+            long waitMs = circuitBreaker.getCircuitBreakerConfig().getWaitIntervalFunctionInOpenState().apply(1);
+            return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(waitMs + 999));
+        }
+    }
+
+    /**
+     * Respuesta 5xx registrada como falla en el circuit breaker.
+     */
+    static final class ServerErrorResponse extends RuntimeException {
+        ServerErrorResponse(int status) {
+            super("HTTP " + status, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.order.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.SelectedInstanceCallback;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load balancer "power of two choices" por latencia y requests pendientes
+ *
+ * ⭐ LA INSTANCIA LENTA RECIBE MENOS TRÁFICO, SOLA ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * Round-robin (default de Spring Cloud LoadBalancer) reparte igual a
+ * todas las instancias de Eureka: la que está en una pausa de GC recibe
+ * su parte igual, y esas requests esperan la pausa entera.
+ *
+ * SOLUCIÓN (P2C):
+ * ===============
+ *
+ * 1. Se descartan las instancias expulsadas por errores (LoadBalancerStats)
+ * 2. Se eligen DOS al azar
+ * 3. Gana la de menor costo = latencia (peak EWMA) × (pendientes + 1)
+ *
+ * ¿Por qué dos al azar y no "la mejor"? Con varios clientes (instancias
+ * de Order Service, el Gateway) todos mandarían a la misma "mejor"
+ * instancia a la vez. Dos al azar evita esa manada y casi iguala a
+ * "la mejor" en latencia.
+ *
+ * Mismo ServiceInstanceListSupplier que round-robin (Eureka + caché).
+ *
+ * Fuente de verdad de com.example.gateway.config.LatencyAwareLoadBalancer
+ * (api-gateway): un cambio acá se copia allá.
+ */
+public class LatencyAwareLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    private final ObjectProvider<ServiceInstanceListSupplier> supplierProvider;
+    private final LoadBalancerStats stats;
+    private final double minAvailablePercent;
+
+    public LatencyAwareLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> supplierProvider,
+                                    LoadBalancerStats stats, double minAvailablePercent) {
+        this.supplierProvider = supplierProvider;
+        this.stats = stats;
+        this.minAvailablePercent = minAvailablePercent;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = supplierProvider.getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map(instances -> {
+            Response<ServiceInstance> response = choose(instances);
+            if (supplier instanceof SelectedInstanceCallback callback && response.hasServer()) {
+                callback.selectedServiceInstance(response.getServer());
+            }
+            return response;
+        });
+    }
+
+    private Response<ServiceInstance> choose(List<ServiceInstance> instances) {
+        if (instances.isEmpty()) {
+            return new EmptyResponse();
+        }
+        List<ServiceInstance> candidates = stats.available(instances, minAvailablePercent);
+        if (candidates.size() == 1) {
+            return new DefaultResponse(candidates.get(0));
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceInstance a = candidates.get(first);
+        ServiceInstance b = candidates.get(second);
+        return new DefaultResponse(stats.cost(a) <= stats.cost(b) ? a : b);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.order.config;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Presupuesto de reintentos de un servicio remoto
+ *
+ * ⭐ LOS REINTENTOS SON UN PORCENTAJE DEL TRÁFICO, NO UN MÚLTIPLO ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * Con "max-attempts: 3" fijo, cuando Product Service se degrada cada
+ * request le manda TRES: la carga sobre el servicio enfermo se triplica
+ * justo cuando menos puede atenderla (retry storm).
+ *
+ * SOLUCIÓN:
+ * =========
+ *
+ * Cada request deposita "ratio" tokens (ej: 0.1); cada reintento cuesta
+ * UN token. Si no hay tokens, no se reintenta:
+ *
+ *   ratio 0.1 → como máximo ~10% de requests extra, falle lo que falle
+ *
+ * Con poco tráfico el ratio no alcanza para nada, así que además se
+ * permiten "min-per-second" reintentos por segundo (piso).
+ *
+ * El saldo se acota a lo que ganan 1000 requests: un período largo sin
+ * fallas no acumula un crédito de reintentos enorme.
+ *
+ * SIN LOCKS:
+ * ==========
+ *
+ * Saldo en milésimas de token (AtomicLong); el piso por segundo es
+ * (segundo << 20 | usados) en otro AtomicLong, igual que el estado del
+ * SnowflakeIdGenerator. Todo con compare-and-set.
+ *
+ * Fuente de verdad: api-gateway tiene una copia
+ * (com.example.gateway.filter.RetryBudget) que usa como presupuesto de
+ * hedged requests.
+ */
+public class RetryBudget {
+
+    private static final long MILLI = 1000;
+    private static final int USED_BITS = 20;
+    private static final long USED_MASK = (1L << USED_BITS) - 1;
+
+    private final long depositMillis;
+    private final long maxBalanceMillis;
+    private final long minPerSecond;
+
+    private final AtomicLong balanceMillis = new AtomicLong();
+    private final AtomicLong floor = new AtomicLong();
+
+    /**
+     * @param ratio Tokens que deposita cada request (0.1 = reintentos hasta el 10% del tráfico)
+     * @param minPerSecond Reintentos permitidos por segundo aunque no haya saldo
+     */
+    public RetryBudget(double ratio, int minPerSecond) {
+        if (ratio < 0 || ratio > 1) {
+            throw new IllegalArgumentException("ratio debe estar entre 0 y 1: " + ratio);
+        }
+        this.depositMillis = Math.round(ratio * MILLI);
+        this.maxBalanceMillis = Math.max(depositMillis * 1000, MILLI);
+        this.minPerSecond = Math.min(Math.max(minPerSecond, 0), USED_MASK);
+    }
+
+    /**
+     * Registra un request (primer intento).
+     */
+    public void deposit() {
+        if (depositMillis > 0) {
+            balanceMillis.accumulateAndGet(depositMillis, (current, deposit) -> Math.min(maxBalanceMillis, current + deposit));
+        }
+    }
+
+    /**
+     * Intenta pagar un reintento.
+     *
+     * @return true si el reintento está dentro del presupuesto
+     */
+    public boolean tryWithdraw() {
+        while (true) {
+            long current = balanceMillis.get();
+            if (current < MILLI) {
+                break;
+            }
+            if (balanceMillis.compareAndSet(current, current - MILLI)) {
+                return true;
+            }
+        }
+        return tryFloor();
+    }
+
+    /**
+     * Saldo actual en tokens (métricas).
+     */
+    public double balance() {
+        return balanceMillis.get() / (double) MILLI;
+    }
+
+    private boolean tryFloor() {
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        while (true) {
+            long current = floor.get();
+            long used = (current >> USED_BITS) == second ? current & USED_MASK : 0;
+            if (used >= minPerSecond) {
+                return false;
+            }
+            if (floor.compareAndSet(current, (second << USED_BITS) | (used + 1))) {
+                return true;
+            }
+        }
+    }
+}
@@ -1,23 +1,45 @@
 package com.example.order.controller;
 
 import com.example.order.client.ProductServiceClient;
-import com.example.order.client.UserServiceClient;
 import com.example.order.dto.*;
+import com.example.order.exception.BadRequestException;
+import com.example.order.exception.DownstreamServiceException;
+import com.example.order.exception.DownstreamUnavailableException;
+import com.example.order.exception.InsufficientStockException;
+import com.example.order.exception.ResourceNotFoundException;
+import com.example.order.repository.OrderRepository;
+import com.example.order.service.IdempotencyStore;
+import com.example.order.service.OrderBatchService;
+import com.example.order.service.OrderPipeline;
+import com.example.order.service.SnowflakeIdGenerator;
+import com.example.order.service.UserInfoResolver;
+import feign.FeignException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.net.URI;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Order Controller - Endpoints de Órdenes
@@ -32,14 +54,14 @@ import java.util.stream.Collectors;
  * 3. Gateway → Order Service con JWT (JWTPropagationFilter)
  * 4. Order Service valida JWT (SecurityConfig)
  * 5. Controller recibe request
- * 6. Controller → User Service (Feign + FeignClientInterceptor)
- *    - FeignClientInterceptor agrega JWT al request
- *    - User Service valida JWT
- *    - User Service devuelve info del usuario
+ * 6. Controller obtiene info del usuario (UserInfoResolver)
+ *    - Por defecto: desde los claims del JWT ya validado (sin red)
+ *    - Modo remote: User Service (Feign + FeignClientInterceptor)
  * 7. Controller → Product Service (Feign + FeignClientInterceptor)
+ *    - En PARALELO con el paso 6 (downstreamExecutor)
  *    - FeignClientInterceptor agrega JWT al request
  *    - Product Service valida JWT
- *    - Product Service devuelve info del producto
+ *    - Product Service reserva el stock y devuelve nombre y precio
  * 8. Controller combina información y crea orden
  * 9. Controller devuelve orden creada
  * 10. Orden → Gateway → Cliente
@@ -48,13 +70,13 @@ import java.util.stream.Collectors;
  * ===============
  *
  * 🎯 JWT VIAJA POR TODA LA CADENA:
- *    Cliente → Gateway → Order → User Service
- *                              → Product Service
+ *    Cliente → Gateway → Order → Product Service
+ *                              → User Service (solo en modo remote)
  *
  * 🎯 CADA SERVICIO VALIDA JWT:
  *    Gateway ✓
  *    Order Service ✓
- *    User Service ✓
+ *    User Service ✓ (modo remote)
  *    Product Service ✓
  *
  * 🎯 SERVICE ORCHESTRATION:
@@ -67,37 +89,102 @@ public class OrderController {
 
     private static final Logger log = LoggerFactory.getLogger(OrderController.class);
 
-    private final UserServiceClient userServiceClient;
+    private final UserInfoResolver userInfoResolver;
     private final ProductServiceClient productServiceClient;
+    private final Executor downstreamExecutor;
+    private final OrderRepository orderRepository;
+
+    @Value("${orders.downstream.timeout-ms:10000}")
+    private long downstreamTimeoutMs;
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final String PREFER_HEADER = "Prefer";
+    private static final String PREFERENCE_APPLIED_HEADER = "Preference-Applied";
+    private static final String RESPOND_ASYNC = "respond-async";
 
-    // Mock database
-    private final Map<Long, OrderDTO> orders = new ConcurrentHashMap<>();
-    private final AtomicLong idGenerator = new AtomicLong(1);
+    private final SnowflakeIdGenerator idGenerator;
+    private final IdempotencyStore idempotencyStore;
+    private final OrderBatchService orderBatchService;
+    private final OrderPipeline orderPipeline;
 
-    public OrderController(UserServiceClient userServiceClient, ProductServiceClient productServiceClient) {
-        this.userServiceClient = userServiceClient;
+    @Value("${orders.async.sse-timeout-ms:30000}")
+    private long sseTimeoutMs;
+
+    public OrderController(
+        UserInfoResolver userInfoResolver,
+        ProductServiceClient productServiceClient,
+        @Qualifier("downstreamExecutor") Executor downstreamExecutor,
+        OrderRepository orderRepository,
+        SnowflakeIdGenerator idGenerator,
+        IdempotencyStore idempotencyStore,
+        OrderBatchService orderBatchService,
+        OrderPipeline orderPipeline
+    ) {
+        this.userInfoResolver = userInfoResolver;
         this.productServiceClient = productServiceClient;
+        this.downstreamExecutor = downstreamExecutor;
+        this.orderRepository = orderRepository;
+        this.idGenerator = idGenerator;
+        this.idempotencyStore = idempotencyStore;
+        this.orderBatchService = orderBatchService;
+        this.orderPipeline = orderPipeline;
+        // Las órdenes sobreviven al reinicio: nunca repetir un ID ya guardado
+        idGenerator.advancePast(orderRepository.lastId());
     }
 
     /**
      * GET /orders
      *
-     * Lista todas las órdenes del usuario actual.
+     * Lista las órdenes del usuario actual, ordenadas por createdAt.
+     *
+     * Usa el índice por usuario de OrderRepository: el costo depende
+     * de las órdenes DEL USUARIO, no del total de órdenes del sistema.
+     *
+     * PAGINACIÓN POR CURSOR (opcional):
+     * =================================
+     *
+     *   GET /orders?limit=20
+     *   → 20 órdenes + header X-Next-Cursor: 42
+     *
+     *   GET /orders?limit=20&cursor=42
+     *   → las 20 siguientes (O(tamaño de página))
+     *
+     * Sin "limit" se devuelven todas las órdenes del usuario.
      *
+     * @param limit Tamaño de página (opcional, máximo 100)
+     * @param cursor Cursor devuelto en X-Next-Cursor (opcional)
      * @param jwt JWT del usuario
      * @return Órdenes del usuario
      */
     @GetMapping
-    public List<OrderDTO> getMyOrders(@AuthenticationPrincipal Jwt jwt) {
+    public ResponseEntity<List<OrderDTO>> getMyOrders(
+        @RequestParam(required = false) Integer limit,
+        @RequestParam(required = false) String cursor,
+        @AuthenticationPrincipal Jwt jwt
+    ) {
         String username = jwt.getClaimAsString("preferred_username");
 
-        List<OrderDTO> userOrders = orders.values().stream()
-            .filter(order -> order.getUsername().equals(username))
-            .collect(Collectors.toList());
+        if (limit == null) {
+            List<OrderDTO> userOrders = orderRepository.findByUsername(username);
+            log.info("GET /orders - Usuario: {}, Total órdenes: {}", username, userOrders.size());
+            return ResponseEntity.ok(userOrders);
+        }
+
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("limit debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
 
-        log.info("GET /orders - Usuario: {}, Total órdenes: {}", username, userOrders.size());
+        OrderRepository.Page page = orderRepository.findPageByUsername(username, cursor, limit);
+        log.info("GET /orders - Usuario: {}, Cursor: {}, Órdenes en página: {}", username, cursor, page.items().size());
 
-        return userOrders;
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
     }
 
     /**
@@ -115,7 +202,7 @@ public class OrderController {
 
         log.info("GET /orders/{} - Usuario: {}", id, username);
 
-        OrderDTO order = orders.get(id);
+        OrderDTO order = orderRepository.findById(id).orElse(null);
         if (order == null) {
             log.warn("Orden no encontrada - ID: {}, Usuario: {}", id, username);
             throw new RuntimeException("Order not found: " + id);
@@ -139,95 +226,419 @@ public class OrderController {
      * ⭐ ESTE ES EL ENDPOINT MÁS IMPORTANTE ⭐
      *
      * FLUJO:
-     * 1. Obtiene info del usuario (llamada a User Service con JWT)
-     * 2. Obtiene info del producto (llamada a Product Service con JWT)
+     * 1. Obtiene info del usuario (claims del JWT, o User Service en modo remote)
+     * 2. Reserva stock del producto (llamada a Product Service con JWT)
+     *    → 1 y 2 se ejecutan EN PARALELO
      * 3. Combina información y crea orden
      *
+     * RESERVA ATÓMICA:
+     * ================
+     * Antes se pedía el ProductDTO y se comparaba el stock sin descontarlo:
+     * dos órdenes concurrentes podían vender la misma unidad.
+     * Ahora Product Service descuenta el stock con compare-and-set y
+     * devuelve nombre y precio en la misma respuesta (un solo round-trip).
+     *
+     * - Stock insuficiente → 409 Conflict
+     * - Producto no existe → 404 Not Found
+     * - Si falla User Service → se libera la reserva (compensación)
+     *
+     * IDEMPOTENCIA (header Idempotency-Key, opcional):
+     * ================================================
+     *
+     *   POST /orders  Idempotency-Key: 7f3c...  → crea la orden
+     *   POST /orders  Idempotency-Key: 7f3c...  → la MISMA orden, sin llamadas
+     *                                             (header Idempotent-Replayed: true)
+     *
+     * Reintentos concurrentes con la misma clave esperan a la primera
+     * ejecución (si no termina a tiempo → 409 + Retry-After).
+     * Misma clave con otro body → 422 (ver IdempotencyStore).
+     *
+     * MODO ASÍNCRONO (Prefer: respond-async, requiere orders.async.enabled):
+     * ======================================================================
+     *
+     *   → 202 Accepted + Location: /api/orders/requests/{id}
+     *   → la orden se crea en OrderPipeline; el estado se consulta en Location
+     *   → cola llena: 429 + Retry-After
+     *
      * @param request Request con productId y quantity
+     * @param idempotencyKey Clave de idempotencia (opcional)
+     * @param prefer Header Prefer (respond-async → modo asíncrono)
      * @param jwt JWT del usuario
-     * @return Orden creada
+     * @param httpRequest Request HTTP (para armar la URL de estado)
+     * @return Orden creada (200) u orden aceptada (202)
      */
     @PostMapping
-    public OrderDTO createOrder(@Valid @RequestBody CreateOrderRequest request, @AuthenticationPrincipal Jwt jwt) {
+    public ResponseEntity<?> createOrder(
+        @Valid @RequestBody CreateOrderRequest request,
+        @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+        @RequestHeader(name = PREFER_HEADER, required = false) String prefer,
+        @AuthenticationPrincipal Jwt jwt,
+        HttpServletRequest httpRequest
+    ) {
         String username = jwt.getClaimAsString("preferred_username");
 
-        log.info("POST /orders - Usuario: {}, Producto ID: {}, Cantidad: {}",
-            username, request.getProductId(), request.getQuantity());
+        log.info("POST /orders - Usuario: {}, Producto ID: {}, Cantidad: {}, Idempotency-Key: {}, Prefer: {}",
+            username, request.getProductId(), request.getQuantity(), idempotencyKey, prefer);
+
+        if (prefer != null && prefer.contains(RESPOND_ASYNC) && orderPipeline.isEnabled()) {
+            IdempotencyStore.Outcome<OrderPipeline.Job> outcome = submitOrder(username, idempotencyKey, request, jwt);
+            OrderPipeline.Job job = outcome.value();
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.accepted()
+                .location(URI.create(httpRequest.getContextPath() + "/orders/requests/" + job.getId()))
+                .header(PREFERENCE_APPLIED_HEADER, RESPOND_ASYNC);
+            if (idempotencyKey != null) {
+                response.header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(outcome.replayed()));
+            }
+            return response.body(job.toDTO());
+        }
+
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(placeOrder(request, jwt));
+        }
+
+        IdempotencyStore.Outcome<OrderDTO> outcome =
+            idempotencyStore.execute(username, idempotencyKey, request, () -> placeOrder(request, jwt));
+
+        return ResponseEntity.ok()
+            .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(outcome.replayed()))
+            .body(outcome.value());
+    }
+
+    /**
+     * POST /orders  (Accept: text/event-stream)
+     *
+     * Como el modo asíncrono, pero la respuesta es un stream SSE:
+     *
+     *   event: accepted   data: {"id":"...","status":"QUEUED",...}
+     *   event: completed  data: {"id":"...","status":"COMPLETED","order":{...}}
+     *   (o event: failed  data: {"status":"FAILED","errorStatus":409,...})
+     *
+     * Si el stream vence antes (orders.async.sse-timeout-ms), el estado sigue
+     * disponible en GET /orders/requests/{id}.
+     *
+     * Con orders.async.enabled=false la orden se crea en el hilo del request
+     * y se envían los eventos juntos.
+     *
+     * @param request Request con productId y quantity
+     * @param idempotencyKey Clave de idempotencia (opcional)
+     * @param jwt JWT del usuario
+     * @return Stream de eventos de la orden
+     */
+    @PostMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter createOrderStream(
+        @Valid @RequestBody CreateOrderRequest request,
+        @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+        @AuthenticationPrincipal Jwt jwt
+    ) {
+        String username = jwt.getClaimAsString("preferred_username");
+
+        log.info("POST /orders (SSE) - Usuario: {}, Producto ID: {}, Cantidad: {}, Idempotency-Key: {}",
+            username, request.getProductId(), request.getQuantity(), idempotencyKey);
+
+        OrderPipeline.Job job = submitOrder(username, idempotencyKey, request, jwt).value();
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
 
-        // ==========================================
-        // 1. OBTENER INFO DEL USUARIO
-        // ==========================================
-        log.debug("Llamando a User Service...");
-        UserInfoDTO user;
         try {
-            // Feign llama a: GET http://user-service/users/me
-            // FeignClientInterceptor agrega JWT automáticamente
-            user = userServiceClient.getCurrentUser();
-            log.debug("User Service respondió: {}", user.getUsername());
-        } catch (Exception e) {
-            log.error("Error llamando a User Service: {}", e.getMessage(), e);
-            throw new RuntimeException("Error obteniendo información del usuario", e);
+            emitter.send(SseEmitter.event().name("accepted").id(job.getId()).data(job.toDTO()));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
         }
 
+        job.getResult().whenComplete((order, error) -> {
+            try {
+                emitter.send(SseEmitter.event()
+                    .name(error == null ? "completed" : "failed")
+                    .id(job.getId())
+                    .data(job.toDTO()));
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                // El cliente se desconectó o el stream venció: el estado sigue en /orders/requests/{id}
+                log.debug("No se pudo notificar la orden {} por SSE: {}", job.getId(), e.getMessage());
+            }
+        });
+
+        return emitter;
+    }
+
+    /**
+     * GET /orders/requests/{id}
+     *
+     * Estado de una orden aceptada en modo asíncrono (solo para su dueño).
+     *
+     * @param id ID devuelto en el 202 (Location) o en el evento "accepted"
+     * @param jwt JWT del usuario
+     * @return Estado: QUEUED, PROCESSING, COMPLETED (con la orden) o FAILED
+     */
+    @GetMapping("/requests/{id}")
+    public OrderJobDTO getOrderRequest(@PathVariable String id, @AuthenticationPrincipal Jwt jwt) {
+        String username = jwt.getClaimAsString("preferred_username");
+
+        return orderPipeline.find(id, username)
+            .map(OrderPipeline.Job::toDTO)
+            .orElseThrow(() -> new ResourceNotFoundException("Order request", "id", id));
+    }
+
+    /**
+     * Encola la orden en OrderPipeline (con Idempotency-Key: una sola vez por clave).
+     *
+     * La huella incluye el modo: la misma clave no puede usarse en modo
+     * síncrono y asíncrono a la vez (el resultado guardado es distinto).
+     * Si la orden falla en el pipeline, la clave se libera igual que en
+     * modo síncrono: el reintento vuelve a encolarla.
+     */
+    private IdempotencyStore.Outcome<OrderPipeline.Job> submitOrder(
+            String username, String idempotencyKey, CreateOrderRequest request, Jwt jwt) {
+        if (idempotencyKey == null) {
+            return new IdempotencyStore.Outcome<>(orderPipeline.submit(username, () -> placeOrder(request, jwt)), false);
+        }
+        return idempotencyStore.execute(username, idempotencyKey, List.of(RESPOND_ASYNC, request),
+            () -> orderPipeline.submit(username, () -> placeOrder(request, jwt)),
+            OrderPipeline.Job::getResult);
+    }
+
+    /**
+     * POST /orders/batch
+     *
+     * Crea varias órdenes del usuario actual en un solo request.
+     *
+     * - Usuario resuelto UNA vez
+     * - Productos desde ProductCache; los que faltan, en UNA llamada (GET /products?ids=...)
+     * - Stock validado por producto en forma agregada, UNA reserva por producto
+     * - Un resultado por elemento (CREATED o FAILED con su código):
+     *   que falle un elemento no hace fallar el lote
+     *
+     * Acepta Idempotency-Key igual que POST /orders.
+     *
+     * @param request Lista de órdenes (máximo orders.batch.max-size)
+     * @param idempotencyKey Clave de idempotencia (opcional)
+     * @param jwt JWT del usuario
+     * @return Resultado por elemento
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<OrderBatchResponse> createOrders(
+        @Valid @RequestBody CreateOrderBatchRequest request,
+        @RequestHeader(name = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+        @AuthenticationPrincipal Jwt jwt
+    ) {
+        String username = jwt.getClaimAsString("preferred_username");
+
+        log.info("POST /orders/batch - Usuario: {}, Elementos: {}, Idempotency-Key: {}",
+            username, request.getOrders().size(), idempotencyKey);
+
+        if (idempotencyKey == null) {
+            return ResponseEntity.ok(orderBatchService.createOrders(request.getOrders(), jwt));
+        }
+
+        IdempotencyStore.Outcome<OrderBatchResponse> outcome = idempotencyStore.execute(
+            username, idempotencyKey, request, () -> orderBatchService.createOrders(request.getOrders(), jwt));
+
+        return ResponseEntity.ok()
+            .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(outcome.replayed()))
+            .body(outcome.value());
+    }
+
+    /**
+     * Crea la orden: info del usuario + reserva de stock en paralelo.
+     */
+    private OrderDTO placeOrder(CreateOrderRequest request, Jwt jwt) {
         // ==========================================
-        // 2. OBTENER INFO DEL PRODUCTO
+        // 1 + 2. INFO DEL USUARIO Y RESERVA DE STOCK EN PARALELO
         // ==========================================
-        log.debug("Llamando a Product Service...");
-        ProductDTO product;
+        // Las dos llamadas son independientes: lanzarlas a la vez hace que
+        // la latencia sea la de la MÁS LENTA, no la SUMA de ambas.
+        //
+        // downstreamExecutor propaga el SecurityContext a sus hilos,
+        // así FeignClientInterceptor sigue agregando el JWT.
+        //
+        // Por defecto el usuario sale de los claims del JWT (sin red);
+        // solo con orders.user-info.mode=remote se llama a User Service.
+        log.debug("Resolviendo usuario ({}) y reservando stock en paralelo...",
+            userInfoResolver.isRemote() ? "User Service" : "JWT local");
+
+        // Un username que el journal no puede guardar → 400 antes de reservar nada
+        orderRepository.checkUsername(jwt.getClaimAsString("preferred_username"));
+
+        CompletableFuture<UserInfoDTO> userCall = userInfoResolver.resolve(jwt);
+
+        // Feign llama a: POST http://product-service/products/{id}/reservations
+        CompletableFuture<StockReservationDTO> reservation = CompletableFuture
+            .supplyAsync(() -> reserveStock(request), downstreamExecutor);
+        CompletableFuture<StockReservationDTO> reservationCall = reservation.copy()
+            .orTimeout(downstreamTimeoutMs, TimeUnit.MILLISECONDS);
+
         try {
-            // Feign llama a: GET http://product-service/products/{id}
-            // FeignClientInterceptor agrega JWT automáticamente
-            product = productServiceClient.getProductById(request.getProductId());
-            log.debug("Product Service respondió: {}", product.getName());
-        } catch (Exception e) {
-            log.error("Error llamando a Product Service: {}", e.getMessage(), e);
-            throw new RuntimeException("Error obteniendo información del producto", e);
+            awaitAll(Map.of(
+                "user-service", userCall,
+                "product-service", reservationCall
+            ));
+        } catch (RuntimeException e) {
+            // Compensación: si el stock se llegó a reservar (aunque sea
+            // después del timeout), devolverlo a Product Service
+            reservation.thenAccept(this::releaseReservation);
+            throw e;
         }
 
-        // ==========================================
-        // 3. VALIDAR STOCK
-        // ==========================================
-        if (product.getStock() < request.getQuantity()) {
-            throw new RuntimeException("Stock insuficiente. Disponible: " + product.getStock());
+        UserInfoDTO user = userCall.join();
+        StockReservationDTO stock = reservationCall.join();
+        log.debug("Usuario: {}, Reserva: {} (stock restante: {})",
+            user.getUsername(), stock.getId(), stock.getRemainingStock());
+
+        try {
+            OrderDTO order = saveOrder(request, user, stock);
+            log.info("Orden creada exitosamente - ID: {}, Usuario: {}, Producto: {}, Cantidad: {}, Total: ${}, Reserva: {}",
+                order.getId(), order.getUsername(), order.getProductName(),
+                order.getQuantity(), order.getTotalPrice(), stock.getId());
+            return order;
+        } catch (RuntimeException e) {
+            // Compensación: la reserva ya está confirmada; si la orden no se
+            // pudo guardar (journal, importe fuera de rango, I/O), devolver el stock
+            log.error("No se pudo guardar la orden - Usuario: {}, Reserva: {}: {}",
+                user.getUsername(), stock.getId(), e.getMessage());
+            releaseReservation(stock);
+            throw e;
         }
 
+        /**
+         * IMPORTANTE: En una app real, aquí también:
+         * - Procesarías pago
+         * - Enviarías eventos (Kafka/RabbitMQ)
+         * - Crearías record en BD
+         * - Enviarías email de confirmación
+         * - etc.
+         */
+    }
+
+    /**
+     * Arma la orden con el precio reservado y la guarda en el journal.
+     */
+    private OrderDTO saveOrder(CreateOrderRequest request, UserInfoDTO user, StockReservationDTO stock) {
         // ==========================================
-        // 4. CALCULAR TOTAL
+        // 3. CALCULAR TOTAL (precio al momento de reservar)
         // ==========================================
-        BigDecimal totalPrice = product.getPrice().multiply(BigDecimal.valueOf(request.getQuantity()));
+        BigDecimal totalPrice = stock.getUnitPrice().multiply(BigDecimal.valueOf(request.getQuantity()));
 
         // ==========================================
-        // 5. CREAR ORDEN
+        // 4. CREAR ORDEN
         // ==========================================
-        Long orderId = idGenerator.getAndIncrement();
+        // ID único en el cluster y ordenado por tiempo (SnowflakeIdGenerator)
+        Long orderId = idGenerator.nextId();
         OrderDTO order = OrderDTO.builder()
             .id(orderId)
             .username(user.getUsername())
-            .productId(product.getId())
-            .productName(product.getName())
-            .productPrice(product.getPrice())
+            .productId(stock.getProductId())
+            .productName(stock.getProductName())
+            .productPrice(stock.getUnitPrice())
             .quantity(request.getQuantity())
             .totalPrice(totalPrice)
             .createdAt(LocalDateTime.now())
             .build();
 
-        orders.put(orderId, order);
+        return orderRepository.save(order);
+    }
 
-        log.info("Orden creada exitosamente - ID: {}, Usuario: {}, Producto: {}, Cantidad: {}, Total: ${}",
-            order.getId(), order.getUsername(), order.getProductName(),
-            order.getQuantity(), order.getTotalPrice());
+    /**
+     * Reserva stock en Product Service (confirm=true, no expira).
+     *
+     * Traduce las respuestas de negocio de Product Service:
+     * - 409 → InsufficientStockException (409 al cliente)
+     * - 404 → ResourceNotFoundException (404 al cliente)
+     */
+    private StockReservationDTO reserveStock(CreateOrderRequest request) {
+        StockReservationRequest body = StockReservationRequest.builder()
+            .quantity(request.getQuantity())
+            .confirm(true)
+            .build();
 
-        return order;
+        try {
+            return productServiceClient.reserveStock(request.getProductId(), body);
+        } catch (FeignException.Conflict e) {
+            throw new InsufficientStockException(request.getProductId(), request.getQuantity(), null);
+        } catch (FeignException.NotFound e) {
+            throw new ResourceNotFoundException("Product", "id", request.getProductId());
+        }
+    }
 
-        /**
-         * IMPORTANTE: En una app real, aquí también:
-         * - Descontarías stock en Product Service
-         * - Procesarías pago
-         * - Enviarías eventos (Kafka/RabbitMQ)
-         * - Crearías record en BD
-         * - Enviarías email de confirmación
-         * - etc.
-         */
+    private void releaseReservation(StockReservationDTO reservation) {
+        try {
+            productServiceClient.releaseReservation(reservation.getProductId(), reservation.getId());
+            log.info("Reserva liberada (compensación) - ID: {}, Producto: {}, Cantidad: {}",
+                reservation.getId(), reservation.getProductId(), reservation.getQuantity());
+        } catch (RuntimeException e) {
+            log.error("No se pudo liberar la reserva {} del producto {}: {}",
+                reservation.getId(), reservation.getProductId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Espera a que terminen TODAS las llamadas y combina los errores.
+     *
+     * Si falla una sola llamada, se informa solo esa; si fallan varias,
+     * el cliente recibe UN error con el detalle de cada servicio.
+     *
+     * @param calls servicio → llamada en curso
+     * @throws DownstreamServiceException si alguna llamada falló o expiró
+     */
+    private void awaitAll(Map<String, CompletableFuture<?>> calls) {
+        try {
+            CompletableFuture.allOf(calls.values().toArray(new CompletableFuture[0])).join();
+            return;
+        } catch (CompletionException | CancellationException ignored) {
+            // Se analiza cada llamada por separado a continuación
+        }
+
+        // Errores de negocio (stock insuficiente, producto inexistente)
+        // no son fallas del servicio remoto → se propagan tal cual
+        for (CompletableFuture<?> call : calls.values()) {
+            Throwable cause = call.isCompletedExceptionally() ? unwrap(call) : null;
+            if (cause instanceof InsufficientStockException || cause instanceof ResourceNotFoundException) {
+                throw (RuntimeException) cause;
+            }
+        }
+
+        // Circuit breaker abierto / bulkhead lleno: la llamada ni se hizo → 503
+        for (CompletableFuture<?> call : calls.values()) {
+            Throwable cause = call.isCompletedExceptionally() ? unwrap(call) : null;
+            if (cause instanceof DownstreamUnavailableException unavailable) {
+                throw unavailable;
+            }
+        }
+
+        Map<String, String> failures = new LinkedHashMap<>();
+        Throwable firstCause = null;
+        boolean allTimeouts = true;
+
+        for (Map.Entry<String, CompletableFuture<?>> call : calls.entrySet()) {
+            if (!call.getValue().isCompletedExceptionally()) {
+                continue;
+            }
+
+            Throwable cause = unwrap(call.getValue());
+            boolean timeout = cause instanceof TimeoutException;
+            allTimeouts &= timeout;
+            firstCause = firstCause == null ? cause : firstCause;
+
+            String reason = timeout
+                ? "Timeout después de " + downstreamTimeoutMs + " ms"
+                : cause.getClass().getSimpleName() + ": " + cause.getMessage();
+            failures.put(call.getKey(), reason);
+
+            log.error("Error llamando a {}: {}", call.getKey(), reason, timeout ? null : cause);
+        }
+
+        throw new DownstreamServiceException(failures, allTimeouts, firstCause);
+    }
+
+    private static Throwable unwrap(CompletableFuture<?> future) {
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause() != null ? e.getCause() : e;
+        } catch (CancellationException e) {
+            return e;
+        }
     }
 
     /**
@@ -250,10 +661,10 @@ public class OrderController {
      * 3. Observar los logs:
      *    - Gateway: "🔐 JWT Propagation Filter" → Order Service
      *    - Order Service: "📦 POST /orders"
-     *    - Order Service: "🔗 Feign Client Interceptor" → User Service
-     *    - User Service: "📋 GET /users/me"
+     *    - (modo remote) Order Service: "🔗 Feign Client Interceptor" → User Service
+     *    - (modo remote) User Service: "📋 GET /users/me"
      *    - Order Service: "🔗 Feign Client Interceptor" → Product Service
-     *    - Product Service: "📦 GET /products/1"
+     *    - Product Service: "📦 POST /products/1/reservations"
      *    - Order Service: "✓ Orden creada exitosamente"
      *
      * 4. Listar mis órdenes:
@@ -0,0 +1,49 @@
+package com.example.order.controller;
+
+import com.example.order.dto.ProductChangeEvent;
+import com.example.order.service.ProductCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Product Change Controller - Suscriptor del feed de cambios de productos
+ *
+ * Product Service llama a este endpoint (en CADA instancia de Order
+ * Service, vía Eureka) cuando un admin modifica o elimina un producto.
+ *
+ * Es un endpoint INTERNO:
+ * - No está expuesto en el Gateway (no hay ruta a /internal/**)
+ * - Requiere el JWT del admin que hizo el cambio (lo reenvía Product Service)
+ */
+@RestController
+@RequestMapping("/internal/product-changes")
+public class ProductChangeController {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeController.class);
+
+    private final ProductCache productCache;
+
+    public ProductChangeController(ProductCache productCache) {
+        this.productCache = productCache;
+    }
+
+    /**
+     * POST /internal/product-changes
+     *
+     * Invalida el producto en la caché local.
+     *
+     * @param event Evento de cambio (productId, tipo, secuencia)
+     */
+    @PostMapping
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @PreAuthorize("hasRole('ADMIN')")  // ← Mismo permiso que el cambio en Product Service
+    public void onProductChange(@RequestBody ProductChangeEvent event) {
+        log.info("Cambio de producto recibido - {} {} (secuencia: {})",
+            event.getType(), event.getProductId(), event.getSequence());
+
+        productCache.invalidate(event.getProductId());
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.order.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Request para crear varias órdenes (POST /orders/batch)
+ *
+ * Cada elemento se valida como un CreateOrderRequest individual.
+ * El máximo de elementos se configura en orders.batch.max-size.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateOrderBatchRequest {
+
+    @NotEmpty(message = "La lista de órdenes no puede estar vacía")
+    private List<@Valid CreateOrderRequest> orders;
+}
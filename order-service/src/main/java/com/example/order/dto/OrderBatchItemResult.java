@@ -0,0 +1,27 @@
+package com.example.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de UN elemento de POST /orders/batch
+ *
+ * - CREATED → "order" tiene la orden creada
+ * - FAILED  → "errorStatus" y "error" explican por qué (ej: 409 stock insuficiente)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderBatchItemResult {
+
+    public enum Status { CREATED, FAILED }
+
+    private Integer index;          // Posición en el request
+    private Status status;
+    private OrderDTO order;         // Solo si CREATED
+    private Integer errorStatus;    // Solo si FAILED (código HTTP equivalente)
+    private String error;           // Solo si FAILED
+}
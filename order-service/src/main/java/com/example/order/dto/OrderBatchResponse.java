@@ -0,0 +1,24 @@
+package com.example.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Respuesta de POST /orders/batch
+ *
+ * Un resultado por elemento, en el mismo orden del request:
+ * que falle un elemento no hace fallar al resto.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderBatchResponse {
+    private Integer created;
+    private Integer failed;
+    private List<OrderBatchItemResult> results;
+}
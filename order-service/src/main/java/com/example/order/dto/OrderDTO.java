@@ -1,5 +1,7 @@
 package com.example.order.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -16,8 +18,10 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 public class OrderDTO {
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long id;
     private String username;        // Del User Service
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long productId;
     private String productName;      // Del Product Service
     private BigDecimal productPrice; // Del Product Service
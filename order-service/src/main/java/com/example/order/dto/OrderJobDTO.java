@@ -0,0 +1,32 @@
+package com.example.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Estado de una orden aceptada en modo asíncrono
+ *
+ * GET /orders/requests/{id}
+ *
+ * QUEUED → PROCESSING → COMPLETED (order) | FAILED (errorStatus, error)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderJobDTO {
+
+    public enum Status { QUEUED, PROCESSING, COMPLETED, FAILED }
+
+    private String id;
+    private Status status;
+    private OrderDTO order;         // Solo si COMPLETED
+    private Integer errorStatus;    // Solo si FAILED (código HTTP equivalente)
+    private String error;           // Solo si FAILED
+    private Instant acceptedAt;
+    private Instant completedAt;
+}
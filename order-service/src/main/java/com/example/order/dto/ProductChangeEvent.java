@@ -0,0 +1,25 @@
+package com.example.order.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Evento del feed de cambios de productos (copiado de Product Service)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangeEvent {
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long productId;
+    private String type;               // UPDATED, DELETED
+    private long sequence;
+    private Instant occurredAt;
+}
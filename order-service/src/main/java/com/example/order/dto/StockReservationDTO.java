@@ -0,0 +1,35 @@
+package com.example.order.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * DTO de Reserva de Stock (copiado de Product Service)
+ *
+ * Trae nombre y precio del producto: con esto alcanza para armar
+ * la orden, sin pedir el ProductDTO completo.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationDTO {
+    private String id;
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long productId;
+    private String productName;
+    private BigDecimal unitPrice;
+    private Integer quantity;
+    private Integer remainingStock;
+    private String status;             // HELD, CONFIRMED, RELEASED, EXPIRED
+    private String owner;
+    private Instant createdAt;
+    private Instant expiresAt;
+}
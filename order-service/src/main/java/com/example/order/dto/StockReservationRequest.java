@@ -0,0 +1,22 @@
+package com.example.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Request de reserva de stock (copiado de Product Service)
+ *
+ * Order Service siempre reserva con confirm=true:
+ * la reserva nace CONFIRMED en un solo round-trip.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationRequest {
+    private Integer quantity;
+    private Long ttlSeconds;
+    private boolean confirm;
+}
@@ -0,0 +1,17 @@
+package com.example.order.exception;
+
+/**
+ * Bad Request Exception
+ *
+ * Parámetro, header o body inválido por culpa del cliente (400).
+ *
+ * Las IllegalArgumentException NO se traducen a 400: dentro del servicio
+ * indican un error propio (ej: un valor que no entra en el journal) y
+ * terminan en 500.
+ */
+public class BadRequestException extends RuntimeException {
+
+    public BadRequestException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.order.exception;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * Downstream Service Exception
+ *
+ * Una o varias llamadas a otros microservicios fallaron.
+ * failures: servicio → motivo (ej: "product-service" → "Timeout después de 10000 ms")
+ */
+@Getter
+public class DownstreamServiceException extends RuntimeException {
+    private final Map<String, String> failures;
+    private final boolean timeout;
+
+    public DownstreamServiceException(Map<String, String> failures, boolean timeout, Throwable cause) {
+        super("Error llamando a " + String.join(", ", failures.keySet()), cause);
+        this.failures = Map.copyOf(failures);
+        this.timeout = timeout;
+    }
+}
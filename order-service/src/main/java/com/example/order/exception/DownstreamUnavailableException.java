@@ -0,0 +1,21 @@
+package com.example.order.exception;
+
+import lombok.Getter;
+
+/**
+ * Downstream Unavailable Exception
+ *
+ * La llamada a otro microservicio NO se hizo: circuit breaker abierto o
+ * bulkhead lleno (503 + Retry-After, sin esperar el readTimeout).
+ */
+@Getter
+public class DownstreamUnavailableException extends RuntimeException {
+    private final String service;
+    private final long retryAfterSeconds;
+
+    public DownstreamUnavailableException(String service, String reason, long retryAfterSeconds, Throwable cause) {
+        super(String.format("%s no disponible (%s). Reintentar en %d s", service, reason, retryAfterSeconds), cause);
+        this.service = service;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
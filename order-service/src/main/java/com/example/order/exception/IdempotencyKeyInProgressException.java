@@ -0,0 +1,23 @@
+package com.example.order.exception;
+
+import lombok.Getter;
+
+/**
+ * Idempotency Key In Progress Exception
+ *
+ * Un reintento con la misma Idempotency-Key esperó a la ejecución
+ * original y esta no terminó a tiempo (409 + Retry-After): la orden
+ * sigue en curso, el cliente debe reintentar más tarde con la MISMA clave.
+ */
+@Getter
+public class IdempotencyKeyInProgressException extends RuntimeException {
+    private final String key;
+    private final long retryAfterSeconds;
+
+    public IdempotencyKeyInProgressException(String key, long retryAfterSeconds) {
+        super(String.format("La Idempotency-Key '%s' tiene una ejecución en curso. Reintentar en %d s",
+            key, retryAfterSeconds));
+        this.key = key;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.order.exception;
+
+import lombok.Getter;
+
+/**
+ * Idempotency Key Mismatch Exception
+ *
+ * La Idempotency-Key ya se usó con un request distinto (422).
+ */
+@Getter
+public class IdempotencyKeyMismatchException extends RuntimeException {
+    private final String key;
+
+    public IdempotencyKeyMismatchException(String key) {
+        super(String.format("La Idempotency-Key '%s' ya se usó con un request distinto", key));
+        this.key = key;
+    }
+}
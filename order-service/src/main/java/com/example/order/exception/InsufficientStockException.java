@@ -0,0 +1,21 @@
+package com.example.order.exception;
+
+import lombok.Getter;
+
+/**
+ * Insufficient Stock Exception
+ *
+ * Product Service rechazó la reserva (409): el stock no alcanza.
+ */
+@Getter
+public class InsufficientStockException extends RuntimeException {
+    private final Long productId;
+    private final int requested;
+
+    public InsufficientStockException(Long productId, int requested, String detail) {
+        super(String.format("Stock insuficiente para producto %s. Solicitado: %d%s",
+            productId, requested, detail != null && !detail.isBlank() ? " (" + detail + ")" : ""));
+        this.productId = productId;
+        this.requested = requested;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.order.exception;
+
+import lombok.Getter;
+
+/**
+ * Invalid Cursor Exception
+ *
+ * El cursor de paginación no es una orden del usuario (400).
+ */
+@Getter
+public class InvalidCursorException extends BadRequestException {
+    private final String cursor;
+
+    public InvalidCursorException(String cursor) {
+        super("Cursor inválido: " + cursor);
+        this.cursor = cursor;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.order.exception;
+
+import lombok.Getter;
+
+/**
+ * Order Queue Full Exception
+ *
+ * La cola del pipeline asíncrono de órdenes está llena (429).
+ */
+@Getter
+public class OrderQueueFullException extends RuntimeException {
+    private final int capacity;
+    private final long retryAfterSeconds;
+
+    public OrderQueueFullException(int capacity, long retryAfterSeconds) {
+        super(String.format("Cola de órdenes llena (capacidad: %d). Reintentar en %d s", capacity, retryAfterSeconds));
+        this.capacity = capacity;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,716 @@
+package com.example.order.repository;
+
+import com.example.order.dto.OrderDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Journal de órdenes en archivos mapeados en memoria (mmap)
+ *
+ * ⭐ HISTORIAL DE ÓRDENES FUERA DEL HEAP ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * Las órdenes vivían en un ConcurrentHashMap:
+ * - Se perdían al reiniciar
+ * - Cada orden eran varios objetos en el heap (DTO, BigDecimal, String,
+ *   nodos del mapa y del índice) → más órdenes = más GC
+ *
+ * SOLUCIÓN:
+ * =========
+ *
+ * Cada orden es un registro binario de TAMAÑO FIJO (512 bytes) en
+ * segmentos pre-asignados y mapeados en memoria:
+ *
+ *   data/order-service/
+ *     orders-00000000000000000000.seg   ← slots 0 .. N-1
+ *     orders-00000000000000000001.seg   ← slots N .. 2N-1 (actual)
+ *     orders-00000000000000000002.seg   ← pre-asignado por el roller
+ *
+ * Los bytes viven en el page cache del sistema operativo, no en el heap.
+ * En el heap solo queda: usuario → primer y último slot, y el rango de
+ * IDs de cada segmento.
+ *
+ * FORMATO DEL REGISTRO (512 bytes):
+ * ==================================
+ *
+ *   0   int   CRC32C de los bytes [4, 504)
+ *   4   int   MAGIC ("ORD2", único formato) → slot ocupado
+ *   8   long  slot anterior del MISMO usuario (-1 = primera orden)
+ *   16  long  id
+ *   24  long  productId
+ *   32  int   quantity
+ *   36  int   createdAt (nanos)
+ *   40  long  createdAt (epoch seconds, UTC)
+ *   48  long  productPrice (unscaled)
+ *   56  long  totalPrice (unscaled)
+ *   64  byte  escala de productPrice
+ *   65  byte  escala de totalPrice
+ *   66  short bytes de username   (UTF-8, máx 255: usernames de Keycloak)
+ *   68  short bytes de productName (UTF-8, máx 177, se trunca)
+ *   72  username
+ *   327 productName
+ *   504 long  slot siguiente del MISMO usuario (-1 = última orden)
+ *             → fuera del CRC: se escribe después, al llegar la orden siguiente
+ *
+ * Tamaño fijo → el slot N está en el segmento N / slotsPorSegmento,
+ * offset (N % slotsPorSegmento) × 512. Sin índices de offsets.
+ *
+ * LISTA POR USUARIO EN DISCO:
+ * ===========================
+ *
+ * Cada registro apunta al slot de la orden anterior y al de la siguiente
+ * del mismo usuario (lista doblemente enlazada). Listar las órdenes de un
+ * usuario es recorrer esa cadena desde el primer slot (o desde el de un
+ * cursor), sin índice por orden en el heap: una página cuesta O(tamaño
+ * de página).
+ *
+ * El enlace "siguiente" se escribe DESPUÉS del registro nuevo (nunca
+ * apunta a un slot sin escribir) y se verifica contra el "anterior" del
+ * slot apuntado. Si un crash lo pierde, la recuperación lo reconstruye.
+ *
+ * ÍNDICE POR ID:
+ * ==============
+ *
+ * Cada segmento tiene una tabla hash en su propio archivo mapeado
+ * (orders-N.idx, 16 bytes por entrada: id → slot, al menos el doble de
+ * entradas que slots). findById cuesta una búsqueda en la tabla de los
+ * segmentos cuyo rango de IDs incluye el buscado, no un recorrido del
+ * segmento. La tabla se reconstruye en la recuperación (no necesita
+ * sobrevivir a un crash) y el resultado se verifica siempre contra el
+ * registro.
+ *
+ * ESCRITURA CONCURRENTE:
+ * ======================
+ *
+ * Los slots se asignan con un contador atómico: escritores de distintos
+ * usuarios copian sus registros en paralelo. Solo se serializan las
+ * órdenes del MISMO usuario (para encadenarlas).
+ *
+ * force-on-write: true  → msync del registro antes de confirmar la orden
+ * force-on-write: false → msync periódico cada flush-interval-ms
+ * (un crash del proceso no pierde nada: los bytes ya están en el page cache;
+ * lo que se arriesga es un crash del sistema operativo)
+ *
+ * RECUPERACIÓN:
+ * =============
+ *
+ * Al arrancar se recorren todos los slots en orden:
+ * - CRC inválido o registro a medio escribir → el slot se pone en cero
+ * - Cadena rota (el slot anterior era inválido) → se re-enlaza con la
+ *   orden válida anterior del usuario y se recalcula el CRC
+ * - Enlaces "siguiente" y tabla de IDs → se reconstruyen
+ * - El siguiente slot libre es el último válido + 1
+ *
+ * Es una lectura secuencial: ~5 GB para 10 millones de órdenes.
+ *
+ * SEGMENT ROLLER:
+ * ===============
+ *
+ * Un hilo en segundo plano pre-asigna y mapea el segmento siguiente
+ * cuando el actual pasa el 75%: las escrituras nunca esperan a crear
+ * un archivo.
+ */
+@Component
+public class OrderJournal implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderJournal.class);
+
+    static final int RECORD_SIZE = 512;
+
+    private static final int MAGIC = 0x4F524432;  // "ORD2"
+    /** Keycloak admite usernames de hasta 255 caracteres (ASCII → 255 bytes) */
+    public static final int MAX_USERNAME_BYTES = 255;
+    private static final int MAX_PRODUCT_NAME_BYTES = 177;
+    private static final byte NULL_SCALE = Byte.MIN_VALUE;
+
+    private static final int CRC = 0;
+    private static final int MAGIC_OFFSET = 4;
+    private static final int PREVIOUS = 8;
+    private static final int ID = 16;
+    private static final int PRODUCT_ID = 24;
+    private static final int QUANTITY = 32;
+    private static final int CREATED_NANOS = 36;
+    private static final int CREATED_SECONDS = 40;
+    private static final int PRODUCT_PRICE = 48;
+    private static final int TOTAL_PRICE = 56;
+    private static final int PRODUCT_PRICE_SCALE = 64;
+    private static final int TOTAL_PRICE_SCALE = 65;
+    private static final int USERNAME_LENGTH = 66;
+    private static final int PRODUCT_NAME_LENGTH = 68;
+    private static final int USERNAME = 72;
+    private static final int PRODUCT_NAME = USERNAME + MAX_USERNAME_BYTES;
+    private static final int NEXT = PRODUCT_NAME + MAX_PRODUCT_NAME_BYTES;
+
+    private static final int INDEX_ENTRY_SIZE = 16;  // long id + long (slot en el segmento + 1)
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final Pattern SEGMENT_FILE = Pattern.compile("orders-(\\d{20})\\.seg");
+
+    /**
+     * Primera y última orden de un usuario.
+     */
+    private record Chain(long first, long last) {}
+
+    /**
+     * Segmento mapeado, su tabla de IDs y el rango de IDs que contiene.
+     */
+    private static final class Segment {
+        final MappedByteBuffer buffer;
+        final MappedByteBuffer index;
+        final int indexMask;
+        final AtomicLong minId = new AtomicLong(Long.MAX_VALUE);
+        final AtomicLong maxId = new AtomicLong(Long.MIN_VALUE);
+
+        Segment(MappedByteBuffer buffer, MappedByteBuffer index) {
+            this.buffer = buffer;
+            this.index = index;
+            this.indexMask = index.capacity() / INDEX_ENTRY_SIZE - 1;
+        }
+
+        /**
+         * Registra id → posición en la tabla (open addressing, sondeo lineal).
+         * La tabla nunca se llena: tiene al menos el doble de entradas que slots.
+         */
+        void index(long id, int position) {
+            for (int i = hash(id) & indexMask; ; i = (i + 1) & indexMask) {
+                int offset = i * INDEX_ENTRY_SIZE;
+                long key = (long) LONGS.getAcquire(index, offset);
+                if (key == id || (key == 0 && LONGS.compareAndSet(index, offset, 0L, id))) {
+                    LONGS.setRelease(index, offset + Long.BYTES, position + 1L);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return Posición del ID en el segmento, o -1 si no está
+         */
+        long lookup(long id) {
+            for (int i = hash(id) & indexMask; ; i = (i + 1) & indexMask) {
+                int offset = i * INDEX_ENTRY_SIZE;
+                long key = (long) LONGS.getAcquire(index, offset);
+                if (key == 0) {
+                    return -1;
+                }
+                if (key == id) {
+                    return (long) LONGS.getAcquire(index, offset + Long.BYTES) - 1;  // 0 → aún sin posición
+                }
+            }
+        }
+
+        private static int hash(long id) {
+            long h = id * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        void include(long id) {
+            minId.accumulateAndGet(id, Math::min);
+            maxId.accumulateAndGet(id, Math::max);
+        }
+
+        boolean mayContain(long id) {
+            return id >= minId.get() && id <= maxId.get();
+        }
+    }
+
+    private final Path directory;
+    private final int slotsPerSegment;
+    private final boolean forceOnWrite;
+
+    private final ConcurrentNavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Map<String, Chain> chains = new ConcurrentHashMap<>();
+    private final AtomicLong nextFreeSlot = new AtomicLong();
+    private final AtomicLong maxId = new AtomicLong();
+    private final ScheduledExecutorService roller;
+
+    public OrderJournal(
+        @Value("${orders.journal.directory:./data/order-service}") String directory,
+        @Value("${orders.journal.segment-records:131072}") int slotsPerSegment,
+        @Value("${orders.journal.force-on-write:true}") boolean forceOnWrite,
+        @Value("${orders.journal.flush-interval-ms:1000}") long flushIntervalMs
+    ) throws IOException {
+        if (slotsPerSegment < 1 || (long) slotsPerSegment * RECORD_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("orders.journal.segment-records fuera de rango: " + slotsPerSegment);
+        }
+
+        this.directory = Paths.get(directory).toAbsolutePath();
+        this.slotsPerSegment = slotsPerSegment;
+        this.forceOnWrite = forceOnWrite;
+
+        Files.createDirectories(this.directory);
+
+        long started = System.nanoTime();
+        long[] stats = recover();
+
+        log.info("Journal de órdenes - Directorio: {}, Segmentos: {}, Órdenes: {}, Reparados: {}, Usuarios: {}, Recuperación: {} ms",
+            this.directory, segments.size(), stats[0], stats[1], chains.size(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        log.info("Journal de órdenes - Slots por segmento: {} ({} MB), Force por escritura: {}",
+            slotsPerSegment, (long) slotsPerSegment * RECORD_SIZE / (1024 * 1024),
+            forceOnWrite ? "HABILITADO" : "DESHABILITADO (cada " + flushIntervalMs + " ms)");
+
+        this.roller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "order-journal-roller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        roller.scheduleWithFixedDelay(this::roll, 0, Math.max(50, flushIntervalMs / 4), TimeUnit.MILLISECONDS);
+        if (!forceOnWrite) {
+            roller.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Agrega una orden al journal.
+     *
+     * @param order Orden (con id, username y createdAt)
+     * @return Slot donde quedó guardada
+     * @throws IllegalArgumentException si la orden no entra en el formato
+     */
+    public long append(OrderDTO order) {
+        ByteBuffer record = encode(order);
+        long[] written = new long[1];
+
+        // Las órdenes del mismo usuario se encadenan: se serializan por usuario
+        chains.compute(order.getUsername(), (username, chain) -> {
+            long slot = nextFreeSlot.getAndIncrement();
+            record.putLong(PREVIOUS, chain != null ? chain.last() : -1L);
+            seal(record);
+
+            Segment segment = segment(slot / slotsPerSegment);
+            segment.buffer.put(offsetOf(slot), record, 0, RECORD_SIZE);
+            segment.include(order.getId());
+            segment.index(order.getId(), (int) (slot % slotsPerSegment));
+
+            // Recién ahora (registro ya escrito) se enlaza desde la orden anterior
+            if (chain != null) {
+                link(chain.last(), slot);
+            }
+
+            written[0] = slot;
+            return new Chain(chain != null ? chain.first() : slot, slot);
+        });
+
+        long slot = written[0];
+        maxId.accumulateAndGet(order.getId(), Math::max);
+        if (forceOnWrite) {
+            segment(slot / slotsPerSegment).buffer.force(offsetOf(slot), RECORD_SIZE);
+        }
+        return slot;
+    }
+
+    /**
+     * Lee la orden de un slot (null si el slot está vacío o es inválido).
+     */
+    public OrderDTO read(long slot) {
+        Segment segment = segments.get(slot / slotsPerSegment);
+        if (segment == null) {
+            return null;
+        }
+
+        ByteBuffer record = segment.buffer.slice(offsetOf(slot), RECORD_SIZE);
+        return isValid(record) ? decode(record) : null;
+    }
+
+    /**
+     * Busca el slot de una orden por ID.
+     *
+     * Solo se consultan los segmentos cuyo rango de IDs incluye el buscado
+     * (los IDs están ordenados por tiempo, así que normalmente es UNO), y
+     * en cada uno su tabla de IDs: O(1) por segmento.
+     *
+     * @return Slot, o -1 si no existe
+     */
+    public long findSlotById(long id) {
+        if (id <= 0) {
+            return -1;  // 0 = entrada vacía de la tabla; los IDs son positivos
+        }
+        for (Map.Entry<Long, Segment> entry : segments.descendingMap().entrySet()) {
+            Segment segment = entry.getValue();
+            if (!segment.mayContain(id)) {
+                continue;
+            }
+
+            long position = segment.lookup(id);
+            if (position < 0) {
+                continue;
+            }
+            int offset = (int) position * RECORD_SIZE;
+            if (segment.buffer.getLong(offset + ID) == id && isValid(segment.buffer.slice(offset, RECORD_SIZE))) {
+                return entry.getKey() * slotsPerSegment + position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Primer slot de un usuario (-1 si no tiene órdenes).
+     */
+    public long firstSlotOf(String username) {
+        Chain chain = chains.get(username);
+        return chain != null ? chain.first() : -1L;
+    }
+
+    /**
+     * Slot de la orden anterior del mismo usuario (-1 si es la primera).
+     */
+    public long previousSlot(long slot) {
+        return segments.get(slot / slotsPerSegment).buffer.getLong(offsetOf(slot) + PREVIOUS);
+    }
+
+    /**
+     * Slot de la orden siguiente del mismo usuario (-1 si es la última).
+     */
+    public long nextSlot(long slot) {
+        long next = (long) LONGS.getAcquire(segments.get(slot / slotsPerSegment).buffer, offsetOf(slot) + NEXT);
+        // Solo se sigue el enlace si el slot apuntado confirma que viene de acá
+        return next > slot && segments.containsKey(next / slotsPerSegment) && previousSlot(next) == slot ? next : -1;
+    }
+
+    /**
+     * Usuario de la orden de un slot (sin decodificar el resto).
+     */
+    public String usernameAt(long slot) {
+        ByteBuffer record = segments.get(slot / slotsPerSegment).buffer.slice(offsetOf(slot), RECORD_SIZE);
+        return decodeString(record, USERNAME, record.getShort(USERNAME_LENGTH));
+    }
+
+    /**
+     * ID de la orden de un slot (sin decodificar el resto).
+     */
+    public long idAt(long slot) {
+        return segments.get(slot / slotsPerSegment).buffer.getLong(offsetOf(slot) + ID);
+    }
+
+    /**
+     * ¿El username entra en el registro? (no se trunca: identificaría a otro usuario)
+     */
+    public static boolean fitsUsername(String username) {
+        return username.getBytes(StandardCharsets.UTF_8).length <= MAX_USERNAME_BYTES;
+    }
+
+    /**
+     * Mayor ID guardado (0 si el journal está vacío).
+     */
+    public long maxId() {
+        return maxId.get();
+    }
+
+    // ==========================================
+    // RECUPERACIÓN
+    // ==========================================
+
+    /**
+     * @return { órdenes válidas, slots reparados }
+     */
+    private long[] recover() throws IOException {
+        TreeSet<Long> numbers = new TreeSet<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    numbers.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+
+        Map<String, Chain> chainByUser = new HashMap<>();
+        long lastValid = -1;
+        long valid = 0;
+        long repaired = 0;
+
+        for (long number : numbers) {
+            Segment segment = segment(number);
+            for (int i = 0; i < slotsPerSegment; i++) {
+                long slot = number * slotsPerSegment + i;
+                int offset = i * RECORD_SIZE;
+                ByteBuffer record = segment.buffer.slice(offset, RECORD_SIZE);
+
+                if (record.getInt(MAGIC_OFFSET) == 0 && record.getInt(CRC) == 0) {
+                    continue;  // Slot nunca escrito
+                }
+                if (!isValid(record)) {
+                    // Escritura interrumpida → hueco
+                    segment.buffer.put(offset, new byte[RECORD_SIZE]);
+                    repaired++;
+                    continue;
+                }
+
+                String username = decodeString(record, USERNAME, record.getShort(USERNAME_LENGTH));
+                Chain chain = chainByUser.get(username);
+                long expectedPrevious = chain != null ? chain.last() : -1L;
+                if (record.getLong(PREVIOUS) != expectedPrevious) {
+                    // La orden anterior de la cadena se perdió → re-enlazar
+                    record.putLong(PREVIOUS, expectedPrevious);
+                    seal(record);
+                    repaired++;
+                }
+
+                // Enlaces "siguiente": por ahora es la última orden del usuario
+                if (chain != null && nextSlot(chain.last()) != slot) {
+                    link(chain.last(), slot);
+                }
+                if (record.getLong(NEXT) != -1L) {
+                    record.putLong(NEXT, -1L);
+                }
+
+                chainByUser.put(username, new Chain(chain != null ? chain.first() : slot, slot));
+                long id = record.getLong(ID);
+                segment.include(id);
+                segment.index(id, i);
+                maxId.accumulateAndGet(id, Math::max);
+                lastValid = slot;
+                valid++;
+            }
+            if (repaired > 0) {
+                segment.buffer.force();
+            }
+        }
+
+        chains.putAll(chainByUser);
+        nextFreeSlot.set(lastValid + 1);
+        segment(nextFreeSlot.get() / slotsPerSegment);  // Segmento actual listo para escribir
+
+        return new long[] { valid, repaired };
+    }
+
+    // ==========================================
+    // SEGMENTOS
+    // ==========================================
+
+    private Segment segment(long number) {
+        Segment segment = segments.get(number);
+        return segment != null ? segment : segments.computeIfAbsent(number, this::map);
+    }
+
+    private Segment map(long number) {
+        Path file = directory.resolve(String.format("orders-%020d.seg", number));
+        long size = (long) slotsPerSegment * RECORD_SIZE;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            if (raf.length() < size) {
+                raf.setLength(size);  // Pre-asignado en ceros (slots vacíos)
+            }
+            // El mapeo sigue válido después de cerrar el archivo
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            log.debug("Segmento del journal mapeado: {}", file.getFileName());
+            return new Segment(buffer, mapIndex(number));
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo mapear el segmento " + file, e);
+        }
+    }
+
+    /**
+     * Tabla de IDs del segmento, siempre vacía al mapearla: la llenan la
+     * recuperación (segmentos existentes) o las escrituras (segmentos nuevos).
+     */
+    private MappedByteBuffer mapIndex(long number) throws IOException {
+        Path file = directory.resolve(String.format("orders-%020d.idx", number));
+        long size = (long) Integer.highestOneBit(slotsPerSegment * 2 - 1) * 2 * INDEX_ENTRY_SIZE;
+
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(0);
+            raf.setLength(size);
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Enlace "siguiente" de un slot. Está fuera del CRC: escribirlo no
+     * invalida el registro (ni siquiera si el proceso muere a la mitad).
+     */
+    private void link(long slot, long next) {
+        LONGS.setRelease(segments.get(slot / slotsPerSegment).buffer, offsetOf(slot) + NEXT, next);
+    }
+
+    /**
+     * Pre-asigna el segmento siguiente cuando el actual pasa el 75%.
+     */
+    private void roll() {
+        try {
+            long slot = nextFreeSlot.get();
+            long current = slot / slotsPerSegment;
+            if (slot % slotsPerSegment >= slotsPerSegment * 3L / 4 && !segments.containsKey(current + 1)) {
+                segment(current + 1);
+                log.info("Segmento {} del journal pre-asignado (actual: {})", current + 1, current);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error pre-asignando segmento del journal: {}", e.getMessage(), e);
+        }
+    }
+
+    private void flush() {
+        long current = nextFreeSlot.get() / slotsPerSegment;
+        // El anterior también: puede tener escrituras recién terminadas
+        for (Segment segment : segments.subMap(current - 1, true, current, true).values()) {
+            segment.buffer.force();
+        }
+    }
+
+    private int offsetOf(long slot) {
+        return (int) (slot % slotsPerSegment) * RECORD_SIZE;
+    }
+
+    // ==========================================
+    // CODIFICACIÓN
+    // ==========================================
+
+    private static ByteBuffer encode(OrderDTO order) {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.putInt(MAGIC_OFFSET, MAGIC);
+        record.putLong(NEXT, -1L);
+        record.putLong(ID, order.getId());
+        record.putLong(PRODUCT_ID, order.getProductId() != null ? order.getProductId() : -1L);
+        record.putInt(QUANTITY, order.getQuantity() != null ? order.getQuantity() : 0);
+
+        LocalDateTime createdAt = order.getCreatedAt();
+        record.putLong(CREATED_SECONDS, createdAt != null ? createdAt.toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE);
+        record.putInt(CREATED_NANOS, createdAt != null ? createdAt.getNano() : 0);
+
+        putDecimal(record, PRODUCT_PRICE, PRODUCT_PRICE_SCALE, order.getProductPrice());
+        putDecimal(record, TOTAL_PRICE, TOTAL_PRICE_SCALE, order.getTotalPrice());
+
+        if (order.getUsername() == null) {
+            throw new IllegalArgumentException("La orden no tiene username");
+        }
+        // Un username truncado identificaría a otro usuario → no se trunca
+        record.putShort(USERNAME_LENGTH,
+            putString(record, USERNAME, MAX_USERNAME_BYTES, order.getUsername(), false));
+        record.putShort(PRODUCT_NAME_LENGTH,
+            putString(record, PRODUCT_NAME, MAX_PRODUCT_NAME_BYTES, order.getProductName(), true));
+        return record;
+    }
+
+    private static OrderDTO decode(ByteBuffer record) {
+        long seconds = record.getLong(CREATED_SECONDS);
+        long productId = record.getLong(PRODUCT_ID);
+
+        return OrderDTO.builder()
+            .id(record.getLong(ID))
+            .username(decodeString(record, USERNAME, record.getShort(USERNAME_LENGTH)))
+            .productId(productId >= 0 ? productId : null)
+            .productName(decodeString(record, PRODUCT_NAME, record.getShort(PRODUCT_NAME_LENGTH)))
+            .productPrice(getDecimal(record, PRODUCT_PRICE, PRODUCT_PRICE_SCALE))
+            .quantity(record.getInt(QUANTITY))
+            .totalPrice(getDecimal(record, TOTAL_PRICE, TOTAL_PRICE_SCALE))
+            .createdAt(seconds != Long.MIN_VALUE
+                ? LocalDateTime.ofEpochSecond(seconds, record.getInt(CREATED_NANOS), ZoneOffset.UTC)
+                : null)
+            .build();
+    }
+
+    private static void putDecimal(ByteBuffer record, int offset, int scaleOffset, BigDecimal value) {
+        if (value == null) {
+            record.put(scaleOffset, NULL_SCALE);
+            return;
+        }
+
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() > 63 || value.scale() <= NULL_SCALE || value.scale() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Importe fuera de rango para el journal: " + value);
+        }
+        record.putLong(offset, unscaled.longValue());
+        record.put(scaleOffset, (byte) value.scale());
+    }
+
+    private static BigDecimal getDecimal(ByteBuffer record, int offset, int scaleOffset) {
+        byte scale = record.get(scaleOffset);
+        return scale == NULL_SCALE ? null : BigDecimal.valueOf(record.getLong(offset), scale);
+    }
+
+    /**
+     * Escribe un String en UTF-8 de hasta maxBytes.
+     *
+     * @param truncate true → se trunca sin cortar caracteres; false → error si no entra
+     * @return Bytes escritos, o -1 si el valor es null
+     */
+    private static short putString(ByteBuffer record, int offset, int maxBytes, String value, boolean truncate) {
+        if (value == null) {
+            return -1;
+        }
+
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer target = record.slice(offset, maxBytes);
+        CharBuffer source = CharBuffer.wrap(value);
+        encoder.encode(source, target, true);
+
+        if (source.hasRemaining() && !truncate) {
+            throw new IllegalArgumentException("Valor mayor a " + maxBytes + " bytes: " + value);
+        }
+        return (short) target.position();
+    }
+
+    private static String decodeString(ByteBuffer record, int offset, short length) {
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void seal(ByteBuffer record) {
+        record.putInt(CRC, crcOf(record));
+    }
+
+    private static boolean isValid(ByteBuffer record) {
+        return record.getInt(MAGIC_OFFSET) == MAGIC && record.getInt(CRC) == crcOf(record);
+    }
+
+    private static int crcOf(ByteBuffer record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record.slice(Integer.BYTES, NEXT - Integer.BYTES));
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void destroy() {
+        roller.shutdown();
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+        }
+    }
+}
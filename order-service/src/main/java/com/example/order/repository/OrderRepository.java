@@ -0,0 +1,178 @@
+package com.example.order.repository;
+
+import com.example.order.dto.OrderDTO;
+import com.example.order.exception.BadRequestException;
+import com.example.order.exception.InvalidCursorException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repositorio de órdenes
+ *
+ * ⭐ HISTORIAL EN EL JOURNAL, SOLO LO RECIENTE EN EL HEAP ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * Todas las órdenes vivían en el heap (mapa por ID + índice por usuario):
+ * - Se perdían al reiniciar
+ * - Millones de órdenes = millones de objetos que el GC recorre
+ *
+ * SOLUCIÓN:
+ * =========
+ *
+ * Las órdenes se guardan en OrderJournal (segmentos mmap, fuera del heap).
+ * En el heap solo queda una caché acotada de las órdenes recientes:
+ *
+ *   save()           → journal + caché
+ *   findById()       → caché; si no está, tabla de IDs del journal
+ *   findByUsername() → cadena del usuario en el journal (sin índice en heap)
+ *
+ * El heap ya no crece con el historial: crece con "recent-orders".
+ *
+ * ORDEN DEL LISTADO:
+ * ==================
+ *
+ * Las órdenes de un usuario se listan en el orden en que se registraron
+ * (el de su cadena en el journal), que coincide con createdAt.
+ * Una página con cursor cuesta O(tamaño de página): se busca el slot del
+ * cursor por ID y se sigue la cadena hacia adelante.
+ */
+@Repository
+public class OrderRepository {
+
+    /**
+     * Página de órdenes.
+     *
+     * @param items Órdenes de la página (ordenadas por createdAt)
+     * @param nextCursor Cursor para pedir la siguiente página (null si es la última)
+     */
+    public record Page(List<OrderDTO> items, String nextCursor) {}
+
+    private final OrderJournal journal;
+    private final Cache<Long, OrderDTO> recent;
+
+    public OrderRepository(
+        OrderJournal journal,
+        @Value("${orders.journal.recent-orders:100000}") long recentOrders
+    ) {
+        this.journal = journal;
+        this.recent = Caffeine.newBuilder()
+            .maximumSize(recentOrders)
+            .build();
+    }
+
+    /**
+     * Verifica que las órdenes del usuario se puedan guardar ANTES de
+     * reservar stock (el journal no trunca usernames).
+     *
+     * @throws BadRequestException si el username no entra en el journal
+     */
+    public void checkUsername(String username) {
+        if (username == null) {
+            throw new BadRequestException("El token no tiene preferred_username");
+        }
+        if (!OrderJournal.fitsUsername(username)) {
+            throw new BadRequestException("El username supera los "
+                + OrderJournal.MAX_USERNAME_BYTES + " bytes admitidos");
+        }
+    }
+
+    public OrderDTO save(OrderDTO order) {
+        journal.append(order);
+        recent.put(order.getId(), order);
+        return order;
+    }
+
+    public Optional<OrderDTO> findById(Long id) {
+        OrderDTO cached = recent.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        long slot = journal.findSlotById(id);
+        OrderDTO order = slot >= 0 ? journal.read(slot) : null;
+        if (order != null) {
+            recent.put(id, order);
+        }
+        return Optional.ofNullable(order);
+    }
+
+    /**
+     * Mayor ID de orden guardado (0 si no hay órdenes).
+     */
+    public long lastId() {
+        return journal.maxId();
+    }
+
+    /**
+     * Todas las órdenes de un usuario, ordenadas por createdAt.
+     */
+    public List<OrderDTO> findByUsername(String username) {
+        List<OrderDTO> result = new ArrayList<>();
+        for (long slot = journal.firstSlotOf(username); slot >= 0; slot = journal.nextSlot(slot)) {
+            result.add(read(slot));
+        }
+        return result;
+    }
+
+    /**
+     * Página de órdenes de un usuario a partir de un cursor.
+     *
+     * El cursor es el ID de la última orden de la página anterior.
+     * Solo se aceptan cursores que pertenezcan al mismo usuario.
+     *
+     * La página se lee siguiendo la cadena del usuario desde el slot del
+     * cursor (tabla de IDs del journal): O(limit), sin importar cuántas
+     * órdenes tenga el usuario antes o después.
+     *
+     * @param username Usuario
+     * @param cursor Cursor (null = primera página)
+     * @param limit Tamaño máximo de la página
+     * @return Página de órdenes
+     * @throws InvalidCursorException si el cursor no es válido
+     */
+    public Page findPageByUsername(String username, String cursor, int limit) {
+        long slot = cursor == null ? journal.firstSlotOf(username) : journal.nextSlot(cursorSlot(username, cursor));
+
+        List<OrderDTO> items = new ArrayList<>(limit);
+        long last = -1;
+        for (; slot >= 0 && items.size() < limit; slot = journal.nextSlot(slot)) {
+            items.add(read(slot));
+            last = slot;
+        }
+
+        // Quedan órdenes más nuevas → existe página siguiente
+        String nextCursor = slot >= 0 ? String.valueOf(journal.idAt(last)) : null;
+        return new Page(items, nextCursor);
+    }
+
+    /**
+     * Slot de la orden del cursor.
+     *
+     * @throws InvalidCursorException si el cursor no es una orden del usuario
+     */
+    private long cursorSlot(String username, String cursor) {
+        long slot;
+        try {
+            slot = journal.findSlotById(Long.parseLong(cursor));
+        } catch (NumberFormatException e) {
+            throw new InvalidCursorException(cursor);
+        }
+        if (slot < 0 || !username.equals(journal.usernameAt(slot))) {
+            throw new InvalidCursorException(cursor);
+        }
+        return slot;
+    }
+
+    private OrderDTO read(long slot) {
+        OrderDTO cached = recent.getIfPresent(journal.idAt(slot));
+        return cached != null ? cached : journal.read(slot);
+    }
+}
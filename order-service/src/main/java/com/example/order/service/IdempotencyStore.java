@@ -0,0 +1,199 @@
+package com.example.order.service;
+
+import com.example.order.exception.BadRequestException;
+import com.example.order.exception.IdempotencyKeyInProgressException;
+import com.example.order.exception.IdempotencyKeyMismatchException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Almacén de claves de idempotencia (header Idempotency-Key)
+ *
+ * ⭐ UN REINTENTO NO CREA UNA ORDEN DUPLICADA ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * Si el Gateway corta por timeout, el cliente reintenta POST /orders.
+ * Cada reintento volvía a reservar stock y creaba OTRA orden.
+ *
+ * SOLUCIÓN:
+ * =========
+ *
+ *   POST /orders  Idempotency-Key: 7f3c...  → crea la orden, guarda el resultado
+ *   POST /orders  Idempotency-Key: 7f3c...  → devuelve la MISMA orden
+ *                                             (sin llamar a User ni Product Service)
+ *
+ * Se guarda el FUTURE de la ejecución, no solo el resultado:
+ *
+ * - Reintento después de terminar → resultado guardado (replay)
+ * - Reintento MIENTRAS se ejecuta → espera a la ejecución en curso
+ *   (los duplicados concurrentes se unen a UNA sola ejecución), a lo sumo
+ *   orders.downstream.timeout-ms; si no terminó → 409 + Retry-After y el
+ *   cliente reintenta con la MISMA clave (no queda un hilo colgado)
+ *
+ * REGLAS:
+ * =======
+ * - La clave es por usuario: dos usuarios con la misma clave no se mezclan
+ * - Misma clave con OTRO body → 422 (el cliente reutilizó la clave por error)
+ * - Si la ejecución falla, la clave se libera: el reintento vuelve a ejecutar.
+ *   Lo mismo si falla DESPUÉS (ej: una orden aceptada en modo asíncrono que
+ *   falla en el pipeline): ver execute(..., completion)
+ * - Las claves expiran después de "ttl-seconds"; a lo sumo "max-keys" guardadas
+ *
+ * ⚠️ El almacén es local a cada instancia: un reintento balanceado a otra
+ * instancia de Order Service no se deduplica.
+ *
+ * MÉTRICAS:
+ * =========
+ *
+ *   GET /actuator/metrics/cache.gets?tag=cache:orders.idempotency&tag=result:hit
+ */
+@Service
+public class IdempotencyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    static final String CACHE_NAME = "orders.idempotency";
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private static final CompletableFuture<Object> COMPLETED = CompletableFuture.completedFuture(null);
+
+    /**
+     * Resultado de una ejecución idempotente.
+     *
+     * @param value Resultado
+     * @param replayed true si se devolvió un resultado ya existente (no se ejecutó)
+     */
+    public record Outcome<T>(T value, boolean replayed) {}
+
+    /**
+     * Ejecución asociada a una clave.
+     *
+     * @param fingerprint Request original (para detectar reuso de la clave con otro body)
+     * @param result Ejecución en curso o terminada
+     */
+    private record Entry(Object fingerprint, CompletableFuture<Object> result) {}
+
+    private final Cache<String, Entry> entries;
+    private final long waitTimeoutMs;
+    private final long retryAfterSeconds;
+
+    public IdempotencyStore(
+        @Value("${orders.idempotency.max-keys:100000}") long maxKeys,
+        @Value("${orders.idempotency.ttl-seconds:86400}") long ttlSeconds,
+        @Value("${orders.downstream.timeout-ms:10000}") long waitTimeoutMs,
+        @Value("${orders.idempotency.retry-after-seconds:1}") long retryAfterSeconds,
+        ObjectProvider<MeterRegistry> meterRegistry
+    ) {
+        this.waitTimeoutMs = waitTimeoutMs;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.entries = Caffeine.newBuilder()
+            .maximumSize(maxKeys)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            CaffeineCacheMetrics.monitor(registry, entries, CACHE_NAME);
+        }
+
+        log.info("Claves de idempotencia - Máximo: {}, TTL: {}s, Espera de duplicados: {} ms",
+            maxKeys, ttlSeconds, waitTimeoutMs);
+    }
+
+    /**
+     * Ejecuta la acción UNA sola vez por (usuario, clave).
+     *
+     * @param username Dueño de la clave
+     * @param key Valor del header Idempotency-Key
+     * @param request Request (debe implementar equals); la clave no puede reusarse con otro
+     * @param action Acción a ejecutar si la clave es nueva
+     * @return Resultado (propio o de la ejecución original)
+     * @throws BadRequestException si la clave es inválida
+     * @throws IdempotencyKeyMismatchException si la clave ya se usó con otro request
+     * @throws IdempotencyKeyInProgressException si la ejecución original no terminó a tiempo
+     */
+    public <T> Outcome<T> execute(String username, String key, Object request, Supplier<T> action) {
+        return execute(username, key, request, action, value -> COMPLETED);
+    }
+
+    /**
+     * Como execute, para acciones que siguen ejecutándose después de
+     * devolver su valor (ej: OrderPipeline.Job): si "completion" falla
+     * más tarde, la clave también se libera y el reintento vuelve a
+     * ejecutar en lugar de recibir la ejecución fallida.
+     *
+     * @param completion Fin real de la ejecución a partir del valor devuelto
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Outcome<T> execute(String username, String key, Object request, Supplier<T> action,
+                                  Function<T, CompletableFuture<?>> completion) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException("Idempotency-Key debe tener entre 1 y " + MAX_KEY_LENGTH + " caracteres");
+        }
+
+        String scopedKey = username + '\u0000' + key;
+        Entry entry = new Entry(request, new CompletableFuture<>());
+        Entry existing = entries.asMap().putIfAbsent(scopedKey, entry);
+
+        if (existing != null) {
+            if (!existing.fingerprint().equals(request)) {
+                throw new IdempotencyKeyMismatchException(key);
+            }
+            log.info("Idempotency-Key repetida - Usuario: {}, Clave: {}, En curso: {}",
+                username, key, !existing.result().isDone());
+            return new Outcome<>((T) await(key, existing.result()), true);
+        }
+
+        try {
+            T value = action.get();
+            entry.result().complete(value);
+            completion.apply(value).whenComplete((ignored, failure) -> {
+                if (failure != null) {
+                    entries.asMap().remove(scopedKey, entry);
+                }
+            });
+            return new Outcome<>(value, false);
+        } catch (RuntimeException e) {
+            // Falló: liberar la clave (el próximo reintento ejecuta de nuevo);
+            // los duplicados que estaban esperando reciben el mismo error
+            entries.asMap().remove(scopedKey, entry);
+            entry.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Object await(String key, CompletableFuture<Object> result) {
+        try {
+            return result.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyInProgressException(key, retryAfterSeconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException(key, retryAfterSeconds);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.example.order.service;
+
+import com.example.order.client.ProductServiceClient;
+import com.example.order.dto.CreateOrderRequest;
+import com.example.order.dto.OrderBatchItemResult;
+import com.example.order.dto.OrderBatchResponse;
+import com.example.order.dto.OrderDTO;
+import com.example.order.dto.ProductDTO;
+import com.example.order.dto.StockReservationDTO;
+import com.example.order.dto.StockReservationRequest;
+import com.example.order.dto.UserInfoDTO;
+import com.example.order.exception.BadRequestException;
+import com.example.order.exception.DownstreamServiceException;
+import com.example.order.exception.DownstreamUnavailableException;
+import com.example.order.repository.OrderRepository;
+import feign.FeignException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Creación de órdenes en lote (POST /orders/batch)
+ *
+ * ⭐ N ÓRDENES CON UNA LLAMADA POR PRODUCTO, NO DOS POR ORDEN ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * Los sistemas de partners envían ráfagas de órdenes. Con POST /orders,
+ * 100 órdenes = 100 requests, 100 reservas de stock (y 100 validaciones
+ * de JWT en Product Service).
+ *
+ * FLUJO:
+ * ======
+ *
+ * 1. Usuario → UNA vez (claims del JWT o User Service)
+ * 2. Productos distintos → ProductCache; los que faltan, UNA llamada
+ *    (GET /products?ids=...) → 1 y 2 en paralelo
+ *    El stock cacheado no alcanza para algún producto → esos productos
+ *    se consultan de nuevo (UNA llamada) antes de rechazar nada
+ * 3. Stock AGREGADO por producto: los elementos se aceptan en orden
+ *    mientras alcance el stock informado
+ *      producto 1, stock 5: [2, 2, 3] → acepta 2 y 2, rechaza 3 (409)
+ * 4. UNA reserva por producto con la suma aceptada (en paralelo)
+ *    → la reserva es la que decide (compare-and-set en Product Service)
+ *    → 409 con stock cacheado → se invalida la entrada
+ * 5. IDs de órdenes en UN bloque (SnowflakeIdGenerator.nextBlock)
+ * 6. Cada orden se guarda por separado: si una falla, ese elemento queda
+ *    FAILED (500) y se devuelve SOLO su parte de la reserva
+ *    (DELETE .../reservations/{id}?quantity=n)
+ *
+ * FALLAS PARCIALES:
+ * =================
+ *
+ * Cada elemento tiene su resultado. Producto inexistente (404), stock
+ * insuficiente (409) o una reserva fallida solo afectan a los elementos
+ * de ESE producto; una orden que no se pudo guardar, solo a ESE elemento. Solo falla el lote completo si no se puede resolver
+ * el usuario o consultar los productos.
+ */
+@Service
+public class OrderBatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderBatchService.class);
+
+    private final UserInfoResolver userInfoResolver;
+    private final ProductServiceClient productServiceClient;
+    private final ProductCache productCache;
+    private final Executor downstreamExecutor;
+    private final OrderRepository orderRepository;
+    private final SnowflakeIdGenerator idGenerator;
+
+    @Value("${orders.downstream.timeout-ms:10000}")
+    private long downstreamTimeoutMs;
+
+    @Value("${orders.batch.max-size:100}")
+    private int maxBatchSize;
+
+    /**
+     * Elementos de un mismo producto.
+     */
+    private static final class ProductGroup {
+        final Long productId;
+        final List<Integer> indexes = new ArrayList<>();
+        final List<Integer> accepted = new ArrayList<>();
+        int acceptedQuantity;
+        CompletableFuture<StockReservationDTO> reservation;
+        CompletableFuture<StockReservationDTO> reservationCall;  // Con timeout
+        StockReservationDTO reserved;
+        int unsavedQuantity;  // Aceptado y reservado, pero sin orden guardada
+
+        ProductGroup(Long productId) {
+            this.productId = productId;
+        }
+    }
+
+    public OrderBatchService(
+        UserInfoResolver userInfoResolver,
+        ProductServiceClient productServiceClient,
+        ProductCache productCache,
+        @Qualifier("downstreamExecutor") Executor downstreamExecutor,
+        OrderRepository orderRepository,
+        SnowflakeIdGenerator idGenerator
+    ) {
+        this.userInfoResolver = userInfoResolver;
+        this.productServiceClient = productServiceClient;
+        this.productCache = productCache;
+        this.downstreamExecutor = downstreamExecutor;
+        this.orderRepository = orderRepository;
+        this.idGenerator = idGenerator;
+    }
+
+    /**
+     * Crea las órdenes del lote.
+     *
+     * @param items Órdenes pedidas
+     * @param jwt JWT del usuario
+     * @return Un resultado por elemento, en el orden del request
+     * @throws BadRequestException si el lote supera orders.batch.max-size o el username no entra en el journal
+     * @throws DownstreamServiceException si no se pudo resolver el usuario o consultar los productos
+     */
+    public OrderBatchResponse createOrders(List<CreateOrderRequest> items, Jwt jwt) {
+        if (items.size() > maxBatchSize) {
+            throw new BadRequestException("Máximo " + maxBatchSize + " órdenes por lote (recibidas: " + items.size() + ")");
+        }
+
+        Map<Long, ProductGroup> groups = new LinkedHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            groups.computeIfAbsent(items.get(i).getProductId(), ProductGroup::new).indexes.add(i);
+        }
+
+        // ==========================================
+        // 1 + 2. USUARIO Y PRODUCTOS EN PARALELO
+        // ==========================================
+        CompletableFuture<UserInfoDTO> userCall = userInfoResolver.resolve(jwt);
+        CompletableFuture<List<ProductDTO>> productsCall = fetchProducts(
+            () -> productCache.getProducts(groups.keySet()));
+
+        UserInfoDTO user = await("user-service", userCall);
+        orderRepository.checkUsername(user.getUsername());  // 400 antes de reservar nada
+        Map<Long, ProductDTO> products = new HashMap<>();
+        for (ProductDTO product : await("product-service", productsCall)) {
+            products.put(product.getId(), product);
+        }
+
+        // El stock cacheado solo sirve para aceptar: antes de rechazar, confirmarlo
+        List<Long> unconfirmed = groups.values().stream()
+            .filter(group -> products.containsKey(group.productId)
+                && requestedQuantity(items, group) > stockOf(products.get(group.productId)))
+            .map(group -> group.productId)
+            .toList();
+        if (!unconfirmed.isEmpty()) {
+            unconfirmed.forEach(products::remove);
+            for (ProductDTO product : await("product-service", fetchProducts(() -> productCache.reload(unconfirmed)))) {
+                products.put(product.getId(), product);
+            }
+        }
+
+        OrderBatchItemResult[] results = new OrderBatchItemResult[items.size()];
+
+        // ==========================================
+        // 3 + 4. STOCK AGREGADO Y UNA RESERVA POR PRODUCTO
+        // ==========================================
+        for (ProductGroup group : groups.values()) {
+            ProductDTO product = products.get(group.productId);
+            if (product == null) {
+                fail(results, group.indexes, HttpStatus.NOT_FOUND, "Product not found with id: " + group.productId);
+                continue;
+            }
+
+            int available = stockOf(product);
+            for (int index : group.indexes) {
+                int quantity = items.get(index).getQuantity();
+                if (quantity <= available - group.acceptedQuantity) {
+                    group.accepted.add(index);
+                    group.acceptedQuantity += quantity;
+                } else {
+                    fail(results, List.of(index), HttpStatus.CONFLICT, String.format(
+                        "Stock insuficiente para producto %s. Solicitado: %d (disponible: %d)",
+                        group.productId, quantity, available - group.acceptedQuantity));
+                }
+            }
+
+            if (!group.accepted.isEmpty()) {
+                group.reservation = CompletableFuture.supplyAsync(
+                    () -> reserveStock(group.productId, group.acceptedQuantity), downstreamExecutor);
+                group.reservationCall = group.reservation.copy()
+                    .orTimeout(downstreamTimeoutMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        // ==========================================
+        // 5. CREAR LAS ÓRDENES RESERVADAS
+        // ==========================================
+        List<Integer> reserved = new ArrayList<>();
+        Map<Integer, ProductGroup> groupByIndex = new HashMap<>();
+        for (ProductGroup group : groups.values()) {
+            if (group.reservation == null) {
+                continue;
+            }
+
+            try {
+                group.reserved = group.reservationCall.join();
+                for (int index : group.accepted) {
+                    groupByIndex.put(index, group);
+                    reserved.add(index);
+                }
+            } catch (CompletionException | CancellationException e) {
+                // Si la reserva se concreta después del timeout → devolver el stock
+                group.reservation.thenAccept(this::releaseReservation);
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof FeignException.Conflict) {
+                    productCache.invalidate(group.productId);  // El stock cacheado ya no era real
+                }
+                fail(results, group.accepted, statusOf(cause), messageOf(group.productId, cause));
+            }
+        }
+
+        int created = 0;
+        if (!reserved.isEmpty()) {
+            reserved.sort(null);  // IDs en el orden del request
+            long firstId = idGenerator.nextBlock(reserved.size());
+            LocalDateTime now = LocalDateTime.now();
+
+            for (int i = 0; i < reserved.size(); i++) {
+                int index = reserved.get(i);
+                ProductGroup group = groupByIndex.get(index);
+                StockReservationDTO reservation = group.reserved;
+                int quantity = items.get(index).getQuantity();
+
+                try {
+                    OrderDTO order = orderRepository.save(OrderDTO.builder()
+                        .id(firstId + i)
+                        .username(user.getUsername())
+                        .productId(reservation.getProductId())
+                        .productName(reservation.getProductName())
+                        .productPrice(reservation.getUnitPrice())
+                        .quantity(quantity)
+                        .totalPrice(reservation.getUnitPrice().multiply(BigDecimal.valueOf(quantity)))
+                        .createdAt(now)
+                        .build());
+
+                    results[index] = OrderBatchItemResult.builder()
+                        .index(index)
+                        .status(OrderBatchItemResult.Status.CREATED)
+                        .order(order)
+                        .build();
+                    created++;
+                } catch (RuntimeException e) {
+                    log.error("No se pudo guardar la orden {} del lote - Usuario: {}, Reserva: {}: {}",
+                        index, user.getUsername(), reservation.getId(), e.getMessage());
+                    group.unsavedQuantity += quantity;
+                    fail(results, List.of(index), HttpStatus.INTERNAL_SERVER_ERROR,
+                        "No se pudo guardar la orden: " + e.getMessage());
+                }
+            }
+        }
+
+        // ==========================================
+        // 6. DEVOLVER LO RESERVADO SIN ORDEN
+        // ==========================================
+        for (ProductGroup group : groups.values()) {
+            if (group.reserved == null || group.unsavedQuantity == 0) {
+                continue;
+            }
+            if (group.unsavedQuantity == group.acceptedQuantity) {
+                releaseReservation(group.reserved);  // Ninguna orden del producto se guardó
+            } else {
+                releaseQuantity(group.reserved, group.unsavedQuantity);
+            }
+        }
+
+        log.info("Lote de órdenes - Usuario: {}, Elementos: {}, Productos: {}, Creadas: {}, Fallidas: {}",
+            user.getUsername(), items.size(), groups.size(), created, items.size() - created);
+
+        return OrderBatchResponse.builder()
+            .created(created)
+            .failed(items.size() - created)
+            .results(List.of(results))
+            .build();
+    }
+
+    private CompletableFuture<List<ProductDTO>> fetchProducts(Supplier<List<ProductDTO>> fetch) {
+        return CompletableFuture.supplyAsync(fetch, downstreamExecutor)
+            .orTimeout(downstreamTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static int requestedQuantity(List<CreateOrderRequest> items, ProductGroup group) {
+        int total = 0;
+        for (int index : group.indexes) {
+            total += items.get(index).getQuantity();
+        }
+        return total;
+    }
+
+    private static int stockOf(ProductDTO product) {
+        return product.getStock() != null ? product.getStock() : 0;
+    }
+
+    private StockReservationDTO reserveStock(Long productId, int quantity) {
+        return productServiceClient.reserveStock(productId, StockReservationRequest.builder()
+            .quantity(quantity)
+            .confirm(true)
+            .build());
+    }
+
+    private void releaseReservation(StockReservationDTO reservation) {
+        try {
+            productServiceClient.releaseReservation(reservation.getProductId(), reservation.getId());
+            log.info("Reserva liberada (compensación) - ID: {}, Producto: {}, Cantidad: {}",
+                reservation.getId(), reservation.getProductId(), reservation.getQuantity());
+        } catch (RuntimeException e) {
+            log.error("No se pudo liberar la reserva {} del producto {}: {}",
+                reservation.getId(), reservation.getProductId(), e.getMessage());
+        }
+    }
+
+    private void releaseQuantity(StockReservationDTO reservation, int quantity) {
+        try {
+            productServiceClient.releaseReservation(reservation.getProductId(), reservation.getId(), quantity);
+            log.info("Reserva liberada parcialmente (compensación) - ID: {}, Producto: {}, Cantidad: {}",
+                reservation.getId(), reservation.getProductId(), quantity);
+        } catch (RuntimeException e) {
+            log.error("No se pudieron devolver {} unidades de la reserva {} del producto {}: {}",
+                quantity, reservation.getId(), reservation.getProductId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Espera una llamada de la que depende TODO el lote.
+     */
+    private <T> T await(String service, CompletableFuture<T> call) {
+        try {
+            return call.join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof DownstreamUnavailableException unavailable) {
+                throw unavailable;  // 503 + Retry-After
+            }
+            boolean timeout = cause instanceof TimeoutException;
+            String reason = timeout
+                ? "Timeout después de " + downstreamTimeoutMs + " ms"
+                : cause.getClass().getSimpleName() + ": " + cause.getMessage();
+
+            log.error("Error llamando a {} (lote de órdenes): {}", service, reason);
+            throw new DownstreamServiceException(Map.of(service, reason), timeout, cause);
+        }
+    }
+
+    private static void fail(OrderBatchItemResult[] results, List<Integer> indexes, HttpStatus status, String error) {
+        for (int index : indexes) {
+            results[index] = OrderBatchItemResult.builder()
+                .index(index)
+                .status(OrderBatchItemResult.Status.FAILED)
+                .errorStatus(status.value())
+                .error(error)
+                .build();
+        }
+    }
+
+    private static HttpStatus statusOf(Throwable cause) {
+        if (cause instanceof FeignException.Conflict) {
+            return HttpStatus.CONFLICT;
+        }
+        if (cause instanceof FeignException.NotFound) {
+            return HttpStatus.NOT_FOUND;
+        }
+        if (cause instanceof DownstreamUnavailableException) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        return cause instanceof TimeoutException ? HttpStatus.GATEWAY_TIMEOUT : HttpStatus.BAD_GATEWAY;
+    }
+
+    private String messageOf(Long productId, Throwable cause) {
+        if (cause instanceof FeignException.Conflict) {
+            return "Stock insuficiente para producto " + productId + " (cambió durante la reserva)";
+        }
+        if (cause instanceof FeignException.NotFound) {
+            return "Product not found with id: " + productId;
+        }
+        if (cause instanceof DownstreamUnavailableException) {
+            return cause.getMessage();
+        }
+        return cause instanceof TimeoutException
+            ? "Timeout reservando stock después de " + downstreamTimeoutMs + " ms"
+            : "Error reservando stock: " + cause.getMessage();
+    }
+}
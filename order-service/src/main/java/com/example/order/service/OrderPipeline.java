@@ -0,0 +1,264 @@
+package com.example.order.service;
+
+import com.example.order.dto.OrderDTO;
+import com.example.order.dto.OrderJobDTO;
+import com.example.order.exception.BadRequestException;
+import com.example.order.exception.DownstreamServiceException;
+import com.example.order.exception.DownstreamUnavailableException;
+import com.example.order.exception.InsufficientStockException;
+import com.example.order.exception.OrderQueueFullException;
+import com.example.order.exception.ResourceNotFoundException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Pipeline asíncrono de aceptación de órdenes
+ *
+ * ⭐ EL REQUEST NO ESPERA A USER NI PRODUCT SERVICE ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * createOrder hace todo el trabajo remoto (reserva de stock, usuario)
+ * en el hilo de Tomcat. En una ráfaga, todos los hilos de Tomcat quedan
+ * esperando a Product Service y el servicio deja de responder (incluso
+ * GET /orders y los health checks).
+ *
+ * SOLUCIÓN (opt-in):
+ * ==================
+ *
+ *   POST /orders  Prefer: respond-async
+ *   → valida el body, encola y responde 202 Accepted al instante
+ *     Location: /api/orders/requests/{id}
+ *
+ *   POST /orders  Accept: text/event-stream
+ *   → igual, pero la respuesta es un stream SSE que informa cuando termina
+ *
+ * Un pool FIJO de "workers" procesa la cola (tamaño "queue-capacity").
+ *
+ * BACKPRESSURE:
+ * =============
+ *
+ * Cola llena → 429 Too Many Requests + Retry-After, sin tocar Tomcat
+ * ni los servicios remotos. La ráfaga se frena en la puerta en lugar
+ * de acumularse en memoria o en hilos bloqueados.
+ *
+ * SEGURIDAD:
+ * ==========
+ *
+ * Cada tarea lleva el SecurityContext de quien la envió
+ * (DelegatingSecurityContextRunnable): el JWT sigue viajando en las
+ * llamadas Feign del worker. El estado de una orden solo lo puede
+ * consultar su dueño.
+ *
+ * MÉTRICAS:
+ * =========
+ *
+ *   GET /actuator/metrics/executor.queued?tag=name:orders.pipeline
+ *   GET /actuator/metrics/executor.active?tag=name:orders.pipeline
+ */
+@Service
+public class OrderPipeline implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderPipeline.class);
+
+    static final String EXECUTOR_NAME = "orders.pipeline";
+
+    /**
+     * Orden aceptada: estado mutable + future para quien espera el resultado (SSE).
+     */
+    public static final class Job {
+        private final String id = UUID.randomUUID().toString();
+        private final String username;
+        private final Instant acceptedAt = Instant.now();
+        private final CompletableFuture<OrderDTO> result = new CompletableFuture<>();
+
+        private volatile OrderJobDTO.Status status = OrderJobDTO.Status.QUEUED;
+        private volatile Integer errorStatus;
+        private volatile String error;
+        private volatile Instant completedAt;
+
+        private Job(String username) {
+            this.username = username;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public CompletableFuture<OrderDTO> getResult() {
+            return result;
+        }
+
+        public OrderJobDTO toDTO() {
+            return OrderJobDTO.builder()
+                .id(id)
+                .status(status)
+                .order(result.isDone() && !result.isCompletedExceptionally() ? result.join() : null)
+                .errorStatus(errorStatus)
+                .error(error)
+                .acceptedAt(acceptedAt)
+                .completedAt(completedAt)
+                .build();
+        }
+    }
+
+    private final boolean enabled;
+    private final int queueCapacity;
+    private final long retryAfterSeconds;
+    private final ThreadPoolExecutor workers;
+    private final Cache<String, Job> jobs;
+
+    public OrderPipeline(
+        @Value("${orders.async.enabled:false}") boolean enabled,
+        @Value("${orders.async.workers:8}") int workerCount,
+        @Value("${orders.async.queue-capacity:200}") int queueCapacity,
+        @Value("${orders.async.retry-after-seconds:1}") long retryAfterSeconds,
+        @Value("${orders.async.status-ttl-seconds:3600}") long statusTtlSeconds,
+        ObjectProvider<MeterRegistry> meterRegistry
+    ) {
+        this.enabled = enabled;
+        this.queueCapacity = queueCapacity;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(
+            workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> new Thread(runnable, "order-pipeline-" + threadNumber.incrementAndGet()),
+            new ThreadPoolExecutor.AbortPolicy());  // Cola llena → RejectedExecutionException → 429
+
+        this.jobs = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(statusTtlSeconds))
+            .build();
+
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            ExecutorServiceMetrics.monitor(registry, workers, EXECUTOR_NAME, List.of());
+        }
+
+        log.info("Pipeline asíncrono de órdenes: {} - Workers: {}, Cola: {}",
+            enabled ? "HABILITADO" : "DESHABILITADO", workerCount, queueCapacity);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Encola una orden ya validada.
+     *
+     * Con el pipeline deshabilitado la orden se procesa en el hilo del
+     * llamador (el Job se devuelve ya terminado).
+     *
+     * @param username Dueño de la orden
+     * @param task Creación de la orden (corre en un worker con el SecurityContext actual)
+     * @return Orden aceptada (QUEUED) o terminada (pipeline deshabilitado)
+     * @throws OrderQueueFullException si la cola está llena
+     */
+    public Job submit(String username, Supplier<OrderDTO> task) {
+        Job job = new Job(username);
+
+        if (!enabled) {
+            jobs.put(job.id, job);
+            run(job, task);
+            return job;
+        }
+
+        try {
+            workers.execute(new DelegatingSecurityContextRunnable(() -> run(job, task)));
+        } catch (RejectedExecutionException e) {
+            log.warn("Cola de órdenes llena - Usuario: {}, Capacidad: {}", username, queueCapacity);
+            throw new OrderQueueFullException(queueCapacity, retryAfterSeconds);
+        }
+
+        jobs.put(job.id, job);
+        return job;
+    }
+
+    /**
+     * Estado de una orden aceptada (solo para su dueño).
+     */
+    public Optional<Job> find(String id, String username) {
+        Job job = jobs.getIfPresent(id);
+        return job != null && job.username.equals(username) ? Optional.of(job) : Optional.empty();
+    }
+
+    private void run(Job job, Supplier<OrderDTO> task) {
+        job.status = OrderJobDTO.Status.PROCESSING;
+        try {
+            OrderDTO order = task.get();
+            // Estado antes que el future: quien espera el resultado y llama
+            // a toDTO() (ej: el evento SSE) ya ve el estado final
+            job.completedAt = Instant.now();
+            job.status = OrderJobDTO.Status.COMPLETED;
+            job.result.complete(order);
+        } catch (RuntimeException e) {
+            HttpStatus status = statusOf(e);
+            job.errorStatus = status.value();
+            job.error = status.is5xxServerError()
+                && !(e instanceof DownstreamServiceException || e instanceof DownstreamUnavailableException)
+                ? "An unexpected error occurred"
+                : e.getMessage();
+            job.completedAt = Instant.now();
+            job.status = OrderJobDTO.Status.FAILED;
+            job.result.completeExceptionally(e);
+
+            log.warn("Orden asíncrona fallida - ID: {}, Usuario: {}, Estado: {}, Error: {}",
+                job.id, job.username, status.value(), e.getMessage());
+        }
+    }
+
+    /**
+     * Mismo código HTTP que devolvería GlobalExceptionHandler en modo síncrono.
+     */
+    private static HttpStatus statusOf(RuntimeException e) {
+        if (e instanceof InsufficientStockException) {
+            return HttpStatus.CONFLICT;
+        }
+        if (e instanceof ResourceNotFoundException) {
+            return HttpStatus.NOT_FOUND;
+        }
+        if (e instanceof BadRequestException) {
+            return HttpStatus.BAD_REQUEST;
+        }
+        if (e instanceof DownstreamUnavailableException) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        if (e instanceof DownstreamServiceException downstream) {
+            return downstream.isTimeout() ? HttpStatus.GATEWAY_TIMEOUT : HttpStatus.BAD_GATEWAY;
+        }
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Pipeline de órdenes: quedaron {} órdenes sin procesar", workers.getQueue().size());
+        }
+    }
+}
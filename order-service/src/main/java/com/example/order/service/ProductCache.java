@@ -0,0 +1,178 @@
+package com.example.order.service;
+
+import com.example.order.client.ProductServiceClient;
+import com.example.order.dto.ProductDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché local de productos en Order Service
+ *
+ * ⭐ EVITA PEDIR A PRODUCT SERVICE DATOS QUE CASI NUNCA CAMBIAN ⭐
+ *
+ * Nombre y precio de un producto cambian poco: no hace falta un
+ * round-trip a Product Service cada vez que se necesitan.
+ *
+ * INVALIDACIÓN:
+ * =============
+ *
+ * 1. PUSH: Product Service envía un evento a cada instancia cuando un
+ *    admin modifica o elimina un producto (ProductChangeController)
+ *    → la entrada se borra en milisegundos
+ * 2. TTL: cada entrada expira sola después de "ttl-seconds"
+ *    → red de seguridad si se pierde un evento
+ *
+ * ⚠️ EL STOCK CACHEADO ES OPTIMISTA ⚠️
+ * ====================================
+ * Las reservas cambian el stock sin generar eventos: el "stock" de un
+ * ProductDTO cacheado puede estar viejo. Sirve para aceptar, nunca para
+ * rechazar:
+ * - Si el stock cacheado no alcanza → reload() lo consulta de nuevo
+ *   antes de rechazar (OrderBatchService)
+ * - Si alcanza pero ya no es real → la reserva falla con 409 (Product
+ *   Service decide SIEMPRE al reservar) y la entrada se invalida
+ *
+ * CARRERA CARGA vs INVALIDACIÓN:
+ * ==============================
+ * Si llega una invalidación mientras se está cargando un producto,
+ * el resultado de esa carga podría ser anterior al cambio. Por eso
+ * una carga solo se guarda si no hubo invalidaciones mientras tanto.
+ *
+ * MÉTRICAS:
+ * =========
+ *
+ *   GET /actuator/metrics/cache.gets?tag=cache:orders.products&tag=result:hit
+ *   GET /actuator/metrics/cache.evictions?tag=cache:orders.products
+ */
+@Service
+public class ProductCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCache.class);
+
+    static final String CACHE_NAME = "orders.products";
+
+    private final ProductServiceClient productServiceClient;
+    private final Cache<Long, ProductDTO> cache;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ProductCache(
+        ProductServiceClient productServiceClient,
+        @Value("${orders.product-cache.max-size:10000}") long maxSize,
+        @Value("${orders.product-cache.ttl-seconds:300}") long ttlSeconds,
+        ObjectProvider<MeterRegistry> meterRegistry
+    ) {
+        this.productServiceClient = productServiceClient;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .recordStats()
+            .build();
+
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        if (registry != null) {
+            CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+        }
+
+        log.info("Caché de productos - Tamaño máximo: {}, TTL: {}s", maxSize, ttlSeconds);
+    }
+
+    /**
+     * Obtiene varios productos. Los que faltan en la caché se piden
+     * a Product Service en UNA sola llamada (GET /products?ids=...).
+     *
+     * @param ids IDs de los productos
+     * @return Productos encontrados, en el orden pedido (los inexistentes se omiten)
+     */
+    public List<ProductDTO> getProducts(Collection<Long> ids) {
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        Map<Long, ProductDTO> found = new HashMap<>(cache.getAllPresent(requested));
+
+        List<Long> missing = requested.stream().filter(id -> !found.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            found.putAll(load(missing));
+        }
+        return inOrder(requested, found);
+    }
+
+    /**
+     * Consulta los productos a Product Service aunque estén en la caché
+     * (ej: para confirmar un stock cacheado que no alcanza) y actualiza
+     * las entradas.
+     *
+     * @param ids IDs de los productos
+     * @return Productos encontrados, en el orden pedido (los inexistentes se omiten)
+     */
+    public List<ProductDTO> reload(Collection<Long> ids) {
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        if (requested.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, ProductDTO> loaded = load(new ArrayList<>(requested));
+        // Los que ya no existen no deben quedar en la caché
+        requested.stream().filter(id -> !loaded.containsKey(id)).forEach(this::invalidate);
+        return inOrder(requested, loaded);
+    }
+
+    /**
+     * Invalida un producto (evento del feed de cambios, o reserva
+     * rechazada por un stock cacheado que ya no era real).
+     */
+    public void invalidate(Long productId) {
+        invalidations.incrementAndGet();
+        cache.invalidate(productId);
+    }
+
+    /**
+     * UNA llamada a Product Service (GET /products?ids=...).
+     */
+    private Map<Long, ProductDTO> load(List<Long> ids) {
+        long generation = invalidations.get();
+        Map<Long, ProductDTO> loaded = new HashMap<>();
+        for (ProductDTO product : productServiceClient.getProductsByIds(ids)) {
+            loaded.put(product.getId(), product);
+        }
+        store(generation, loaded);
+        return loaded;
+    }
+
+    private static List<ProductDTO> inOrder(Set<Long> requested, Map<Long, ProductDTO> found) {
+        List<ProductDTO> result = new ArrayList<>(requested.size());
+        for (Long id : requested) {
+            ProductDTO product = found.get(id);
+            if (product != null) {
+                result.add(product);
+            }
+        }
+        return result;
+    }
+
+    private void store(long generation, Map<Long, ProductDTO> products) {
+        // Hubo una invalidación durante la carga → no guardar (podría ser viejo)
+        if (invalidations.get() != generation) {
+            return;
+        }
+        cache.putAll(products);
+
+        // La invalidación llegó justo entre el chequeo y el put → deshacer
+        if (invalidations.get() != generation) {
+            cache.invalidateAll(products.keySet());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.order.service;
+
+import com.example.order.client.UserServiceClient;
+import com.example.order.dto.UserInfoDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resuelve la información del usuario actual (UserInfoDTO)
+ *
+ * ⭐ EVITA EL ROUND-TRIP A USER SERVICE ⭐
+ *
+ * ANTES:
+ * ======
+ * createOrder llamaba a GET /users/me en User Service, que:
+ * - Volvía a validar el MISMO JWT (firma RSA, issuer, audience)
+ * - Copiaba claims del JWT a un UserInfoDTO
+ * Order Service ya validó ese JWT: el salto de red no aporta nada.
+ *
+ * MODOS:
+ * ======
+ *
+ * orders:
+ *   user-info:
+ *     mode: local   # (por defecto) UserInfoDTO desde los claims del JWT
+ *     mode: remote  # GET /users/me en User Service (si algún día agrega
+ *                   # datos que no están en el token)
+ *
+ * En modo local, el DTO es idéntico al que devuelve User Service:
+ * mismos claims, mismo formato de roles (realm_access.roles).
+ */
+@Service
+public class UserInfoResolver {
+
+    private static final Logger log = LoggerFactory.getLogger(UserInfoResolver.class);
+
+    public enum Mode { LOCAL, REMOTE }
+
+    private final UserServiceClient userServiceClient;
+    private final Executor downstreamExecutor;
+    private final Mode mode;
+
+    @Value("${orders.downstream.timeout-ms:10000}")
+    private long downstreamTimeoutMs;
+
+    public UserInfoResolver(
+        UserServiceClient userServiceClient,
+        @Qualifier("downstreamExecutor") Executor downstreamExecutor,
+        @Value("${orders.user-info.mode:local}") String mode
+    ) {
+        this.userServiceClient = userServiceClient;
+        this.downstreamExecutor = downstreamExecutor;
+        this.mode = Mode.valueOf(mode.trim().toUpperCase());
+
+        log.info("Información de usuario - Modo: {}", this.mode);
+    }
+
+    /**
+     * Resuelve el usuario del JWT.
+     *
+     * - LOCAL  → future ya completado (sin red, sin hilos extra)
+     * - REMOTE → llamada a User Service en downstreamExecutor, con timeout
+     *
+     * @param jwt JWT ya validado por Order Service
+     * @return Información del usuario
+     */
+    public CompletableFuture<UserInfoDTO> resolve(Jwt jwt) {
+        if (mode == Mode.LOCAL) {
+            return CompletableFuture.completedFuture(fromClaims(jwt));
+        }
+
+        // Feign llama a: GET http://user-service/users/me
+        return CompletableFuture
+            .supplyAsync(userServiceClient::getCurrentUser, downstreamExecutor)
+            .orTimeout(downstreamTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isRemote() {
+        return mode == Mode.REMOTE;
+    }
+
+    /**
+     * Mismo mapeo que UserController.getCurrentUser en User Service.
+     */
+    @SuppressWarnings("unchecked")
+    static UserInfoDTO fromClaims(Jwt jwt) {
+        // Keycloak pone los roles en: realm_access.roles
+        Map<String, Object> realmAccess = jwt.getClaim("realm_access");
+        List<String> roles = realmAccess != null && realmAccess.get("roles") instanceof List<?> list
+            ? (List<String>) list
+            : List.of();
+
+        return UserInfoDTO.builder()
+            .username(jwt.getClaimAsString("preferred_username"))
+            .email(jwt.getClaimAsString("email"))
+            .name(jwt.getClaimAsString("name"))
+            .givenName(jwt.getClaimAsString("given_name"))
+            .familyName(jwt.getClaimAsString("family_name"))
+            .roles(roles)
+            .emailVerified(jwt.getClaimAsBoolean("email_verified"))
+            .build();
+    }
+}
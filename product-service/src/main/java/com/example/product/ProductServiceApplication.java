@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Product Service - Microservicio de Productos
@@ -71,6 +72,7 @@ import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
  */
 @SpringBootApplication
 @EnableDiscoveryClient
+@EnableScheduling  // ← Expiración de reservas de stock (StockReservationService)
 public class ProductServiceApplication {
 
     private static final Logger log = LoggerFactory.getLogger(ProductServiceApplication.class);
@@ -83,10 +85,17 @@ public class ProductServiceApplication {
         log.info("Service Discovery: ENABLED - Registrado en Eureka: http://localhost:8761");
         log.info("Endpoints disponibles:");
         log.info("  GET    /products          -> Listar productos (cualquier usuario)");
+        log.info("  GET    /products?limit=20  -> Paginar/filtrar (cursor, minPrice, maxPrice, inStock, sort, fields)");
+        log.info("  GET    /products?ids=1,2   -> Obtener varios productos (cualquier usuario)");
+        log.info("  POST   /products/batch     -> Obtener varios productos (IDs en el body)");
+        log.info("  GET    /products/search?q= -> Buscar productos (cualquier usuario)");
         log.info("  GET    /products/{{id}}     -> Obtener producto (cualquier usuario)");
         log.info("  POST   /products          -> Crear producto (admin only)");
         log.info("  PUT    /products/{{id}}     -> Actualizar producto (admin only)");
         log.info("  DELETE /products/{{id}}     -> Eliminar producto (admin only)");
+        log.info("  POST   /products/{{id}}/reservations                 -> Reservar stock");
+        log.info("  POST   /products/{{id}}/reservations/{{rid}}/confirm   -> Confirmar reserva");
+        log.info("  DELETE /products/{{id}}/reservations/{{rid}}           -> Liberar reserva");
         log.info("IMPORTANTE: Todos los endpoints requieren JWT válido");
     }
 }
@@ -1,19 +1,34 @@
 package com.example.product.controller;
 
+import com.example.product.dto.ProductBatchRequest;
+import com.example.product.dto.ProductChangeType;
 import com.example.product.dto.ProductDTO;
+import com.example.product.dto.ProductListQuery;
+import com.example.product.dto.ReservationRequest;
+import com.example.product.dto.StockReservationDTO;
+import com.example.product.exception.BadRequestException;
+import com.example.product.service.ProductCatalog;
+import com.example.product.service.ProductCatalogSnapshot;
+import com.example.product.service.ProductChangePublisher;
+import com.example.product.service.ProductListingService;
+import com.example.product.service.ProductSearchIndex;
+import com.example.product.service.StockReservationService;
+import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 
-import java.math.BigDecimal;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Optional;
 
 /**
  * Product Controller - Endpoints de Productos
@@ -50,49 +65,187 @@ public class ProductController {
 
     private static final Logger log = LoggerFactory.getLogger(ProductController.class);
 
-    // Mock database (en memoria)
-    private final Map<Long, ProductDTO> products = new ConcurrentHashMap<>();
-    private final AtomicLong idGenerator = new AtomicLong(1);
-
-    // Inicializar con algunos productos
-    public ProductController() {
-        products.put(1L, ProductDTO.builder()
-            .id(1L)
-            .name("Laptop")
-            .description("High-performance laptop")
-            .price(new BigDecimal("999.99"))
-            .stock(10)
-            .build());
-
-        products.put(2L, ProductDTO.builder()
-            .id(2L)
-            .name("Mouse")
-            .description("Wireless mouse")
-            .price(new BigDecimal("29.99"))
-            .stock(50)
-            .build());
-
-        idGenerator.set(3L);
+    private final ProductCatalog catalog;
+    private final StockReservationService reservationService;
+    private final ProductChangePublisher changePublisher;
+    private final ProductCatalogSnapshot catalogSnapshot;
+    private final ProductListingService listingService;
+    private final ProductSearchIndex searchIndex;
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String PAGE_NUMBER_HEADER = "X-Page-Number";
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    @Value("${products.batch.max-size:500}")
+    private int maxBatchSize;
+
+    public ProductController(
+        ProductCatalog catalog,
+        StockReservationService reservationService,
+        ProductChangePublisher changePublisher,
+        ProductCatalogSnapshot catalogSnapshot,
+        ProductListingService listingService,
+        ProductSearchIndex searchIndex
+    ) {
+        this.catalog = catalog;
+        this.reservationService = reservationService;
+        this.changePublisher = changePublisher;
+        this.catalogSnapshot = catalogSnapshot;
+        this.listingService = listingService;
+        this.searchIndex = searchIndex;
     }
 
     /**
      * GET /products
      *
-     * Lista todos los productos.
+     * Lista los productos.
+     *
+     * SIN PARÁMETROS → SNAPSHOT JSON PRE-SERIALIZADO:
+     * ===============================================
+     * - No copia el catálogo ni lo re-serializa (ver ProductCatalogSnapshot)
+     * - ETag fuerte: con If-None-Match igual → 304 Not Modified sin body
+     *   (Spring compara el ETag de la ResponseEntity automáticamente)
+     * - Cache-Control: no-cache → el cliente puede guardar la respuesta,
+     *   pero debe revalidarla con el ETag
+     *
+     * CON PARÁMETROS → PAGINACIÓN, FILTROS Y PROYECCIÓN:
+     * ==================================================
+     *   GET /products?limit=20&cursor=...&minPrice=10&maxPrice=100&inStock=true&sort=price&fields=id,name,price
+     *
+     * Headers de respuesta:
+     * - X-Next-Cursor: cursor de la siguiente página (si hay)
+     * - X-Page-Number: número de página (desde 1)
+     * - X-Total-Count: total de productos que cumplen los filtros
+     *
+     * Ver ProductListingService.
      *
      * PERMISOS:
      * - Cualquier usuario autenticado
      * - No requiere role específico
      *
+     * @param query Paginación, filtros y proyección (todos opcionales)
      * @param jwt JWT del usuario
-     * @return Lista de productos
+     * @return Productos
      */
     @GetMapping
-    public List<ProductDTO> getAllProducts(@AuthenticationPrincipal Jwt jwt) {
-        log.info("GET /products - Usuario: {}, Total: {}",
-            jwt.getClaimAsString("preferred_username"), products.size());
+    public ResponseEntity<?> getAllProducts(ProductListQuery query, @AuthenticationPrincipal Jwt jwt) {
+        String username = jwt.getClaimAsString("preferred_username");
+
+        if (!query.isPlain()) {
+            ProductListingService.Listing listing = listingService.list(query);
+
+            log.info("GET /products - Usuario: {}, Query: {}, Página: {}, En página: {}, Total: {}",
+                username, query, listing.pageNumber(), listing.items().size(), listing.totalCount());
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(PAGE_NUMBER_HEADER, String.valueOf(listing.pageNumber()))
+                .header(TOTAL_COUNT_HEADER, String.valueOf(listing.totalCount()));
+            if (listing.nextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, listing.nextCursor());
+            }
+            return response.body(listing.items());
+        }
+
+        ProductCatalogSnapshot.Snapshot snapshot = catalogSnapshot.get();
+
+        log.info("GET /products - Usuario: {}, Total: {}, ETag: {}", username, snapshot.size(), snapshot.etag());
+
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .eTag(snapshot.etag())
+            .cacheControl(CacheControl.noCache())
+            .body(snapshot.json());
+    }
+
+    /**
+     * GET /products?ids=1,2,3
+     *
+     * Solo los productos indicados, en el orden pedido (un solo round-trip).
+     * Los IDs inexistentes se omiten. Para listas largas usar POST /products/batch.
+     *
+     * PERMISOS:
+     * - Cualquier usuario autenticado
+     *
+     * @param ids IDs a obtener
+     * @param jwt JWT del usuario
+     * @return Productos encontrados
+     */
+    @GetMapping(params = "ids")
+    public List<ProductDTO> getProductsByIds(
+        @RequestParam List<Long> ids,
+        @AuthenticationPrincipal Jwt jwt
+    ) {
+        return findProductsByIds(ids, jwt);
+    }
+
+    /**
+     * POST /products/batch
+     *
+     * Igual que GET /products?ids=..., con los IDs en el body.
+     * No modifica nada: es una lectura, cualquier usuario autenticado.
+     *
+     * @param request IDs a obtener
+     * @param jwt JWT del usuario
+     * @return Productos encontrados, en el orden pedido
+     */
+    @PostMapping("/batch")
+    public List<ProductDTO> getProductsBatch(
+        @Valid @RequestBody ProductBatchRequest request,
+        @AuthenticationPrincipal Jwt jwt
+    ) {
+        return findProductsByIds(request.getIds(), jwt);
+    }
+
+    private List<ProductDTO> findProductsByIds(List<Long> ids, Jwt jwt) {
+        if (ids.size() > maxBatchSize) {
+            throw new BadRequestException("Se pueden pedir como máximo " + maxBatchSize + " productos por llamada");
+        }
+
+        List<ProductDTO> found = catalog.findAllById(ids);
+
+        log.info("Batch de productos - Usuario: {}, Pedidos: {}, Encontrados: {}",
+            jwt.getClaimAsString("preferred_username"), ids.size(), found.size());
+
+        return found;
+    }
+
+    /**
+     * GET /products/search?q=...
+     *
+     * Búsqueda de texto libre sobre name y description.
+     *
+     * - Índice invertido en memoria (ver ProductSearchIndex)
+     * - Todos los términos deben aparecer; cada uno puede ser un prefijo
+     *   ("wire mou" encuentra "Wireless mouse")
+     * - Resultados ordenados por relevancia
+     *
+     * PERMISOS:
+     * - Cualquier usuario autenticado
+     *
+     * @param q Texto a buscar
+     * @param limit Máximo de resultados (por defecto 20, máximo 100)
+     * @param jwt JWT del usuario
+     * @return Productos encontrados, del más al menos relevante
+     */
+    @GetMapping("/search")
+    public List<ProductDTO> searchProducts(
+        @RequestParam String q,
+        @RequestParam(defaultValue = "20") int limit,
+        @AuthenticationPrincipal Jwt jwt
+    ) {
+        if (limit < 1 || limit > ProductListingService.MAX_PAGE_SIZE) {
+            throw new BadRequestException("limit debe estar entre 1 y " + ProductListingService.MAX_PAGE_SIZE);
+        }
+
+        List<ProductDTO> found = searchIndex.search(q, limit).stream()
+            .map(hit -> catalog.findById(hit.productId()))
+            .flatMap(Optional::stream)
+            .toList();
 
-        return new ArrayList<>(products.values());
+        log.info("GET /products/search - Usuario: {}, Query: '{}', Resultados: {}",
+            jwt.getClaimAsString("preferred_username"), q, found.size());
+
+        return found;
     }
 
     /**
@@ -111,11 +264,7 @@ public class ProductController {
     public ProductDTO getProductById(@PathVariable Long id, @AuthenticationPrincipal Jwt jwt) {
         log.info("GET /products/{} - Usuario: {}", id, jwt.getClaimAsString("preferred_username"));
 
-        ProductDTO product = products.get(id);
-        if (product == null) {
-            throw new RuntimeException("Product not found: " + id);
-        }
-        return product;
+        return catalog.getById(id);
     }
 
     /**
@@ -139,11 +288,7 @@ public class ProductController {
         log.info("POST /products - Admin: {}, Producto: {}",
             jwt.getClaimAsString("preferred_username"), product.getName());
 
-        Long id = idGenerator.getAndIncrement();
-        product.setId(id);
-        products.put(id, product);
-
-        return product;
+        return catalog.create(product);
     }
 
     /**
@@ -167,14 +312,10 @@ public class ProductController {
     ) {
         log.info("PUT /products/{} - Admin: {}", id, jwt.getClaimAsString("preferred_username"));
 
-        if (!products.containsKey(id)) {
-            throw new RuntimeException("Product not found: " + id);
-        }
-
-        product.setId(id);
-        products.put(id, product);
+        ProductDTO updated = catalog.update(id, product);
+        changePublisher.publish(id, ProductChangeType.UPDATED);  // ← Invalida cachés (Order Service)
 
-        return product;
+        return updated;
     }
 
     /**
@@ -193,11 +334,8 @@ public class ProductController {
     public Map<String, String> deleteProduct(@PathVariable Long id, @AuthenticationPrincipal Jwt jwt) {
         log.info("DELETE /products/{} - Admin: {}", id, jwt.getClaimAsString("preferred_username"));
 
-        if (!products.containsKey(id)) {
-            throw new RuntimeException("Product not found: " + id);
-        }
-
-        products.remove(id);
+        catalog.delete(id);
+        changePublisher.publish(id, ProductChangeType.DELETED);  // ← Invalida cachés (Order Service)
 
         return Map.of(
             "message", "Product deleted successfully",
@@ -205,6 +343,91 @@ public class ProductController {
         );
     }
 
+    /**
+     * POST /products/{id}/reservations
+     *
+     * Reserva stock de un producto de forma ATÓMICA.
+     *
+     * ⭐ EVITA OVERSELL ⭐
+     *
+     * - Descuenta stock con compare-and-set (sin locks)
+     * - Si no alcanza → 409 Conflict
+     * - confirm=true  → CONFIRMED en un solo round-trip (Order Service)
+     * - confirm=false → HELD, se libera sola al vencer el TTL
+     *
+     * PERMISOS:
+     * - Cualquier usuario autenticado
+     *
+     * @param id ID del producto
+     * @param request Cantidad, TTL y confirmación
+     * @param jwt JWT del usuario
+     * @return Reserva creada (201)
+     */
+    @PostMapping("/{id}/reservations")
+    @ResponseStatus(HttpStatus.CREATED)
+    public StockReservationDTO reserveStock(
+        @PathVariable Long id,
+        @Valid @RequestBody ReservationRequest request,
+        @AuthenticationPrincipal Jwt jwt
+    ) {
+        String username = jwt.getClaimAsString("preferred_username");
+        log.info("POST /products/{}/reservations - Usuario: {}, Cantidad: {}, Confirmar: {}",
+            id, username, request.getQuantity(), request.isConfirm());
+
+        return reservationService.reserve(id, request, username);
+    }
+
+    /**
+     * POST /products/{id}/reservations/{reservationId}/confirm
+     *
+     * Confirma una reserva HELD (deja de expirar).
+     * Solo el usuario que reservó puede confirmarla.
+     *
+     * @param id ID del producto
+     * @param reservationId ID de la reserva
+     * @param jwt JWT del usuario
+     * @return Reserva confirmada
+     */
+    @PostMapping("/{id}/reservations/{reservationId}/confirm")
+    public StockReservationDTO confirmReservation(
+        @PathVariable Long id,
+        @PathVariable String reservationId,
+        @AuthenticationPrincipal Jwt jwt
+    ) {
+        String username = jwt.getClaimAsString("preferred_username");
+        log.info("POST /products/{}/reservations/{}/confirm - Usuario: {}", id, reservationId, username);
+
+        return reservationService.confirm(id, reservationId, username);
+    }
+
+    /**
+     * DELETE /products/{id}/reservations/{reservationId}
+     *
+     * Libera una reserva y devuelve el stock.
+     * Solo el usuario que reservó puede liberarla.
+     *
+     * ?quantity=n → devuelve solo n unidades; la reserva sigue con el resto
+     *
+     * @param id ID del producto
+     * @param reservationId ID de la reserva
+     * @param quantity Unidades a devolver (opcional; sin él se libera completa)
+     * @param jwt JWT del usuario
+     * @return Reserva liberada, o la reserva reducida si fue parcial
+     */
+    @DeleteMapping("/{id}/reservations/{reservationId}")
+    public StockReservationDTO releaseReservation(
+        @PathVariable Long id,
+        @PathVariable String reservationId,
+        @RequestParam(required = false) Integer quantity,
+        @AuthenticationPrincipal Jwt jwt
+    ) {
+        String username = jwt.getClaimAsString("preferred_username");
+        log.info("DELETE /products/{}/reservations/{} - Usuario: {}, Cantidad: {}",
+            id, reservationId, username, quantity != null ? quantity : "todas");
+
+        return reservationService.release(id, reservationId, username, quantity);
+    }
+
     /**
      * TESTING:
      * ========
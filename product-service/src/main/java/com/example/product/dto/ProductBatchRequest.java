@@ -0,0 +1,33 @@
+package com.example.product.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Request para obtener varios productos en una sola llamada
+ *
+ * Alternativa a GET /products?ids=1,2,3 cuando la lista de IDs
+ * es demasiado larga para la URL.
+ *
+ * EJEMPLO:
+ *   POST /products/batch
+ *   { "ids": [1, 2, 3] }
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductBatchRequest {
+
+    /**
+     * IDs de los productos (al menos uno)
+     */
+    @NotEmpty(message = "La lista de IDs es requerida")
+    private List<@NotNull(message = "Los IDs no pueden ser null") Long> ids;
+}
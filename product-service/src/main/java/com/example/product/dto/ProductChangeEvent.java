@@ -0,0 +1,31 @@
+package com.example.product.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Evento del feed de cambios de productos
+ *
+ * Se publica cuando un admin modifica o elimina un producto, para que
+ * los servicios que cachean productos (ej: Order Service) invaliden
+ * su copia.
+ *
+ * Solo lleva el ID: el suscriptor vuelve a pedir el producto si lo necesita.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangeEvent {
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long productId;
+    private ProductChangeType type;
+    private long sequence;             // Creciente dentro de esta instancia
+    private Instant occurredAt;
+}
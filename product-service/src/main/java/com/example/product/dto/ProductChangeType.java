@@ -0,0 +1,9 @@
+package com.example.product.dto;
+
+/**
+ * Tipo de cambio de un producto (feed de cambios)
+ */
+public enum ProductChangeType {
+    UPDATED,
+    DELETED
+}
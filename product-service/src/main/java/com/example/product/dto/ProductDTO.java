@@ -1,5 +1,7 @@
 package com.example.product.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,13 +15,14 @@ import java.math.BigDecimal;
  * Representa un producto en el sistema.
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ProductDTO {
     /**
-     * ID del producto
+     * ID del producto (Snowflake: en JSON va como string, ver SnowflakeIdGenerator)
      */
+    @JsonSerialize(using = ToStringSerializer.class)
     private Long id;
 
     /**
@@ -0,0 +1,72 @@
+package com.example.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Parámetros de listado de productos (query string de GET /products)
+ *
+ * EJEMPLOS:
+ * =========
+ *
+ *   GET /products?limit=20
+ *   GET /products?limit=20&cursor=MjoyMA
+ *   GET /products?minPrice=10&maxPrice=100&inStock=true
+ *   GET /products?fields=id,name,price
+ *   GET /products?minPrice=10&maxPrice=100&sort=price
+ *
+ * Sin ningún parámetro se devuelve el snapshot completo del catálogo.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductListQuery {
+
+    /**
+     * Tamaño de página (opcional, máximo 100). Sin limit → todos los resultados.
+     */
+    private Integer limit;
+
+    /**
+     * Cursor devuelto en X-Next-Cursor por la página anterior.
+     */
+    private String cursor;
+
+    /**
+     * Precio mínimo (inclusive).
+     */
+    private BigDecimal minPrice;
+
+    /**
+     * Precio máximo (inclusive).
+     */
+    private BigDecimal maxPrice;
+
+    /**
+     * true → solo productos con stock > 0.
+     */
+    private Boolean inStock;
+
+    /**
+     * Orden: id (por defecto), price (ascendente) o -price (descendente).
+     */
+    private String sort;
+
+    /**
+     * Campos a devolver, separados por coma (ej: id,name,price).
+     */
+    private String fields;
+
+    /**
+     * ¿Es un listado "completo" (sin paginación, filtros ni proyección)?
+     */
+    public boolean isPlain() {
+        return limit == null && cursor == null && minPrice == null && maxPrice == null
+            && inStock == null && sort == null && fields == null;
+    }
+}
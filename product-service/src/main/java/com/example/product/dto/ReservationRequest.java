@@ -0,0 +1,47 @@
+package com.example.product.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Request para reservar stock de un producto
+ *
+ * EJEMPLOS:
+ * =========
+ *
+ * Reserva temporal (carrito, checkout en dos pasos):
+ *   { "quantity": 2, "ttlSeconds": 300 }
+ *   → HELD durante 5 minutos, luego se libera sola si no se confirma
+ *
+ * Reserva definitiva (Order Service al crear una orden):
+ *   { "quantity": 2, "confirm": true }
+ *   → CONFIRMED en un solo round-trip
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationRequest {
+
+    /**
+     * Cantidad a reservar (al menos 1)
+     */
+    @NotNull(message = "La cantidad es requerida")
+    @Min(value = 1, message = "La cantidad debe ser al menos 1")
+    private Integer quantity;
+
+    /**
+     * Tiempo de vida de la reserva HELD (opcional, usa el valor por defecto)
+     */
+    @Min(value = 1, message = "El TTL debe ser al menos 1 segundo")
+    private Long ttlSeconds;
+
+    /**
+     * true → la reserva nace CONFIRMED (no expira)
+     */
+    private boolean confirm;
+}
@@ -0,0 +1,16 @@
+package com.example.product.dto;
+
+/**
+ * Estados de una reserva de stock
+ *
+ * HELD      → Stock descontado, pendiente de confirmar (expira por TTL)
+ * CONFIRMED → Stock descontado definitivamente (ej: orden creada)
+ * RELEASED  → Reserva liberada, el stock se devolvió
+ * EXPIRED   → TTL vencido sin confirmar, el stock se devolvió
+ */
+public enum ReservationStatus {
+    HELD,
+    CONFIRMED,
+    RELEASED,
+    EXPIRED
+}
@@ -0,0 +1,38 @@
+package com.example.product.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * DTO de Reserva de Stock
+ *
+ * Incluye nombre y precio del producto en el momento de reservar,
+ * así quien reserva (ej: Order Service) no necesita pedir el ProductDTO.
+ *
+ * Las instancias se tratan como INMUTABLES: cada cambio de estado
+ * crea una copia (toBuilder) y se aplica con compare-and-set.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationDTO {
+    private String id;
+    @JsonSerialize(using = ToStringSerializer.class)
+    private Long productId;
+    private String productName;
+    private BigDecimal unitPrice;      // Precio al momento de reservar
+    private Integer quantity;
+    private Integer remainingStock;    // Stock que quedó después de reservar
+    private ReservationStatus status;
+    private String owner;              // preferred_username de quien reservó
+    private Instant createdAt;
+    private Instant expiresAt;         // null si está CONFIRMED
+}
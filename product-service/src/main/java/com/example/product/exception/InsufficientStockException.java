@@ -0,0 +1,23 @@
+package com.example.product.exception;
+
+import lombok.Getter;
+
+/**
+ * Insufficient Stock Exception
+ *
+ * El stock disponible no alcanza para la cantidad pedida.
+ */
+@Getter
+public class InsufficientStockException extends RuntimeException {
+    private final Long productId;
+    private final int requested;
+    private final int available;
+
+    public InsufficientStockException(Long productId, int requested, int available) {
+        super(String.format("Stock insuficiente para producto %s. Solicitado: %d, Disponible: %d",
+            productId, requested, available));
+        this.productId = productId;
+        this.requested = requested;
+        this.available = available;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.product.exception;
+
+/**
+ * Reservation State Exception
+ *
+ * La reserva no admite la operación en su estado actual
+ * (ej: confirmar una reserva ya expirada).
+ */
+public class ReservationStateException extends RuntimeException {
+
+    public ReservationStateException(String message) {
+        super(message);
+    }
+}
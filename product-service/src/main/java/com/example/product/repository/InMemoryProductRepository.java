@@ -0,0 +1,59 @@
+package com.example.product.repository;
+
+import com.example.product.dto.ProductDTO;
+import com.example.product.dto.StockReservationDTO;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Repositorio sin persistencia
+ *
+ * Comportamiento original: el catálogo (y las reservas) viven solo en
+ * memoria y cada arranque vuelve a los productos de ejemplo. Útil para tests y demos.
+ *
+ * products.store.type=memory
+ */
+@Repository
+@ConditionalOnProperty(name = "products.store.type", havingValue = "memory")
+public class InMemoryProductRepository implements ProductRepository {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    @Override
+    public List<ProductDTO> loadAll() {
+        return List.of();
+    }
+
+    @Override
+    public CompletableFuture<Void> save(ProductDTO product) {
+        return DONE;
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(Long id) {
+        return DONE;
+    }
+
+    @Override
+    public List<StockReservationDTO> loadReservations() {
+        return List.of();
+    }
+
+    @Override
+    public CompletableFuture<Void> saveReservation(StockReservationDTO reservation, int stockDelta) {
+        return DONE;
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteReservation(StockReservationDTO reservation, int stockDelta) {
+        return DONE;
+    }
+}
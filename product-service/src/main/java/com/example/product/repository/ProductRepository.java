@@ -0,0 +1,86 @@
+package com.example.product.repository;
+
+import com.example.product.dto.ProductDTO;
+import com.example.product.dto.StockReservationDTO;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Almacenamiento persistente de productos
+ *
+ * ⭐ EL CATÁLOGO SOBREVIVE A LOS REINICIOS ⭐
+ *
+ * ProductCatalog sigue siendo la vista en memoria (lecturas sin I/O).
+ * Este repositorio solo registra los CAMBIOS y reconstruye el estado
+ * al arrancar.
+ *
+ * IMPLEMENTACIONES:
+ * =================
+ *
+ * products:
+ *   store:
+ *     type: wal     # (por defecto) WalProductRepository: log en disco local
+ *     type: memory  # InMemoryProductRepository: sin persistencia (como antes)
+ *
+ * DURABILIDAD:
+ * ============
+ *
+ * Cada escritura devuelve un CompletableFuture que se completa cuando
+ * el cambio ya está en disco. ProductCatalog lo registra dentro de su
+ * lock (para fijar el ORDEN) y espera la durabilidad fuera del lock.
+ *
+ * El stock se registra como DELTAS (+n / -n), no como valor absoluto:
+ * dos reservas concurrentes pueden quedar en el log en cualquier orden
+ * y el resultado del replay es el mismo.
+ *
+ * RESERVAS:
+ * =========
+ *
+ * Cada cambio de una reserva (alta, confirmación, liberación,
+ * expiración, purga) se registra JUNTO con el delta de stock que lo
+ * acompaña, en una sola escritura: después de un crash nunca queda
+ * stock descontado sin su reserva, ni una reserva liberada sin el
+ * stock devuelto.
+ */
+public interface ProductRepository {
+
+    /**
+     * ¿No había nada persistido al arrancar? (primer arranque)
+     */
+    boolean isNew();
+
+    /**
+     * Productos persistidos al arrancar, ordenados por ID.
+     */
+    List<ProductDTO> loadAll();
+
+    /**
+     * Alta o modificación (valor completo del producto).
+     */
+    CompletableFuture<Void> save(ProductDTO product);
+
+    /**
+     * Baja de un producto.
+     */
+    CompletableFuture<Void> delete(Long id);
+
+    /**
+     * Reservas de stock persistidas al arrancar (HELD y CONFIRMED).
+     */
+    List<StockReservationDTO> loadReservations();
+
+    /**
+     * Alta o cambio de estado de una reserva, con su movimiento de stock.
+     *
+     * @param stockDelta Delta sobre el stock del producto (0 si no lo mueve)
+     */
+    CompletableFuture<Void> saveReservation(StockReservationDTO reservation, int stockDelta);
+
+    /**
+     * Baja de una reserva (liberada, expirada o purgada), con su movimiento de stock.
+     *
+     * @param stockDelta Stock que devuelve (0 si no devuelve nada)
+     */
+    CompletableFuture<Void> deleteReservation(StockReservationDTO reservation, int stockDelta);
+}
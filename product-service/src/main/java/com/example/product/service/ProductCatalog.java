@@ -0,0 +1,447 @@
+package com.example.product.service;
+
+import com.example.product.dto.ProductDTO;
+import com.example.product.exception.InsufficientStockException;
+import com.example.product.exception.ResourceNotFoundException;
+import com.example.product.repository.ProductRepository;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Catálogo de productos (en memoria, persistido en ProductRepository)
+ *
+ * ⭐ ÚNICO DUEÑO DEL MAPA DE PRODUCTOS ⭐
+ *
+ * ProductController y StockReservationService trabajan sobre este
+ * catálogo en lugar de tocar el mapa directamente.
+ *
+ * INMUTABILIDAD:
+ * ==============
+ *
+ * Los ProductDTO guardados NUNCA se modifican: cada cambio guarda
+ * una copia nueva (toBuilder). Eso permite usar compare-and-set
+ * sobre la entrada del mapa.
+ *
+ * STOCK CON COMPARE-AND-SET:
+ * ==========================
+ *
+ * decrementStock() hace un bucle compare-and-set:
+ *
+ *   1. Leer producto actual (stock = 10)
+ *   2. ¿Alcanza? 10 >= 3 → sí
+ *   3. Crear copia con stock = 7
+ *   4. products.replace(id, actual, copia)
+ *      - Si nadie cambió el producto → éxito
+ *      - Si otro hilo se adelantó   → reintentar desde 1
+ *
+ * Dos órdenes concurrentes nunca pueden vender el mismo stock.
+ *
+ * VERSIÓN:
+ * ========
+ *
+ * version() cambia con cada alta, modificación, baja o movimiento de
+ * stock. Quien mantiene vistas derivadas del catálogo (ej: el snapshot
+ * JSON de GET /products) la compara para saber si debe reconstruirlas.
+ *
+ * ALTAS, MODIFICACIONES Y BAJAS:
+ * ==============================
+ *
+ * create/update/delete (solo admins, poco frecuentes) se serializan con
+ * un lock y notifican a los listeners DENTRO de ese lock. Así los índices
+ * (búsqueda, precio) se actualizan en el mismo orden que el mapa, y un
+ * cambio de precio mueve la entrada del índice antes de que empiece
+ * el siguiente cambio.
+ *
+ * Los movimientos de stock toman el lock en modo COMPARTIDO: no se
+ * bloquean entre sí (siguen siendo compare-and-set), solo esperan a
+ * que termine un alta/modificación/baja en curso.
+ *
+ * PERSISTENCIA:
+ * =============
+ *
+ * Cada cambio se registra en ProductRepository (WAL por defecto) DENTRO
+ * del lock, así el orden del log coincide con el del mapa: un PUT de un
+ * admin nunca queda en el log antes que un movimiento de stock que en
+ * memoria ocurrió antes. La espera del fsync es FUERA del lock (group
+ * commit: muchas reservas concurrentes comparten un solo fsync).
+ *
+ * El stock se registra como delta (-3, +2): los movimientos concurrentes
+ * conmutan y el replay da el mismo resultado en cualquier orden. Quien
+ * mueve el stock decide el registro (StockLog): las reservas escriben
+ * el delta y su propio cambio de estado en UN registro, así nunca queda
+ * en disco uno sin el otro.
+ *
+ * Al arrancar, el catálogo se reconstruye desde el repositorio. Solo en
+ * el primer arranque se crean los productos de ejemplo.
+ */
+@Service
+public class ProductCatalog {
+
+    /**
+     * Página de productos.
+     *
+     * @param items Productos de la página (ordenados por ID)
+     * @param nextAfterId ID desde el que pedir la siguiente página (null si es la última)
+     */
+    public record Page(List<ProductDTO> items, Long nextAfterId) {}
+
+    /**
+     * Registro en el log de un movimiento de stock. Se llama DENTRO del
+     * lock, después del compare-and-set: el orden del log coincide con
+     * el del mapa.
+     */
+    @FunctionalInterface
+    public interface StockLog {
+        CompletableFuture<Void> append(ProductDTO product, int delta);
+    }
+
+    /**
+     * Resultado de un movimiento de stock.
+     *
+     * @param product Producto actualizado (null si ya no existe)
+     * @param durable Se completa cuando el movimiento está en disco
+     */
+    public record StockChange(ProductDTO product, CompletableFuture<Void> durable) {}
+
+    // Ordenado por ID: listados estables (snapshot JSON, paginación)
+    private final ConcurrentNavigableMap<Long, ProductDTO> products = new ConcurrentSkipListMap<>();
+
+    // Se incrementa DESPUÉS de cada cambio (ver ProductCatalogSnapshot)
+    private final AtomicLong version = new AtomicLong();
+
+    // Productos con stock > 0, al día con cada cambio: countInStock() sin recorrer el mapa
+    private final AtomicLong inStock = new AtomicLong();
+
+    private final List<ProductCatalogListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Escritura: altas/modificaciones/bajas. Lectura (compartido): movimientos de stock.
+    // Ver ALTAS, MODIFICACIONES Y BAJAS.
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final ProductRepository repository;
+    private final SnowflakeIdGenerator idGenerator;
+
+    public ProductCatalog(ProductRepository repository, SnowflakeIdGenerator idGenerator) {
+        this.repository = repository;
+        this.idGenerator = idGenerator;
+
+        if (repository.isNew()) {
+            // Primer arranque: inicializar con algunos productos (y persistirlos).
+            // IDs fijos 1 y 2 (los de los ejemplos); siempre menores a los generados
+            seed(ProductDTO.builder()
+                .id(1L)
+                .name("Laptop")
+                .description("High-performance laptop")
+                .price(new BigDecimal("999.99"))
+                .stock(10)
+                .build());
+
+            seed(ProductDTO.builder()
+                .id(2L)
+                .name("Mouse")
+                .description("Wireless mouse")
+                .price(new BigDecimal("29.99"))
+                .stock(50)
+                .build());
+            return;
+        }
+
+        // Estado recuperado del repositorio (WAL)
+        long maxId = 0;
+        for (ProductDTO product : repository.loadAll()) {
+            products.put(product.getId(), product);
+            stockChanged(null, product);
+            maxId = Math.max(maxId, product.getId());
+        }
+        idGenerator.advancePast(maxId);
+    }
+
+    private void seed(ProductDTO product) {
+        products.put(product.getId(), product);
+        stockChanged(null, product);
+        awaitDurable(repository.save(product));
+        version.incrementAndGet();
+    }
+
+    /**
+     * Registra un listener de altas, modificaciones y bajas
+     * y le notifica los productos que ya existen.
+     */
+    public void addListener(ProductCatalogListener listener) {
+        lock.writeLock().lock();
+        try {
+            listeners.add(listener);
+            for (Long id : products.keySet()) {
+                listener.onProductChanged(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<ProductDTO> findAll() {
+        return new ArrayList<>(products.values());
+    }
+
+    /**
+     * Página de productos en orden de ID, a partir de un ID (exclusivo).
+     *
+     * Cuesta O(log n + productos recorridos): sin filtro, O(log n + limit).
+     *
+     * @param afterId Último ID de la página anterior (null = desde el principio)
+     * @param limit Tamaño máximo de la página
+     * @param filter Filtro a aplicar
+     * @return Página (nextAfterId es null si no hay más resultados)
+     */
+    public Page findPage(Long afterId, int limit, Predicate<ProductDTO> filter) {
+        NavigableMap<Long, ProductDTO> remaining = afterId == null ? products : products.tailMap(afterId, false);
+
+        List<ProductDTO> items = new ArrayList<>(Math.min(limit, 64));
+        for (ProductDTO product : remaining.values()) {
+            if (!filter.test(product)) {
+                continue;
+            }
+            if (items.size() == limit) {
+                // Hay al menos uno más → existe página siguiente
+                return new Page(items, items.get(items.size() - 1).getId());
+            }
+            items.add(product);
+        }
+        return new Page(items, null);
+    }
+
+    /**
+     * Cantidad de productos con stock > 0: O(1), se mantiene con cada cambio.
+     */
+    public long countInStock() {
+        return inStock.get();
+    }
+
+    public Optional<ProductDTO> findById(Long id) {
+        return Optional.ofNullable(products.get(id));
+    }
+
+    /**
+     * Varios productos por ID, en el orden pedido.
+     *
+     * Los IDs repetidos se devuelven una sola vez y los inexistentes
+     * se omiten (el llamador compara contra lo que pidió).
+     */
+    public List<ProductDTO> findAllById(Collection<Long> ids) {
+        List<ProductDTO> found = new ArrayList<>(ids.size());
+        for (Long id : new LinkedHashSet<>(ids)) {
+            ProductDTO product = products.get(id);
+            if (product != null) {
+                found.add(product);
+            }
+        }
+        return found;
+    }
+
+    public ProductDTO getById(Long id) {
+        return findById(id).orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
+    }
+
+    public int size() {
+        return products.size();
+    }
+
+    /**
+     * Versión del catálogo. Se incrementa después de aplicar cada cambio,
+     * así una vista construida tras leer version() = N refleja, como
+     * mínimo, todos los cambios hasta N.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    public ProductDTO create(ProductDTO product) {
+        ProductDTO stored;
+        CompletableFuture<Void> durable;
+
+        lock.writeLock().lock();
+        try {
+            Long id = idGenerator.nextId();  // Único en el cluster (SnowflakeIdGenerator)
+            stored = product.toBuilder().id(id).build();
+            products.put(id, stored);
+            stockChanged(null, stored);
+            durable = repository.save(stored);
+            version.incrementAndGet();
+            notifyChanged(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        awaitDurable(durable);
+        return stored;
+    }
+
+    public ProductDTO update(Long id, ProductDTO product) {
+        ProductDTO stored = product.toBuilder().id(id).build();
+        CompletableFuture<Void> durable;
+
+        lock.writeLock().lock();
+        try {
+            ProductDTO previous = products.replace(id, stored);
+            if (previous == null) {
+                throw new ResourceNotFoundException("Product", "id", id);
+            }
+            stockChanged(previous, stored);
+            durable = repository.save(stored);
+            version.incrementAndGet();
+            notifyChanged(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        awaitDurable(durable);
+        return stored;
+    }
+
+    public ProductDTO delete(Long id) {
+        ProductDTO removed;
+        CompletableFuture<Void> durable;
+
+        lock.writeLock().lock();
+        try {
+            removed = products.remove(id);
+            if (removed == null) {
+                throw new ResourceNotFoundException("Product", "id", id);
+            }
+            stockChanged(removed, null);
+            durable = repository.delete(id);
+            version.incrementAndGet();
+            notifyChanged(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        awaitDurable(durable);
+        return removed;
+    }
+
+    /**
+     * Descuenta stock de forma atómica (compare-and-set).
+     *
+     * El movimiento lo registra stockLog DENTRO del lock (ej: junto con la
+     * reserva que lo causa, en un solo registro). NO espera el disco: el
+     * llamador espera StockChange.durable() con awaitDurable(), fuera de
+     * sus propios locks.
+     *
+     * @param id ID del producto
+     * @param quantity Cantidad a descontar
+     * @param stockLog Registro del movimiento (delta = -quantity)
+     * @return Producto con el stock ya descontado
+     * @throws ResourceNotFoundException si el producto no existe
+     * @throws InsufficientStockException si el stock no alcanza
+     */
+    public StockChange decrementStock(Long id, int quantity, StockLog stockLog) {
+        lock.readLock().lock();
+        try {
+            while (true) {
+                ProductDTO current = getById(id);
+                int available = stockOf(current);
+
+                if (available < quantity) {
+                    throw new InsufficientStockException(id, quantity, available);
+                }
+
+                ProductDTO updated = current.toBuilder().stock(available - quantity).build();
+                if (products.replace(id, current, updated)) {
+                    stockChanged(current, updated);
+                    version.incrementAndGet();
+                    return new StockChange(updated, stockLog.append(updated, -quantity));
+                }
+                // Otro hilo modificó el producto → reintentar con el valor nuevo
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve stock de forma atómica (compare-and-set).
+     *
+     * stockLog se llama SIEMPRE, una vez: si el producto ya no existe, con
+     * product = null (la reserva que devolvía el stock igual se registra).
+     *
+     * @param id ID del producto
+     * @param quantity Cantidad a devolver
+     * @param stockLog Registro del movimiento (delta = +quantity)
+     * @return Producto actualizado (null si el producto ya no existe)
+     */
+    public StockChange incrementStock(Long id, int quantity, StockLog stockLog) {
+        lock.readLock().lock();
+        try {
+            while (true) {
+                ProductDTO current = products.get(id);
+                if (current == null) {
+                    return new StockChange(null, stockLog.append(null, quantity));
+                }
+
+                ProductDTO updated = current.toBuilder().stock(stockOf(current) + quantity).build();
+                if (products.replace(id, current, updated)) {
+                    stockChanged(current, updated);
+                    version.incrementAndGet();
+                    return new StockChange(updated, stockLog.append(updated, quantity));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Espera (fuera del lock) a que el cambio esté en disco.
+     *
+     * Si falla, el cambio ya está aplicado en memoria pero no persistido:
+     * se informa como error 500 y en el próximo arranque manda el log.
+     */
+    static void awaitDurable(CompletableFuture<Void> durable) {
+        try {
+            durable.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("No se pudo persistir el cambio del catálogo", e.getCause());
+        }
+    }
+
+    private void notifyChanged(Long id) {
+        for (ProductCatalogListener listener : listeners) {
+            listener.onProductChanged(id);
+        }
+    }
+
+    /**
+     * Mantiene inStock: llamar después de cada cambio en el mapa (null = no existía / ya no existe).
+     */
+    private void stockChanged(ProductDTO before, ProductDTO after) {
+        int delta = (isInStock(after) ? 1 : 0) - (isInStock(before) ? 1 : 0);
+        if (delta != 0) {
+            inStock.addAndGet(delta);
+        }
+    }
+
+    private static boolean isInStock(ProductDTO product) {
+        return product != null && stockOf(product) > 0;
+    }
+
+    private static int stockOf(ProductDTO product) {
+        return product.getStock() != null ? product.getStock() : 0;
+    }
+}
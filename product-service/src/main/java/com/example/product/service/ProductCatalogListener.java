@@ -0,0 +1,25 @@
+package com.example.product.service;
+
+/**
+ * Listener de cambios del catálogo
+ *
+ * Lo implementan las vistas derivadas del catálogo que se actualizan
+ * de forma incremental (ej: índice de búsqueda).
+ *
+ * Se notifica DESPUÉS de aplicar un alta, modificación o baja, en el
+ * hilo que hizo el cambio y dentro del lock de escritura del catálogo:
+ * las notificaciones llegan en el mismo orden que los cambios.
+ * Los movimientos de stock NO se notifican (son muy frecuentes y no
+ * cambian nombre, descripción ni precio).
+ *
+ * Solo se pasa el ID: el listener relee el producto del catálogo.
+ * Al registrarse (addListener) recibe una notificación por cada
+ * producto existente.
+ */
+public interface ProductCatalogListener {
+
+    /**
+     * @param productId ID del producto creado, modificado o eliminado
+     */
+    void onProductChanged(Long productId);
+}
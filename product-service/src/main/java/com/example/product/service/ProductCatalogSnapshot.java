@@ -0,0 +1,170 @@
+package com.example.product.service;
+
+import com.example.product.dto.ProductDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Snapshot JSON pre-serializado del catálogo
+ *
+ * ⭐ GET /products SIN COPIAR NI RE-SERIALIZAR EL CATÁLOGO ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * ~95% del tráfico de productos es GET /products. En cada request:
+ * - Se copiaban todos los productos a un ArrayList nuevo
+ * - Jackson volvía a serializar TODO el catálogo
+ * ...aunque el catálogo no hubiera cambiado desde el request anterior.
+ *
+ * SOLUCIÓN:
+ * =========
+ *
+ * Se guarda el JSON ya codificado (byte[]) junto con su ETag:
+ *
+ *   Snapshot { version, json: [{...},{...}], etag: "a1B2c3..." }
+ *
+ * - Catálogo sin cambios → se devuelven los MISMOS bytes (O(1))
+ * - Cliente con If-None-Match igual al ETag → 304 sin body
+ *
+ * RECONSTRUCCIÓN INCREMENTAL:
+ * ===========================
+ *
+ * Los ProductDTO del catálogo son inmutables (cada cambio es una copia),
+ * así que "¿cambió este producto?" es una comparación de REFERENCIAS.
+ * Al reconstruir, solo se serializan los productos cuya instancia cambió;
+ * el resto reutiliza sus bytes. Luego se concatenan los fragmentos.
+ *
+ * La reconstrucción es perezosa: una ráfaga de cambios (ej: reservas de
+ * stock) cuesta UNA reconstrucción en la siguiente lectura, no una por cambio.
+ *
+ * ETAG FUERTE:
+ * ============
+ * Hash SHA-256 del contenido (no la versión): dos instancias de Product
+ * Service con el mismo catálogo devuelven el mismo ETag.
+ */
+@Service
+public class ProductCatalogSnapshot {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCatalogSnapshot.class);
+
+    /**
+     * Snapshot inmutable. Los bytes NO deben modificarse.
+     *
+     * @param version Versión del catálogo al construirlo
+     * @param json Catálogo completo codificado como array JSON
+     * @param etag ETag fuerte (con comillas, listo para el header)
+     * @param size Cantidad de productos
+     */
+    public record Snapshot(long version, byte[] json, String etag, int size) {}
+
+    /**
+     * Fragmento JSON de un producto, atado a la instancia que lo generó.
+     */
+    private record Fragment(ProductDTO source, byte[] json) {}
+
+    private final ProductCatalog catalog;
+    private final ObjectMapper objectMapper;
+
+    private volatile Snapshot current = new Snapshot(-1, new byte[0], "", 0);
+    private Map<Long, Fragment> fragments = new HashMap<>();  // Solo se toca dentro de rebuild()
+
+    // No synchronized: rebuild() espera el lock de lectura del catálogo y,
+    // con hilos virtuales, esperar dentro de synchronized fija el hilo de plataforma
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    public ProductCatalogSnapshot(ProductCatalog catalog, ObjectMapper objectMapper) {
+        this.catalog = catalog;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Snapshot actualizado del catálogo (lo reconstruye si hubo cambios).
+     */
+    public Snapshot get() {
+        Snapshot snapshot = current;
+        if (snapshot.version() == catalog.version()) {
+            return snapshot;
+        }
+        rebuildLock.lock();
+        try {
+            return rebuild();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Debe llamarse con rebuildLock tomado.
+     */
+    private Snapshot rebuild() {
+        // Leer la versión ANTES que los productos: el snapshot refleja
+        // como mínimo esa versión (si llega otro cambio, se reconstruye de nuevo)
+        long version = catalog.version();
+        if (current.version() == version) {
+            return current;  // Otro hilo ya lo reconstruyó
+        }
+
+        List<ProductDTO> products = catalog.findAll();
+        Map<Long, Fragment> nextFragments = new HashMap<>(products.size() * 2);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, current.json().length));
+        int reencoded = 0;
+
+        out.write('[');
+        for (ProductDTO product : products) {
+            Fragment fragment = fragments.get(product.getId());
+            if (fragment == null || fragment.source() != product) {
+                fragment = new Fragment(product, encode(product));
+                reencoded++;
+            }
+            nextFragments.put(product.getId(), fragment);
+
+            if (nextFragments.size() > 1) {
+                out.write(',');
+            }
+            out.writeBytes(fragment.json());
+        }
+        out.write(']');
+
+        byte[] json = out.toByteArray();
+        Snapshot snapshot = new Snapshot(version, json, etagOf(json), products.size());
+
+        fragments = nextFragments;
+        current = snapshot;
+
+        log.debug("Snapshot del catálogo reconstruido - Versión: {}, Productos: {}, Re-serializados: {}, Bytes: {}",
+            version, products.size(), reencoded, json.length);
+
+        return snapshot;
+    }
+
+    private byte[] encode(ProductDTO product) {
+        try {
+            return objectMapper.writeValueAsBytes(product);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el producto " + product.getId(), e);
+        }
+    }
+
+    private static String etagOf(byte[] json) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(json);
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(hash) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 es obligatorio en toda JVM
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.product.service;
+
+import com.example.product.dto.ProductChangeEvent;
+import com.example.product.dto.ProductChangeType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClient;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publicador del feed de cambios de productos
+ *
+ * ⭐ PUSH DE INVALIDACIONES A LOS SERVICIOS QUE CACHEAN PRODUCTOS ⭐
+ *
+ * ¿POR QUÉ?
+ * =========
+ *
+ * Order Service cachea nombre y precio de los productos (cambian poco).
+ * Sin invalidación, un cambio de precio tardaría hasta el TTL de la
+ * caché en verse. Con push, se ve en milisegundos.
+ *
+ * ¿CÓMO FUNCIONA?
+ * ===============
+ *
+ * 1. Admin → PUT/DELETE /products/{id}
+ * 2. ProductController aplica el cambio y llama a publish()
+ * 3. Se buscan las instancias de cada suscriptor en Eureka (DiscoveryClient)
+ * 4. POST {instancia}/api/internal/product-changes a CADA instancia
+ *    - Con el JWT del admin que hizo el cambio
+ *    - En segundo plano: el PUT/DELETE del admin no espera
+ *
+ * SI FALLA EL PUSH:
+ * =================
+ * Solo se loguea. El TTL de la caché del suscriptor es la red de
+ * seguridad: en el peor caso, el dato viejo dura hasta que expira.
+ */
+@Service
+public class ProductChangePublisher implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductChangePublisher.class);
+
+    private final DiscoveryClient discoveryClient;
+    private final RestClient restClient;
+    private final ExecutorService executor;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Value("${products.change-feed.enabled:true}")
+    private boolean enabled;
+
+    @Value("${products.change-feed.subscribers:order-service}")
+    private List<String> subscribers;
+
+    @Value("${products.change-feed.path:/api/internal/product-changes}")
+    private String path;
+
+    public ProductChangePublisher(
+        DiscoveryClient discoveryClient,
+        @Value("${products.change-feed.timeout-ms:2000}") int timeoutMs,
+        @Value("${products.change-feed.queue-capacity:1000}") int queueCapacity
+    ) {
+        this.discoveryClient = discoveryClient;
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeoutMs);
+        requestFactory.setReadTimeout(timeoutMs);
+        this.restClient = RestClient.builder().requestFactory(requestFactory).build();
+
+        // Un solo hilo: los eventos salen en el mismo orden en que ocurrieron
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "product-change-feed");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Publica un cambio de producto a todos los suscriptores.
+     *
+     * Debe llamarse desde el hilo del request: toma de ahí el JWT
+     * que se reenvía a los suscriptores.
+     *
+     * @param productId ID del producto modificado
+     * @param type Tipo de cambio
+     */
+    public void publish(Long productId, ProductChangeType type) {
+        if (!enabled) {
+            return;
+        }
+
+        ProductChangeEvent event = ProductChangeEvent.builder()
+            .productId(productId)
+            .type(type)
+            .sequence(sequence.incrementAndGet())
+            .occurredAt(Instant.now())
+            .build();
+
+        String authorization = currentAuthorization();
+
+        try {
+            executor.execute(() -> deliver(event, authorization));
+        } catch (RejectedExecutionException e) {
+            log.warn("Cola del feed de cambios llena - Evento descartado: {} {}", type, productId);
+        }
+    }
+
+    private void deliver(ProductChangeEvent event, String authorization) {
+        for (String subscriber : subscribers) {
+            for (ServiceInstance instance : discoveryClient.getInstances(subscriber)) {
+                try {
+                    restClient.post()
+                        .uri(instance.getUri().resolve(path))
+                        .headers(headers -> {
+                            if (authorization != null) {
+                                headers.set(HttpHeaders.AUTHORIZATION, authorization);
+                            }
+                        })
+                        .body(event)
+                        .retrieve()
+                        .toBodilessEntity();
+
+                    log.debug("Cambio de producto enviado - {} {} → {} ({})",
+                        event.getType(), event.getProductId(), subscriber, instance.getUri());
+                } catch (RuntimeException e) {
+                    log.warn("No se pudo enviar cambio de producto {} {} a {} ({}): {}",
+                        event.getType(), event.getProductId(), subscriber, instance.getUri(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static String currentAuthorization() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication instanceof JwtAuthenticationToken jwtAuthentication) {
+            return "Bearer " + jwtAuthentication.getToken().getTokenValue();
+        }
+        return null;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
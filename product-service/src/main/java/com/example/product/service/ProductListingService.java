@@ -0,0 +1,293 @@
+package com.example.product.service;
+
+import com.example.product.dto.ProductDTO;
+import com.example.product.dto.ProductListQuery;
+import com.example.product.exception.BadRequestException;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Listado de productos con paginación, filtros y proyección
+ *
+ * ⭐ GET /products SIN DEVOLVER SIEMPRE EL CATÁLOGO COMPLETO ⭐
+ *
+ * PAGINACIÓN POR CURSOR:
+ * ======================
+ *
+ *   GET /products?limit=20
+ *   → 20 productos + X-Next-Cursor + X-Page-Number: 1 + X-Total-Count
+ *
+ *   GET /products?limit=20&cursor={X-Next-Cursor}
+ *   → los 20 siguientes, en O(log n + 20) (tailMap sobre el orden por ID)
+ *
+ * El orden por ID es ESTABLE: altas y bajas entre páginas no hacen que
+ * un producto aparezca dos veces ni que se salte uno existente.
+ * El cursor es opaco (Base64 de "página:último ID[:último precio][/total]").
+ *
+ * X-TOTAL-COUNT:
+ * ==============
+ *
+ * Sin filtros o con inStock=true, el total es O(1) (ProductCatalog
+ * mantiene los contadores). Con filtro de precio hay que recorrer el
+ * rango: se cuenta UNA vez, en la primera página, y viaja en el cursor.
+ * Las páginas siguientes repiten ese total aunque el catálogo cambie
+ * mientras tanto.
+ *
+ * FILTROS Y ORDEN:
+ * ================
+ *
+ *   minPrice / maxPrice → rango de precio (inclusive)
+ *   inStock=true        → solo stock > 0
+ *   sort=price / -price → por precio (ascendente / descendente)
+ *
+ * Con sort=price, o con filtros de precio, se usa ProductPriceIndex:
+ * el rango se recorre en O(log n + k) en vez de escanear el catálogo.
+ *
+ * sort=id con filtro de precio elige el recorrido más barato:
+ * - Rango angosto → el índice de precios (k claves), ordenado por ID
+ * - Rango ancho → el catálogo por ID: la página se llena enseguida
+ * El índice se recorre hasta √((limit + 1) × n) claves; si el rango
+ * tiene más, se pasa al catálogo (al menos esa fracción del catálogo
+ * cae en el rango). Peor caso O(√(limit × n)) en vez de O(n).
+ *
+ * PROYECCIÓN:
+ * ===========
+ *
+ *   fields=id,name,price → solo esos campos (no se serializan descripciones)
+ */
+@Service
+public class ProductListingService {
+
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private static final Map<String, Function<ProductDTO, Object>> FIELDS = new LinkedHashMap<>();
+
+    static {
+        // Como string, igual que ProductDTO.id (ver SnowflakeIdGenerator)
+        FIELDS.put("id", product -> Objects.toString(product.getId(), null));
+        FIELDS.put("name", ProductDTO::getName);
+        FIELDS.put("description", ProductDTO::getDescription);
+        FIELDS.put("price", ProductDTO::getPrice);
+        FIELDS.put("stock", ProductDTO::getStock);
+    }
+
+    /**
+     * Resultado de un listado.
+     *
+     * @param items Productos (ProductDTO, o Map si se pidió proyección)
+     * @param nextCursor Cursor de la siguiente página (null si es la última)
+     * @param pageNumber Número de página (desde 1)
+     * @param totalCount Total de productos que cumplen los filtros
+     */
+    public record Listing(List<?> items, String nextCursor, int pageNumber, long totalCount) {}
+
+    private final ProductCatalog catalog;
+    private final ProductPriceIndex priceIndex;
+
+    public ProductListingService(ProductCatalog catalog, ProductPriceIndex priceIndex) {
+        this.catalog = catalog;
+        this.priceIndex = priceIndex;
+    }
+
+    /**
+     * Lista productos según la query.
+     *
+     * @throws BadRequestException si algún parámetro no es válido
+     */
+    public Listing list(ProductListQuery query) {
+        Sort sort = Sort.of(query.getSort());
+        validatePriceRange(query);
+        Predicate<ProductDTO> stockFilter = Boolean.TRUE.equals(query.getInStock())
+            ? product -> product.getStock() != null && product.getStock() > 0
+            : product -> true;
+        Set<String> fields = parseFields(query.getFields());
+
+        int limit = query.getLimit() != null ? query.getLimit() : Integer.MAX_VALUE;
+        if (query.getLimit() != null && (limit < 1 || limit > MAX_PAGE_SIZE)) {
+            throw new BadRequestException("limit debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
+
+        Cursor cursor = query.getCursor() != null ? Cursor.decode(query.getCursor(), sort) : Cursor.FIRST;
+        boolean priceFiltered = query.getMinPrice() != null || query.getMaxPrice() != null;
+
+        List<ProductDTO> items;
+        Long nextAfterId = null;
+        BigDecimal nextAfterPrice = null;
+
+        if (sort == Sort.ID) {
+            // Orden por ID: rango angosto → índice de precios; si no, tailMap del catálogo
+            ProductCatalog.Page page = priceFiltered
+                ? priceIndex.findPageById(query.getMinPrice(), query.getMaxPrice(), cursor.afterId(), limit,
+                    stockFilter, indexScanBudget(limit))
+                : null;
+            if (page == null) {
+                page = catalog.findPage(cursor.afterId(), limit, priceFilter(query).and(stockFilter));
+            }
+            items = page.items();
+            nextAfterId = page.nextAfterId();
+        } else {
+            // Orden por precio: rango del índice de precios
+            ProductPriceIndex.PriceKey after = cursor.afterId() != null
+                ? new ProductPriceIndex.PriceKey(cursor.afterPrice(), cursor.afterId())
+                : null;
+            ProductPriceIndex.Page page = priceIndex.findPage(query.getMinPrice(), query.getMaxPrice(),
+                sort == Sort.PRICE_DESC, after, limit, stockFilter);
+            items = page.items();
+            if (page.last() != null) {
+                nextAfterId = page.last().id();
+                nextAfterPrice = page.last().price();
+            }
+        }
+
+        long total;
+        if (priceFiltered) {
+            // O(k): solo en la primera página, las siguientes lo traen en el cursor
+            total = cursor.total() != null
+                ? cursor.total()
+                : priceIndex.count(query.getMinPrice(), query.getMaxPrice(), stockFilter);
+        } else if (Boolean.TRUE.equals(query.getInStock())) {
+            total = catalog.countInStock();
+        } else {
+            total = catalog.size();
+        }
+
+        String nextCursor = nextAfterId != null
+            ? new Cursor(cursor.page() + 1, nextAfterId, nextAfterPrice, priceFiltered ? total : null).encode()
+            : null;
+
+        return new Listing(project(items, fields), nextCursor, cursor.page(), total);
+    }
+
+    /**
+     * Claves del índice de precios a recorrer antes de pasar al catálogo:
+     * con más de √((limit + 1) × n) claves en el rango, el recorrido por ID
+     * llena la página en menos de √((limit + 1) × n) productos.
+     */
+    private long indexScanBudget(int limit) {
+        return Math.max(64, (long) Math.sqrt(((double) limit + 1) * catalog.size()));
+    }
+
+    private static void validatePriceRange(ProductListQuery query) {
+        if (query.getMinPrice() != null && query.getMaxPrice() != null
+            && query.getMinPrice().compareTo(query.getMaxPrice()) > 0) {
+            throw new BadRequestException("minPrice no puede ser mayor que maxPrice");
+        }
+    }
+
+    private static Predicate<ProductDTO> priceFilter(ProductListQuery query) {
+        Predicate<ProductDTO> filter = product -> true;
+        if (query.getMinPrice() != null) {
+            filter = filter.and(product -> product.getPrice() != null
+                && product.getPrice().compareTo(query.getMinPrice()) >= 0);
+        }
+        if (query.getMaxPrice() != null) {
+            filter = filter.and(product -> product.getPrice() != null
+                && product.getPrice().compareTo(query.getMaxPrice()) <= 0);
+        }
+        return filter;
+    }
+
+    private static Set<String> parseFields(String fields) {
+        if (fields == null) {
+            return null;
+        }
+
+        Set<String> parsed = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!FIELDS.containsKey(name)) {
+                throw new BadRequestException("Campo desconocido: " + name + ". Válidos: " + FIELDS.keySet());
+            }
+            parsed.add(name);
+        }
+
+        if (parsed.isEmpty()) {
+            throw new BadRequestException("fields no puede estar vacío");
+        }
+        return parsed;
+    }
+
+    private static List<?> project(List<ProductDTO> products, Set<String> fields) {
+        if (fields == null) {
+            return products;
+        }
+
+        List<Map<String, Object>> projected = new ArrayList<>(products.size());
+        for (ProductDTO product : products) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (String field : fields) {
+                values.put(field, FIELDS.get(field).apply(product));
+            }
+            projected.add(values);
+        }
+        return projected;
+    }
+
+    /**
+     * Orden del listado.
+     */
+    private enum Sort {
+        ID, PRICE, PRICE_DESC;
+
+        static Sort of(String sort) {
+            if (sort == null || sort.equals("id")) {
+                return ID;
+            }
+            if (sort.equals("price")) {
+                return PRICE;
+            }
+            if (sort.equals("-price")) {
+                return PRICE_DESC;
+            }
+            throw new BadRequestException("sort inválido: " + sort + ". Válidos: id, price, -price");
+        }
+    }
+
+    /**
+     * Cursor opaco: Base64url de "página:último ID" (orden por ID)
+     * o "página:último ID:último precio" (orden por precio), más
+     * "/total" si el total se contó recorriendo un rango de precios.
+     */
+    private record Cursor(int page, Long afterId, BigDecimal afterPrice, Long total) {
+
+        static final Cursor FIRST = new Cursor(1, null, null, null);
+
+        String encode() {
+            String raw = page + ":" + afterId + (afterPrice != null ? ":" + afterPrice.toPlainString() : "")
+                + (total != null ? "/" + total : "");
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        static Cursor decode(String cursor, Sort sort) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+                int slash = raw.indexOf('/');
+                Long total = slash >= 0 ? Long.parseLong(raw.substring(slash + 1)) : null;
+                String[] parts = (slash >= 0 ? raw.substring(0, slash) : raw).split(":");
+                int expectedParts = sort == Sort.ID ? 2 : 3;
+                int page = Integer.parseInt(parts[0]);
+                if (parts.length != expectedParts || page < 2 || (total != null && total < 0)) {
+                    throw new BadRequestException("Cursor inválido: " + cursor);
+                }
+                return new Cursor(page, Long.parseLong(parts[1]), sort == Sort.ID ? null : new BigDecimal(parts[2]), total);
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Cursor inválido: " + cursor);
+            }
+        }
+    }
+}
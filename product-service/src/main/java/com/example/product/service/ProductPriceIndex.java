@@ -0,0 +1,224 @@
+package com.example.product.service;
+
+import com.example.product.dto.ProductDTO;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+
+/**
+ * Índice ordenado por precio
+ *
+ * ⭐ RANGOS DE PRECIO EN O(log n + k) ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * GET /products?minPrice=10&maxPrice=100&sort=price recorría TODO el
+ * catálogo, filtraba y ordenaba: O(n log n) aunque coincidieran 3 productos.
+ *
+ * SOLUCIÓN:
+ * =========
+ *
+ * Un ConcurrentSkipListSet de claves (precio, id), en paralelo al mapa
+ * de productos:
+ *
+ *   (29.99, 2) → (999.99, 1) → ...
+ *
+ * - Rango de precios = subSet(min, max): O(log n) para ubicarse
+ * - Recorrerlo en orden (o al revés) = O(k) resultados
+ * - El id desempata precios iguales y hace el orden estable (cursor)
+ * - Rango de precios ordenado por ID (sort=id) = recorrer el rango y
+ *   quedarse con los limit + 1 IDs menores: O(log n + k log limit)
+ *
+ * CONSISTENCIA:
+ * =============
+ *
+ * Es un ProductCatalogListener: el catálogo lo notifica dentro de su lock
+ * de escritura, así que los cambios se aplican en orden. Un cambio de
+ * precio MUEVE la entrada: primero se agrega la clave nueva, después se
+ * quita la vieja.
+ *
+ * Las lecturas no toman locks. Por eso cada clave se verifica contra el
+ * catálogo al leerla: si el precio del producto ya no coincide con el de
+ * la clave (entrada vieja a punto de quitarse) se ignora. Un producto
+ * nunca aparece dos veces ni con un precio que ya no tiene.
+ *
+ * Los productos sin precio no se indexan.
+ */
+@Service
+public class ProductPriceIndex implements ProductCatalogListener {
+
+    /**
+     * Clave del índice: precio, desempate por ID.
+     */
+    public record PriceKey(BigDecimal price, long id) implements Comparable<PriceKey> {
+
+        private static final Comparator<PriceKey> ORDER = Comparator
+            .comparing(PriceKey::price)
+            .thenComparingLong(PriceKey::id);
+
+        @Override
+        public int compareTo(PriceKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    /**
+     * Página ordenada por precio.
+     *
+     * @param items Productos de la página
+     * @param last Clave del último producto, si hay página siguiente (null si es la última)
+     */
+    public record Page(List<ProductDTO> items, PriceKey last) {}
+
+    private final ProductCatalog catalog;
+    private final NavigableSet<PriceKey> index = new ConcurrentSkipListSet<>();
+    private final Map<Long, PriceKey> keysById = new ConcurrentHashMap<>();
+
+    public ProductPriceIndex(ProductCatalog catalog) {
+        this.catalog = catalog;
+        catalog.addListener(this);  // ← Indexa los productos existentes
+    }
+
+    @Override
+    public void onProductChanged(Long productId) {
+        ProductDTO product = catalog.findById(productId).orElse(null);
+        PriceKey next = product != null && product.getPrice() != null
+            ? new PriceKey(product.getPrice(), productId)
+            : null;
+        PriceKey previous = next != null ? keysById.put(productId, next) : keysById.remove(productId);
+
+        if (next != null && (previous == null || previous.compareTo(next) != 0)) {
+            index.add(next);
+        }
+        if (previous != null && (next == null || previous.compareTo(next) != 0)) {
+            index.remove(previous);
+        }
+    }
+
+    /**
+     * Página de productos con precio en [min, max], ordenada por precio.
+     *
+     * @param min Precio mínimo (null = sin mínimo)
+     * @param max Precio máximo (null = sin máximo)
+     * @param descending true → del más caro al más barato
+     * @param after Última clave de la página anterior (null = primera página)
+     * @param limit Tamaño máximo de la página
+     * @param filter Filtro adicional (ej: en stock)
+     * @return Página
+     */
+    public Page findPage(BigDecimal min, BigDecimal max, boolean descending,
+                         PriceKey after, int limit, Predicate<ProductDTO> filter) {
+        NavigableSet<PriceKey> range = range(min, max, descending);
+        if (after != null) {
+            range = range.tailSet(after, false);
+        }
+
+        List<ProductDTO> items = new ArrayList<>(Math.min(limit, 64));
+        PriceKey lastKey = null;
+        for (PriceKey key : range) {
+            ProductDTO product = current(key);
+            if (product == null || !filter.test(product)) {
+                continue;
+            }
+            if (items.size() == limit) {
+                // Hay al menos uno más → existe página siguiente
+                return new Page(items, lastKey);
+            }
+            items.add(product);
+            lastKey = key;
+        }
+        return new Page(items, null);
+    }
+
+    /**
+     * Página de productos con precio en [min, max], ordenada por ID.
+     *
+     * Recorre el rango de precios (k claves) y se queda con los limit + 1
+     * IDs menores después de "afterId". Conviene si el rango es angosto;
+     * si tiene más de "budget" claves devuelve null y el llamador recorre
+     * el catálogo por ID (un rango ancho llena la página enseguida).
+     *
+     * @param afterId Último ID de la página anterior (null = primera página)
+     * @param limit Tamaño máximo de la página
+     * @param filter Filtro adicional (ej: en stock)
+     * @param budget Máximo de claves a recorrer
+     * @return Página, o null si el rango supera el presupuesto
+     */
+    public ProductCatalog.Page findPageById(BigDecimal min, BigDecimal max, Long afterId, int limit,
+                                            Predicate<ProductDTO> filter, long budget) {
+        TreeMap<Long, ProductDTO> smallest = new TreeMap<>();
+        long keep = (long) limit + 1;  // Uno más → se sabe si hay página siguiente
+        long scanned = 0;
+
+        for (PriceKey key : range(min, max, false)) {
+            if (++scanned > budget) {
+                return null;
+            }
+            if ((afterId != null && key.id() <= afterId)
+                || (smallest.size() == keep && key.id() > smallest.lastKey())) {
+                continue;
+            }
+            ProductDTO product = current(key);
+            if (product == null || !filter.test(product)) {
+                continue;
+            }
+            smallest.put(key.id(), product);
+            if (smallest.size() > keep) {
+                smallest.pollLastEntry();
+            }
+        }
+
+        List<ProductDTO> items = new ArrayList<>(smallest.values());
+        if (items.size() > limit) {
+            items.remove(limit);
+            return new ProductCatalog.Page(items, items.get(limit - 1).getId());
+        }
+        return new ProductCatalog.Page(items, null);
+    }
+
+    /**
+     * Cantidad de productos con precio en [min, max] que cumplen el filtro: O(log n + k).
+     */
+    public long count(BigDecimal min, BigDecimal max, Predicate<ProductDTO> filter) {
+        long count = 0;
+        for (PriceKey key : range(min, max, false)) {
+            ProductDTO product = current(key);
+            if (product != null && filter.test(product)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private NavigableSet<PriceKey> range(BigDecimal min, BigDecimal max, boolean descending) {
+        NavigableSet<PriceKey> range = index;
+        if (min != null) {
+            range = range.tailSet(new PriceKey(min, Long.MIN_VALUE), true);
+        }
+        if (max != null) {
+            range = range.headSet(new PriceKey(max, Long.MAX_VALUE), true);
+        }
+        return descending ? range.descendingSet() : range;
+    }
+
+    /**
+     * Producto actual de una clave, o null si la clave quedó vieja.
+     */
+    private ProductDTO current(PriceKey key) {
+        ProductDTO product = catalog.findById(key.id()).orElse(null);
+        if (product == null || product.getPrice() == null || product.getPrice().compareTo(key.price()) != 0) {
+            return null;
+        }
+        return product;
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.product.service;
+
+import com.example.product.dto.ProductDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido para búsqueda de productos
+ *
+ * ⭐ BÚSQUEDA SIN RECORRER TODO EL CATÁLOGO ⭐
+ *
+ * ESTRUCTURA:
+ * ===========
+ *
+ *   término → { productId → peso }
+ *
+ *   "laptop"   → { 1 → 3 }
+ *   "wireless" → { 2 → 1 }
+ *   "mouse"    → { 2 → 3 }
+ *
+ * Los términos están ORDENADOS (TreeMap): una búsqueda por prefijo
+ * ("lap") es un rango [lap, lap￿], sin recorrer el vocabulario.
+ *
+ * TOKENIZACIÓN:
+ * =============
+ * - Minúsculas y sin acentos ("Teléfono" → "telefono")
+ * - Se separa por todo lo que no sea letra o dígito
+ *
+ * RELEVANCIA:
+ * ===========
+ * Cada término de la query debe aparecer (AND). El score suma, por término:
+ *
+ *   peso × idf     con   peso = 3 por aparición en name, 1 en description
+ *                        idf  = log(1 + N / productos con el término)
+ *
+ * Las coincidencias por prefijo valen la mitad que las exactas.
+ *
+ * ACTUALIZACIÓN INCREMENTAL:
+ * ==========================
+ * Es un ProductCatalogListener: en cada alta/modificación/baja se
+ * quitan los términos viejos del producto y se agregan los nuevos.
+ * Costo proporcional al producto, no al catálogo.
+ */
+@Service
+public class ProductSearchIndex implements ProductCatalogListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private static final int NAME_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final double PREFIX_FACTOR = 0.5;
+    private static final int MIN_PREFIX_LENGTH = 2;
+
+    /**
+     * Resultado de búsqueda: ID y score (mayor = más relevante).
+     */
+    public record Hit(Long productId, double score) {}
+
+    private final ProductCatalog catalog;
+
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, Map<String, Integer>> documents = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ProductSearchIndex(ProductCatalog catalog) {
+        this.catalog = catalog;
+
+        catalog.addListener(this);  // ← Indexa los productos existentes
+
+        log.info("Índice de búsqueda inicializado - Productos: {}, Términos: {}", documents.size(), postings.size());
+    }
+
+    /**
+     * Reindexa un producto (o lo quita si ya no existe).
+     */
+    @Override
+    public void onProductChanged(Long productId) {
+        lock.writeLock().lock();
+        try {
+            ProductDTO product = catalog.findById(productId).orElse(null);
+            Map<String, Integer> terms = product != null ? termsOf(product) : Map.of();
+
+            Map<String, Integer> previous = documents.remove(productId);
+            if (previous != null) {
+                for (String term : previous.keySet()) {
+                    Map<Long, Integer> products = postings.get(term);
+                    products.remove(productId);
+                    if (products.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+
+            if (!terms.isEmpty()) {
+                documents.put(productId, terms);
+                terms.forEach((term, weight) ->
+                    postings.computeIfAbsent(term, t -> new HashMap<>()).put(productId, weight));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca productos que contengan TODOS los términos de la query.
+     *
+     * @param query Texto libre
+     * @param limit Máximo de resultados
+     * @return Resultados ordenados por relevancia (y por ID si empatan)
+     */
+    public List<Hit> search(String query, int limit) {
+        Set<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int totalDocuments = documents.size();
+            Map<Long, Double> scores = null;
+
+            for (String queryTerm : queryTerms) {
+                Map<Long, Double> termScores = scoreTerm(queryTerm, totalDocuments);
+
+                // AND: solo sobreviven los productos que ya coincidían
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    scores.replaceAll((id, score) -> score + termScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            return scores.entrySet().stream()
+                .map(entry -> new Hit(entry.getKey(), entry.getValue()))
+                .sorted(Comparator.comparingDouble(Hit::score).reversed().thenComparing(Hit::productId))
+                .limit(limit)
+                .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Score de cada producto para un término de la query
+     * (coincidencia exacta + coincidencias por prefijo).
+     */
+    private Map<Long, Double> scoreTerm(String queryTerm, int totalDocuments) {
+        Map<Long, Double> scores = new HashMap<>();
+
+        NavigableMap<String, Map<Long, Integer>> matches = queryTerm.length() >= MIN_PREFIX_LENGTH
+            ? postings.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, true)
+            : postings.subMap(queryTerm, true, queryTerm, true);
+
+        for (Map.Entry<String, Map<Long, Integer>> match : matches.entrySet()) {
+            Map<Long, Integer> products = match.getValue();
+            double idf = Math.log(1.0 + (double) totalDocuments / products.size());
+            double factor = match.getKey().equals(queryTerm) ? 1.0 : PREFIX_FACTOR;
+
+            products.forEach((productId, weight) ->
+                scores.merge(productId, weight * idf * factor, Double::sum));
+        }
+        return scores;
+    }
+
+    private static Map<String, Integer> termsOf(ProductDTO product) {
+        Map<String, Integer> terms = new HashMap<>();
+        for (String token : tokenize(product.getName())) {
+            terms.merge(token, NAME_WEIGHT, Integer::sum);
+        }
+        for (String token : tokenize(product.getDescription())) {
+            terms.merge(token, DESCRIPTION_WEIGHT, Integer::sum);
+        }
+        return terms;
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATOR.split(normalized.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
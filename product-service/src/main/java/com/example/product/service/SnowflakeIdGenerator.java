@@ -0,0 +1,182 @@
+package com.example.product.service;
+
+import com.netflix.appinfo.ApplicationInfoManager;
+import com.netflix.appinfo.InstanceInfo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generador de IDs ordenados por tiempo (estilo Snowflake)
+ *
+ * ⭐ IDS ÚNICOS ENTRE INSTANCIAS SIN COORDINACIÓN ⭐
+ *
+ * PROBLEMA:
+ * =========
+ *
+ * Cada instancia tenía su propio AtomicLong empezando en 1: con dos
+ * instancias del mismo servicio detrás de Eureka (órdenes, productos),
+ * ambas generan el ID 1, el 2... → IDs repetidos.
+ *
+ * SOLUCIÓN:
+ * =========
+ *
+ * El ID (64 bits, siempre positivo) combina:
+ *
+ *   [ 0 | 41 bits: ms desde 2024-01-01 | 10 bits: nodo | 12 bits: secuencia ]
+ *
+ * - Dos nodos distintos nunca generan el mismo ID (bits de nodo)
+ * - Dentro de un nodo, la secuencia distingue IDs del mismo milisegundo
+ *   (hasta 4096 por ms)
+ * - Ordenar por ID = ordenar por momento de creación
+ *   → rangos de IDs = rangos de tiempo
+ *
+ * NODO:
+ * =====
+ *
+ * Se toma de la metadata de la instancia en Eureka ("node-id", 0-1023).
+ * Si no está configurado, se deriva del instance-id (aleatorio) y se
+ * publica en la metadata: colisiones posibles (1 en 1024 por par de
+ * instancias), se avisa en el log. En producción, asignar NODE_ID.
+ *
+ * SIN CONTENCIÓN:
+ * ===============
+ *
+ * El estado (último ms, secuencias usadas) es un solo AtomicLong.
+ * nextBlock(n) reserva n IDs consecutivos con UN compare-and-set,
+ * sin locks: un batch de 500 IDs cuesta lo mismo que uno.
+ *
+ * MONOTONÍA:
+ * ==========
+ *
+ * Los IDs de un nodo nunca retroceden:
+ * - Si el reloj vuelve atrás (NTP), se sigue usando el último ms
+ * - Si se agota la secuencia del ms, se toma el ms siguiente
+ *   sin esperar (el reloj lógico se adelanta unos ms)
+ * - Al arrancar, advancePast() con el mayor ID persistido evita
+ *   repetir IDs si el reloj quedó atrás entre reinicios
+ *
+ * JSON:
+ * =====
+ *
+ * Los IDs pasan de 2^53: un cliente JavaScript los redondea si llegan
+ * como número. Los DTOs los serializan como string (ToStringSerializer);
+ * al leer se aceptan string o número.
+ *
+ * ⚠️ COPIA IDÉNTICA en order-service y product-service (solo cambia el
+ * package): todo cambio en una se aplica igual en la otra, así los dos
+ * servicios generan IDs con el mismo formato.
+ */
+@Component
+public class SnowflakeIdGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(SnowflakeIdGenerator.class);
+
+    public static final String NODE_ID_METADATA = "node-id";
+
+    private static final long EPOCH_MS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    private static final int MAX_SEQUENCE = 1 << SEQUENCE_BITS;
+
+    // Estado: (ms lógico << 13) | secuencias usadas en ese ms (0..4096)
+    private static final int USED_BITS = SEQUENCE_BITS + 1;
+    private static final long USED_MASK = (1L << USED_BITS) - 1;
+
+    private final long node;
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeIdGenerator(ObjectProvider<ApplicationInfoManager> applicationInfoManager) {
+        this.node = resolveNode(applicationInfoManager.getIfAvailable());
+        log.info("Generador de IDs - Nodo: {}", node);
+    }
+
+    /**
+     * Un ID nuevo.
+     */
+    public long nextId() {
+        return nextBlock(1);
+    }
+
+    /**
+     * Reserva "count" IDs consecutivos: [primero, primero + count).
+     *
+     * @param count Cantidad de IDs (1 a 4096)
+     * @return Primer ID del bloque
+     */
+    public long nextBlock(int count) {
+        if (count < 1 || count > MAX_SEQUENCE) {
+            throw new IllegalArgumentException("count debe estar entre 1 y " + MAX_SEQUENCE);
+        }
+
+        while (true) {
+            long current = state.get();
+            long lastMs = current >>> USED_BITS;
+            long used = current & USED_MASK;
+            long now = System.currentTimeMillis() - EPOCH_MS;
+
+            long ms;
+            long first;
+            if (now > lastMs) {
+                ms = now;
+                first = 0;
+            } else if (used + count <= MAX_SEQUENCE) {
+                ms = lastMs;  // Mismo ms (o reloj atrasado): seguir la secuencia
+                first = used;
+            } else {
+                ms = lastMs + 1;  // Secuencia agotada: tomar el ms siguiente
+                first = 0;
+            }
+
+            if (state.compareAndSet(current, (ms << USED_BITS) | (first + count))) {
+                return (ms << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | first;
+            }
+        }
+    }
+
+    /**
+     * Garantiza que los próximos IDs sean mayores que uno ya emitido
+     * (ej: el mayor ID persistido antes de un reinicio).
+     */
+    public void advancePast(long id) {
+        long floor = ((id >>> (NODE_BITS + SEQUENCE_BITS)) << USED_BITS) | MAX_SEQUENCE;
+        state.accumulateAndGet(floor, Math::max);
+    }
+
+    /**
+     * Momento de creación codificado en un ID.
+     */
+    public static Instant timestampOf(long id) {
+        return Instant.ofEpochMilli((id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MS);
+    }
+
+    private static long resolveNode(ApplicationInfoManager applicationInfoManager) {
+        if (applicationInfoManager == null) {
+            log.warn("Eureka no disponible: nodo del generador de IDs = 0");
+            return 0;
+        }
+
+        InstanceInfo instance = applicationInfoManager.getInfo();
+        String configured = instance.getMetadata().get(NODE_ID_METADATA);
+        if (configured != null && !configured.isBlank()) {
+            long node = Long.parseLong(configured.trim());
+            if (node < 0 || node > MAX_NODE) {
+                throw new IllegalStateException("node-id debe estar entre 0 y " + MAX_NODE + ": " + node);
+            }
+            return node;
+        }
+
+        long derived = Math.floorMod(instance.getInstanceId().hashCode(), MAX_NODE + 1);
+        applicationInfoManager.registerAppMetadata(Map.of(NODE_ID_METADATA, String.valueOf(derived)));
+        log.warn("Sin node-id en la metadata de Eureka: usando {} (derivado de {}). "
+            + "Configurar NODE_ID distinto por instancia para evitar colisiones", derived, instance.getInstanceId());
+        return derived;
+    }
+}
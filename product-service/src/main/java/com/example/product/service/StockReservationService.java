@@ -0,0 +1,325 @@
+package com.example.product.service;
+
+import com.example.product.dto.ReservationRequest;
+import com.example.product.dto.ReservationStatus;
+import com.example.product.dto.StockReservationDTO;
+import com.example.product.exception.BadRequestException;
+import com.example.product.exception.ReservationStateException;
+import com.example.product.exception.ResourceNotFoundException;
+import com.example.product.repository.ProductRepository;
+import com.example.product.service.ProductCatalog.StockChange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Servicio de Reservas de Stock
+ *
+ * ⭐ EVITA VENDER MÁS STOCK DEL QUE HAY (OVERSELL) ⭐
+ *
+ * ANTES:
+ * ======
+ * Order Service pedía el producto, comparaba stock >= cantidad... y NUNCA
+ * descontaba nada. Dos órdenes concurrentes podían vender la última unidad.
+ *
+ * AHORA:
+ * ======
+ * POST /products/{id}/reservations descuenta stock con compare-and-set
+ * (ver ProductCatalog.decrementStock). Si no alcanza → 409 Conflict.
+ *
+ * CICLO DE VIDA:
+ * ==============
+ *
+ *   reserve(confirm=false) → HELD ──confirm()──→ CONFIRMED
+ *                              │                    │
+ *                              │ TTL vencido        │ release()
+ *                              ↓                    ↓
+ *                           EXPIRED             RELEASED
+ *
+ *   release(n) con n < quantity → misma reserva con quantity - n
+ *
+ *   reserve(confirm=true)  → CONFIRMED (un solo round-trip)
+ *
+ * Cada transición es un compare-and-set sobre el mapa de reservas:
+ * si release() y la expiración compiten, SOLO una devuelve el stock.
+ *
+ * PERSISTENCIA:
+ * =============
+ * Cada transición se registra en ProductRepository (WAL) en el MISMO
+ * registro que el stock que mueve (ver ProductCatalog.StockLog), y al
+ * arrancar se recuperan las reservas vivas: un reinicio no pierde las
+ * HELD (que siguen pudiendo confirmarse, liberarse o expirar) ni las
+ * CONFIRMED (que siguen pudiendo liberarse).
+ *
+ * El registro se hace DENTRO del compare-and-set (compute sobre la
+ * entrada de la reserva): dos transiciones de la misma reserva quedan
+ * en el log en el mismo orden que en el mapa. El fsync se espera
+ * afuera (group commit).
+ *
+ * LIMPIEZA:
+ * =========
+ * Un job @Scheduled expira las reservas HELD vencidas y purga las
+ * CONFIRMED más antiguas que el período de retención.
+ */
+@Service
+public class StockReservationService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockReservationService.class);
+
+    private final ProductCatalog catalog;
+    private final ProductRepository repository;
+    private final Clock clock;
+    private final Map<String, StockReservationDTO> reservations = new ConcurrentHashMap<>();
+
+    @Value("${products.reservations.default-ttl-seconds:300}")
+    private long defaultTtlSeconds;
+
+    @Value("${products.reservations.max-ttl-seconds:3600}")
+    private long maxTtlSeconds;
+
+    @Value("${products.reservations.confirmed-retention-seconds:86400}")
+    private long confirmedRetentionSeconds;
+
+    public StockReservationService(ProductCatalog catalog, ProductRepository repository) {
+        this.catalog = catalog;
+        this.repository = repository;
+        this.clock = Clock.systemUTC();
+
+        // Reservas recuperadas del repositorio (WAL): su stock ya está descontado en el catálogo
+        for (StockReservationDTO reservation : repository.loadReservations()) {
+            reservations.put(reservation.getId(), reservation);
+        }
+        if (!reservations.isEmpty()) {
+            log.info("Reservas recuperadas: {}", reservations.size());
+        }
+    }
+
+    /**
+     * Reserva stock de un producto.
+     *
+     * @param productId ID del producto
+     * @param request Cantidad, TTL y si se confirma directamente
+     * @param owner Usuario que reserva
+     * @return Reserva creada (con nombre y precio del producto)
+     */
+    public StockReservationDTO reserve(Long productId, ReservationRequest request, String owner) {
+        Instant now = clock.instant();
+        long ttl = Math.min(request.getTtlSeconds() != null ? request.getTtlSeconds() : defaultTtlSeconds, maxTtlSeconds);
+
+        // La reserva se arma con el producto ya descontado y va al log junto con el delta
+        AtomicReference<StockReservationDTO> created = new AtomicReference<>();
+        StockChange change = catalog.decrementStock(productId, request.getQuantity(), (product, delta) -> {
+            StockReservationDTO reservation = StockReservationDTO.builder()
+                .id(UUID.randomUUID().toString())
+                .productId(productId)
+                .productName(product.getName())
+                .unitPrice(product.getPrice())
+                .quantity(request.getQuantity())
+                .remainingStock(product.getStock())
+                .status(request.isConfirm() ? ReservationStatus.CONFIRMED : ReservationStatus.HELD)
+                .owner(owner)
+                .createdAt(now)
+                .expiresAt(request.isConfirm() ? null : now.plusSeconds(ttl))
+                .build();
+            created.set(reservation);
+            return repository.saveReservation(reservation, delta);
+        });
+
+        // Al mapa aunque falle el fsync: el stock ya está descontado en memoria
+        // y así la reserva igual puede liberarse o expirar
+        StockReservationDTO reservation = created.get();
+        reservations.put(reservation.getId(), reservation);
+        ProductCatalog.awaitDurable(change.durable());
+
+        log.info("Reserva creada - ID: {}, Producto: {}, Cantidad: {}, Estado: {}, Stock restante: {}",
+            reservation.getId(), productId, reservation.getQuantity(), reservation.getStatus(),
+            change.product().getStock());
+
+        return reservation;
+    }
+
+    /**
+     * Confirma una reserva HELD (deja de expirar).
+     */
+    public StockReservationDTO confirm(Long productId, String reservationId, String owner) {
+        while (true) {
+            StockReservationDTO current = get(productId, reservationId, owner);
+
+            if (current.getStatus() == ReservationStatus.CONFIRMED) {
+                return current;
+            }
+            if (isExpired(current)) {
+                CompletableFuture<Void> durable = expire(current);
+                if (durable != null) {
+                    ProductCatalog.awaitDurable(durable);
+                }
+                throw new ReservationStateException("La reserva " + reservationId + " expiró");
+            }
+
+            StockReservationDTO confirmed = current.toBuilder()
+                .status(ReservationStatus.CONFIRMED)
+                .expiresAt(null)
+                .build();
+
+            CompletableFuture<Void> durable = transition(current, confirmed,
+                () -> repository.saveReservation(confirmed, 0));
+            if (durable != null) {
+                ProductCatalog.awaitDurable(durable);
+                log.info("Reserva confirmada - ID: {}, Producto: {}", reservationId, productId);
+                return confirmed;
+            }
+        }
+    }
+
+    /**
+     * Libera una reserva (HELD o CONFIRMED) y devuelve el stock.
+     */
+    public StockReservationDTO release(Long productId, String reservationId, String owner) {
+        return release(productId, reservationId, owner, null);
+    }
+
+    /**
+     * Libera una reserva completa o solo parte de ella.
+     *
+     * Liberación parcial: la reserva sigue viva (mismo estado) con
+     * quantity - n unidades y devuelve n al stock, en UN registro del log.
+     * Sirve para compensar una parte de una reserva agregada (p. ej. los
+     * elementos de un lote de órdenes que no se pudieron guardar).
+     *
+     * @param quantity Unidades a devolver (null o >= la reserva = liberarla completa)
+     * @return Reserva liberada (RELEASED) o la reserva reducida
+     */
+    public StockReservationDTO release(Long productId, String reservationId, String owner, Integer quantity) {
+        if (quantity != null && quantity < 1) {
+            throw new BadRequestException("La cantidad a liberar debe ser al menos 1");
+        }
+
+        while (true) {
+            StockReservationDTO current = get(productId, reservationId, owner);
+
+            if (quantity != null && quantity < current.getQuantity()) {
+                StockReservationDTO reduced = current.toBuilder()
+                    .quantity(current.getQuantity() - quantity)
+                    .build();
+                CompletableFuture<Void> durable = transition(current, reduced,
+                    () -> catalog.incrementStock(productId, quantity,
+                        (product, delta) -> repository.saveReservation(reduced, delta)).durable());
+                if (durable != null) {
+                    ProductCatalog.awaitDurable(durable);
+                    log.info("Reserva liberada parcialmente - ID: {}, Producto: {}, Cantidad devuelta: {}, Restante: {}",
+                        reservationId, productId, quantity, reduced.getQuantity());
+                    return reduced;
+                }
+                continue;  // Otro hilo la cambió al mismo tiempo → reintentar
+            }
+
+            // Solo quien logra quitarla del mapa devuelve el stock
+            CompletableFuture<Void> durable = transition(current, null, () -> returnStock(current));
+            if (durable != null) {
+                ProductCatalog.awaitDurable(durable);
+                log.info("Reserva liberada - ID: {}, Producto: {}, Cantidad devuelta: {}",
+                    reservationId, productId, current.getQuantity());
+
+                return current.toBuilder().status(ReservationStatus.RELEASED).build();
+            }
+            // Otro hilo la confirmó al mismo tiempo → reintentar con el valor nuevo
+        }
+    }
+
+    /**
+     * Expira reservas HELD vencidas y purga CONFIRMED antiguas.
+     */
+    @Scheduled(fixedDelayString = "${products.reservations.sweep-interval-ms:5000}")
+    public void sweep() {
+        Instant confirmedCutoff = clock.instant().minus(Duration.ofSeconds(confirmedRetentionSeconds));
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+        for (StockReservationDTO reservation : reservations.values()) {
+            CompletableFuture<Void> durable = null;
+            if (reservation.getStatus() == ReservationStatus.HELD && isExpired(reservation)) {
+                durable = expire(reservation);
+            } else if (reservation.getStatus() == ReservationStatus.CONFIRMED
+                && reservation.getCreatedAt().isBefore(confirmedCutoff)) {
+                durable = transition(reservation, null, () -> repository.deleteReservation(reservation, 0));
+            }
+            if (durable != null) {
+                pending.add(durable);
+            }
+        }
+
+        // Un solo fsync (group commit) para todo el barrido
+        ProductCatalog.awaitDurable(CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)));
+    }
+
+    /**
+     * @return Future de durabilidad, o null si otro hilo la quitó o cambió antes
+     */
+    private CompletableFuture<Void> expire(StockReservationDTO reservation) {
+        // Solo quien logra quitarla del mapa devuelve el stock
+        CompletableFuture<Void> durable = transition(reservation, null, () -> returnStock(reservation));
+        if (durable != null) {
+            log.info("Reserva expirada - ID: {}, Producto: {}, Cantidad devuelta: {}",
+                reservation.getId(), reservation.getProductId(), reservation.getQuantity());
+        }
+        return durable;
+    }
+
+    /**
+     * Devuelve el stock de la reserva y registra su baja en el mismo registro.
+     */
+    private CompletableFuture<Void> returnStock(StockReservationDTO reservation) {
+        return catalog.incrementStock(reservation.getProductId(), reservation.getQuantity(),
+            (product, delta) -> repository.deleteReservation(reservation, delta)).durable();
+    }
+
+    /**
+     * Aplica una transición si la reserva sigue siendo "expected"
+     * (compare-and-set) y la registra en el log DENTRO del compute.
+     *
+     * @param next Valor nuevo (null = quitarla del mapa)
+     * @param logChange Registro de la transición; solo se llama si el compare-and-set tiene éxito
+     * @return Future de durabilidad, o null si otro hilo la quitó o cambió antes
+     */
+    private CompletableFuture<Void> transition(StockReservationDTO expected, StockReservationDTO next,
+                                               Supplier<CompletableFuture<Void>> logChange) {
+        AtomicReference<CompletableFuture<Void>> durable = new AtomicReference<>();
+        reservations.computeIfPresent(expected.getId(), (id, current) -> {
+            if (!current.equals(expected)) {
+                return current;
+            }
+            durable.set(logChange.get());
+            return next;
+        });
+        return durable.get();
+    }
+
+    private boolean isExpired(StockReservationDTO reservation) {
+        return reservation.getExpiresAt() != null && !reservation.getExpiresAt().isAfter(clock.instant());
+    }
+
+    private StockReservationDTO get(Long productId, String reservationId, String owner) {
+        StockReservationDTO reservation = reservations.get(reservationId);
+
+        // Reservas de otro producto u otro usuario → 404 (no revelar que existen)
+        if (reservation == null
+            || !reservation.getProductId().equals(productId)
+            || !reservation.getOwner().equals(owner)) {
+            throw new ResourceNotFoundException("Reservation", "id", reservationId);
+        }
+        return reservation;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.product.repository;
+
+import com.example.product.dto.ProductDTO;
+import com.example.product.dto.ReservationStatus;
+import com.example.product.dto.StockReservationDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Benchmark: WAL con y sin group commit
+ *
+ * ⭐ NO ES UN TEST: NO CORRE CON mvn test ⭐
+ *
+ * El nombre no termina en "Test" (surefire no lo incluye); se corre a mano:
+ *
+ *   mvn test -Dtest=WalGroupCommitBenchmark -Dsurefire.failIfNoSpecifiedTests=false
+ *
+ * Parámetros (-D): wal.benchmark.threads (32), wal.benchmark.writes (300 por hilo),
+ * wal.benchmark.rounds (5), wal.benchmark.directory (directorio temporal).
+ *
+ * Escenario: N hilos registran reservas (RESERVATION_PUT con delta -1, como
+ * POST /products/{id}/reservations) y esperan cada una su fsync. Reporta la
+ * mediana de las rondas en escrituras/s para group-commit true y false.
+ *
+ * El resultado depende del disco (latencia de fsync): con tmpfs o un disco
+ * con caché de escritura la diferencia se achica. Usar wal.benchmark.directory
+ * para medir sobre el disco real del servicio.
+ */
+class WalGroupCommitBenchmark {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    @TempDir
+    Path temp;
+
+    @Test
+    void groupCommitOnVsOff() throws Exception {
+        int threads = Integer.getInteger("wal.benchmark.threads", 32);
+        int writes = Integer.getInteger("wal.benchmark.writes", 300);
+        int rounds = Integer.getInteger("wal.benchmark.rounds", 5);
+        Path base = Path.of(System.getProperty("wal.benchmark.directory", temp.toString()));
+
+        System.out.printf("WAL group commit - %d hilos x %d escrituras, %d rondas, directorio: %s%n",
+            threads, writes, rounds, base);
+
+        for (boolean groupCommit : new boolean[] {false, true}) {
+            run(base, groupCommit, threads, writes);  // Calentamiento
+            List<Double> results = new ArrayList<>();
+            for (int round = 0; round < rounds; round++) {
+                results.add(run(base, groupCommit, threads, writes));
+            }
+            results.sort(null);
+            System.out.printf("  group-commit %-5s: mediana %,.0f escrituras/s (min %,.0f, max %,.0f)%n",
+                groupCommit, results.get(rounds / 2), results.get(0), results.get(rounds - 1));
+        }
+    }
+
+    private double run(Path base, boolean groupCommit, int threads, int writes) throws Exception {
+        Path directory = Files.createTempDirectory(base, "wal-");
+        WalProductRepository repository = new WalProductRepository(
+            objectMapper, directory.toString(), groupCommit, 512, 1L << 30);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            repository.save(ProductDTO.builder()
+                .id(1L).name("Laptop").price(new BigDecimal("999.99")).stock(Integer.MAX_VALUE).build()).join();
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                workers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < writes; i++) {
+                        repository.saveReservation(reservation(thread + "-" + i), -1).join();
+                    }
+                    return null;
+                }));
+            }
+
+            long started = System.nanoTime();
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            return threads * (double) writes / seconds;
+        } finally {
+            executor.shutdownNow();
+            repository.destroy();
+        }
+    }
+
+    private static StockReservationDTO reservation(String id) {
+        return StockReservationDTO.builder()
+            .id(id)
+            .productId(1L)
+            .productName("Laptop")
+            .unitPrice(new BigDecimal("999.99"))
+            .quantity(1)
+            .status(ReservationStatus.CONFIRMED)
+            .owner("bench")
+            .createdAt(Instant.now())
+            .build();
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.product.repository;
+
+import com.example.product.dto.ProductDTO;
+import com.example.product.dto.ReservationStatus;
+import com.example.product.dto.StockReservationDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests del WAL de productos: replay, CRC, cola rota, rotación/compactación
+ * y reservas.
+ *
+ * Cada test escribe, cierra el repositorio (destroy) y vuelve a abrirlo
+ * sobre el mismo directorio: lo que se verifica es lo que sobrevive a un
+ * reinicio.
+ */
+class WalProductRepositoryTest {
+
+    private static final long LARGE_THRESHOLD = 64L << 20;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    @TempDir
+    Path directory;
+
+    private WalProductRepository repository;
+
+    @AfterEach
+    void close() throws Exception {
+        if (repository != null) {
+            repository.destroy();
+        }
+    }
+
+    @ParameterizedTest(name = "group commit = {0}")
+    @ValueSource(booleans = {true, false})
+    void replaysProductsAndDeletesAfterRestart(boolean groupCommit) throws Exception {
+        repository = open(groupCommit, LARGE_THRESHOLD);
+        assertThat(repository.isNew()).isTrue();
+        repository.save(product(1L, 10)).join();
+        repository.save(product(2L, 20)).join();
+        repository.save(product(1L, 15)).join();
+        repository.delete(2L).join();
+
+        reopen(groupCommit, LARGE_THRESHOLD);
+
+        assertThat(repository.isNew()).isFalse();
+        assertThat(repository.loadAll()).containsExactly(product(1L, 15));
+    }
+
+    @Test
+    void replaysReservationsTogetherWithTheirStock() throws Exception {
+        repository = open(true, LARGE_THRESHOLD);
+        repository.save(product(1L, 10)).join();
+        StockReservationDTO held = reservation("r-1", 1L, 3, ReservationStatus.HELD);
+        StockReservationDTO confirmed = reservation("r-2", 1L, 2, ReservationStatus.CONFIRMED);
+        repository.saveReservation(held, -3).join();
+        repository.saveReservation(confirmed, -2).join();
+        repository.saveReservation(held.toBuilder().status(ReservationStatus.CONFIRMED).build(), 0).join();
+        repository.deleteReservation(confirmed, 2).join();
+
+        reopen(true, LARGE_THRESHOLD);
+
+        assertThat(stockOf(1L)).isEqualTo(7);
+        assertThat(repository.loadReservations())
+            .singleElement()
+            .satisfies(r -> {
+                assertThat(r.getId()).isEqualTo("r-1");
+                assertThat(r.getStatus()).isEqualTo(ReservationStatus.CONFIRMED);
+            });
+    }
+
+    @Test
+    void truncatesTornTail() throws Exception {
+        repository = open(true, LARGE_THRESHOLD);
+        repository.save(product(1L, 10)).join();
+        repository.save(product(2L, 20)).join();
+        repository.destroy();
+
+        Path wal = onlyWal();
+        long valid = Files.size(wal);
+        // Registro a medio escribir: declara 100 bytes y solo hay 3
+        appendBytes(wal, ByteBuffer.allocate(Integer.BYTES * 2 + 3).putInt(100).putInt(0).array());
+
+        reopen(true, LARGE_THRESHOLD);
+
+        assertThat(repository.loadAll()).containsExactly(product(1L, 10), product(2L, 20));
+        assertThat(Files.size(wal)).isEqualTo(valid);
+    }
+
+    @Test
+    void stopsAtRecordWithBadCrc() throws Exception {
+        repository = open(true, LARGE_THRESHOLD);
+        repository.save(product(1L, 10)).join();
+        repository.destroy();
+        Path wal = onlyWal();
+        long firstRecordEnd = Files.size(wal);
+
+        repository = open(true, LARGE_THRESHOLD);
+        repository.save(product(2L, 20)).join();
+        repository.save(product(3L, 30)).join();
+        repository.destroy();
+
+        // El segundo arranque escribió en un segmento nuevo: corromper su primer registro
+        Path second = wals().stream().filter(path -> !path.equals(wal)).findFirst().orElseThrow();
+        flipByte(second, Integer.BYTES * 2 + 5);
+
+        reopen(true, LARGE_THRESHOLD);
+
+        // Todo lo posterior al registro corrupto se descarta y el segmento se trunca ahí
+        assertThat(repository.loadAll()).containsExactly(product(1L, 10));
+        assertThat(Files.size(wal)).isEqualTo(firstRecordEnd);
+        assertThat(Files.size(second)).isZero();
+    }
+
+    @Test
+    void snapshotCompactsSegmentsAndKeepsReservations() throws Exception {
+        repository = open(true, LARGE_THRESHOLD);
+        repository.save(product(1L, 10)).join();
+        repository.save(product(2L, 20)).join();
+        repository.saveReservation(reservation("r-1", 1L, 4, ReservationStatus.CONFIRMED), -4).join();
+        repository.delete(2L).join();
+
+        repository.periodicSnapshot();
+        repository.save(product(3L, 30)).join();  // Ya va al segmento nuevo
+        repository.destroy();  // Espera a que termine la compactación
+
+        assertThat(files("snapshot-")).hasSize(1);
+        assertThat(wals()).hasSize(1);
+
+        reopen(true, LARGE_THRESHOLD);
+
+        // Las reservas del snapshot tienen delta 0: su stock no se descuenta dos veces
+        assertThat(repository.loadAll()).containsExactly(product(1L, 6), product(3L, 30));
+        assertThat(repository.loadReservations()).extracting(StockReservationDTO::getId).containsExactly("r-1");
+    }
+
+    @Test
+    void rotatesWhenSegmentPassesThreshold() throws Exception {
+        repository = open(false, 256);
+        for (long id = 1; id <= 20; id++) {
+            repository.save(product(id, (int) id)).join();
+        }
+        repository.saveReservation(reservation("r-1", 5L, 1, ReservationStatus.HELD), -1).join();
+        repository.destroy();
+
+        assertThat(files("snapshot-")).hasSize(1);
+
+        reopen(false, 256);
+
+        assertThat(repository.loadAll()).hasSize(20);
+        assertThat(stockOf(5L)).isEqualTo(4);
+        assertThat(repository.loadReservations()).extracting(StockReservationDTO::getId).containsExactly("r-1");
+    }
+
+    // ==========================================
+    // AUXILIARES
+    // ==========================================
+
+    private WalProductRepository open(boolean groupCommit, long snapshotThreshold) throws IOException {
+        return new WalProductRepository(objectMapper, directory.toString(), groupCommit, 512, snapshotThreshold);
+    }
+
+    private void reopen(boolean groupCommit, long snapshotThreshold) throws Exception {
+        repository.destroy();
+        repository = open(groupCommit, snapshotThreshold);
+    }
+
+    private int stockOf(Long id) {
+        return repository.loadAll().stream()
+            .filter(product -> product.getId().equals(id))
+            .findFirst()
+            .orElseThrow()
+            .getStock();
+    }
+
+    private Path onlyWal() throws IOException {
+        List<Path> wals = wals();
+        assertThat(wals).hasSize(1);
+        return wals.get(0);
+    }
+
+    private List<Path> wals() throws IOException {
+        return files("wal-");
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    private static void appendBytes(Path file, byte[] bytes) throws IOException {
+        Files.write(file, bytes, StandardOpenOption.APPEND);
+    }
+
+    private static void flipByte(Path file, long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, position);
+            b.put(0, (byte) (b.get(0) ^ 0xFF)).rewind();
+            channel.write(b, position);
+        }
+    }
+
+    private static ProductDTO product(Long id, int stock) {
+        return ProductDTO.builder()
+            .id(id)
+            .name("Producto " + id)
+            .description("Descripción " + id)
+            .price(new BigDecimal("9.99"))
+            .stock(stock)
+            .build();
+    }
+
+    private static StockReservationDTO reservation(String id, Long productId, int quantity, ReservationStatus status) {
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        return StockReservationDTO.builder()
+            .id(id)
+            .productId(productId)
+            .productName("Producto " + productId)
+            .unitPrice(new BigDecimal("9.99"))
+            .quantity(quantity)
+            .status(status)
+            .owner("user")
+            .createdAt(now)
+            .expiresAt(status == ReservationStatus.HELD ? now.plusSeconds(300) : null)
+            .build();
+    }
+}
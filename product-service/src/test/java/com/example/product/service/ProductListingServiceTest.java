@@ -0,0 +1,118 @@
+package com.example.product.service;
+
+import com.example.product.dto.ProductDTO;
+import com.example.product.dto.ProductListQuery;
+import com.example.product.exception.BadRequestException;
+import com.example.product.repository.InMemoryProductRepository;
+import com.netflix.appinfo.ApplicationInfoManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * GET /products con filtros de precio: el índice de precios (rango
+ * angosto) y el recorrido del catálogo (rango ancho) deben devolver
+ * exactamente lo mismo que filtrar y ordenar todo el catálogo.
+ */
+class ProductListingServiceTest {
+
+    private static final int PRODUCTS = 2000;
+
+    private ProductCatalog catalog;
+    private ProductPriceIndex priceIndex;
+    private ProductListingService listing;
+
+    @BeforeEach
+    void setUp() {
+        catalog = new ProductCatalog(new InMemoryProductRepository(), new SnowflakeIdGenerator(
+            new StaticListableBeanFactory().getBeanProvider(ApplicationInfoManager.class)));
+        priceIndex = new ProductPriceIndex(catalog);
+        listing = new ProductListingService(catalog, priceIndex);
+
+        for (int i = 0; i < PRODUCTS; i++) {
+            catalog.create(ProductDTO.builder()
+                .name("Producto " + i)
+                .price(new BigDecimal(i % 500 + ".99"))
+                .stock(i % 3)
+                .build());
+        }
+    }
+
+    @ParameterizedTest(name = "sort={0}, precio [{1}, {2}], inStock={3}, limit={4}")
+    @CsvSource({
+        "id,     10,   12,   false, 5",   // Rango angosto → índice de precios
+        "id,     10,   12,   true,  3",
+        "id,     ,     2,    false, 4",
+        "id,     0,    400,  false, 20",  // Rango ancho → catálogo por ID
+        "id,     100,  ,     true,  50",
+        "price,  10,   12,   false, 5",
+        "-price, 10,   40,   true,  7",
+    })
+    void pagesMatchFullScan(String sort, BigDecimal min, BigDecimal max, boolean inStock, int limit) {
+        List<ProductDTO> expected = catalog.findAll().stream()
+            .filter(p -> min == null || p.getPrice().compareTo(min) >= 0)
+            .filter(p -> max == null || p.getPrice().compareTo(max) <= 0)
+            .filter(p -> !inStock || p.getStock() > 0)
+            .sorted(comparator(sort))
+            .toList();
+
+        List<ProductDTO> pages = new ArrayList<>();
+        String cursor = null;
+        int page = 0;
+        do {
+            ProductListingService.Listing result = listing.list(ProductListQuery.builder()
+                .sort(sort).minPrice(min).maxPrice(max).inStock(inStock).limit(limit).cursor(cursor)
+                .build());
+            assertThat(result.pageNumber()).isEqualTo(++page);
+            assertThat(result.totalCount()).isEqualTo(expected.size());
+            assertThat(result.items()).hasSizeLessThanOrEqualTo(limit);
+            result.items().forEach(item -> pages.add((ProductDTO) item));
+            cursor = result.nextCursor();
+        } while (cursor != null);
+
+        assertThat(pages).extracting(ProductDTO::getId)
+            .containsExactlyElementsOf(expected.stream().map(ProductDTO::getId).toList());
+    }
+
+    @Test
+    void indexGivesUpOnWideRanges() {
+        // [10, 12] → 3 precios × 4 productos = 12 claves
+        assertThat(priceIndex.findPageById(new BigDecimal("10"), new BigDecimal("12"), null, 5, p -> true, 64))
+            .isNotNull();
+        assertThat(priceIndex.findPageById(new BigDecimal("0"), new BigDecimal("400"), null, 5, p -> true, 64))
+            .isNull();
+    }
+
+    @Test
+    void rejectsInvalidQueries() {
+        assertThatThrownBy(() -> listing.list(ProductListQuery.builder().limit(0).build()))
+            .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> listing.list(ProductListQuery.builder().sort("name").build()))
+            .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> listing.list(ProductListQuery.builder()
+            .minPrice(BigDecimal.TEN).maxPrice(BigDecimal.ONE).build()))
+            .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> listing.list(ProductListQuery.builder().cursor("no-es-un-cursor").build()))
+            .isInstanceOf(BadRequestException.class);
+    }
+
+    private static Comparator<ProductDTO> comparator(String sort) {
+        Comparator<ProductDTO> byPrice = Comparator.comparing(ProductDTO::getPrice)
+            .thenComparing(ProductDTO::getId);
+        return switch (sort) {
+            case "price" -> byPrice;
+            case "-price" -> byPrice.reversed();
+            default -> Comparator.comparing(ProductDTO::getId);
+        };
+    }
+}
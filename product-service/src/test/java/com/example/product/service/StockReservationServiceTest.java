@@ -0,0 +1,129 @@
+package com.example.product.service;
+
+import com.example.product.dto.ReservationRequest;
+import com.example.product.dto.ReservationStatus;
+import com.example.product.dto.StockReservationDTO;
+import com.example.product.exception.ResourceNotFoundException;
+import com.example.product.repository.WalProductRepository;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.netflix.appinfo.ApplicationInfoManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Reservas sobre el WAL: lo que cada transición deja en el log debe
+ * reconstruir, después de un reinicio, el mismo stock y las mismas reservas.
+ *
+ * El catálogo arranca con los productos de ejemplo: 1 (stock 10) y 2 (stock 50).
+ */
+class StockReservationServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private WalProductRepository repository;
+    private ProductCatalog catalog;
+    private StockReservationService service;
+
+    @BeforeEach
+    void start() throws Exception {
+        open();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        repository.destroy();
+    }
+
+    @Test
+    void reservationsSurviveRestart() throws Exception {
+        StockReservationDTO held = service.reserve(1L, request(3, false), "user");
+        StockReservationDTO confirmed = service.reserve(1L, request(2, true), "user");
+        StockReservationDTO other = service.reserve(2L, request(5, true), "user");
+        service.release(2L, service.reserve(2L, request(1, true), "user").getId(), "user");
+
+        restart();
+
+        assertThat(stockOf(1L)).isEqualTo(5);
+        assertThat(stockOf(2L)).isEqualTo(45);
+
+        // Siguen siendo transicionables después del reinicio
+        assertThat(service.confirm(1L, held.getId(), "user").getStatus()).isEqualTo(ReservationStatus.CONFIRMED);
+        assertThat(service.release(1L, confirmed.getId(), "user").getStatus()).isEqualTo(ReservationStatus.RELEASED);
+
+        restart();
+
+        assertThat(stockOf(1L)).isEqualTo(7);
+        assertThat(repository.loadReservations()).extracting(StockReservationDTO::getId)
+            .containsExactlyInAnyOrder(held.getId(), other.getId());
+    }
+
+    @Test
+    void partialReleaseReturnsOnlyThatShare() throws Exception {
+        StockReservationDTO reservation = service.reserve(1L, request(6, true), "user");
+
+        StockReservationDTO reduced = service.release(1L, reservation.getId(), "user", 4);
+
+        assertThat(reduced.getQuantity()).isEqualTo(2);
+        assertThat(reduced.getStatus()).isEqualTo(ReservationStatus.CONFIRMED);
+        assertThat(stockOf(1L)).isEqualTo(8);
+
+        restart();
+
+        assertThat(stockOf(1L)).isEqualTo(8);
+        assertThat(repository.loadReservations()).singleElement()
+            .extracting(StockReservationDTO::getQuantity).isEqualTo(2);
+
+        // Pedir más de lo que queda libera la reserva completa
+        assertThat(service.release(1L, reservation.getId(), "user", 5).getStatus())
+            .isEqualTo(ReservationStatus.RELEASED);
+        assertThat(stockOf(1L)).isEqualTo(10);
+    }
+
+    @Test
+    void onlyTheOwnerSeesTheReservation() {
+        StockReservationDTO reservation = service.reserve(1L, request(1, true), "user");
+
+        assertThatThrownBy(() -> service.release(1L, reservation.getId(), "other"))
+            .isInstanceOf(ResourceNotFoundException.class);
+        assertThatThrownBy(() -> service.release(2L, reservation.getId(), "user"))
+            .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    // ==========================================
+    // AUXILIARES
+    // ==========================================
+
+    private void open() throws Exception {
+        repository = new WalProductRepository(JsonMapper.builder().findAndAddModules().build(),
+            directory.toString(), true, 512, 64L << 20);
+        catalog = new ProductCatalog(repository, new SnowflakeIdGenerator(
+            new StaticListableBeanFactory().getBeanProvider(ApplicationInfoManager.class)));
+        service = new StockReservationService(catalog, repository);
+        ReflectionTestUtils.setField(service, "defaultTtlSeconds", 300L);
+        ReflectionTestUtils.setField(service, "maxTtlSeconds", 3600L);
+        ReflectionTestUtils.setField(service, "confirmedRetentionSeconds", 86400L);
+    }
+
+    private void restart() throws Exception {
+        repository.destroy();
+        open();
+    }
+
+    private int stockOf(Long id) {
+        return catalog.getById(id).getStock();
+    }
+
+    private static ReservationRequest request(int quantity, boolean confirm) {
+        return ReservationRequest.builder().quantity(quantity).confirm(confirm).build();
+    }
+}
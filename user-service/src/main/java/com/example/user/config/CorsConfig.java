@@ -74,13 +74,13 @@ public class CorsConfig {
     /**
      * Headers permitidos
      */
-    @Value("${cors.allowed-headers:Authorization,Content-Type,X-Requested-With,Accept,Origin}")
+    @Value("${cors.allowed-headers:Authorization,Content-Type,X-Requested-With,Accept,Origin,If-None-Match,Idempotency-Key,Prefer}")
     private String allowedHeaders;
 
     /**
      * Headers expuestos al frontend
      */
-    @Value("${cors.exposed-headers:Authorization,X-Total-Count,X-Page-Number}")
+    @Value("${cors.exposed-headers:Authorization,X-Total-Count,X-Page-Number,X-Next-Cursor,ETag,Idempotent-Replayed,Location,Retry-After}")
     private String exposedHeaders;
 
     /**